@@ -0,0 +1,333 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * *****************************************************************************
+ * The abstract syntax tree of a program: the parse tree without everything
+ * that is only there because of the grammar.
+ *
+ *   - no &epsilon; nodes, and no "<TOKEN>" nodes above the terminals,
+ *   - no keywords or punctuation ("then", "fi", ":=", parentheses...): a
+ *     statement is one node, eg. "if" with the condition and then the
+ *     statements of its body as children,
+ *   - no chains of nonterminals with a single child (an <EXPR> that is just
+ *     a <TERM>, that is just a <FACTOR>, that is just "n", is just "n"),
+ *   - and the <TERM_TAIL>/<FACTOR_TAIL> lists folded into binary operator
+ *     nodes (left associative, as the Interpreter evaluates them).
+ *
+ * So "sum := sum + n" is 5 nodes (":=" with "sum" and "+", which has "sum"
+ * and "n") rather than the 23 of its parse tree.
+ *
+ * Like ParseTree, the nodes are indexes into parallel arrays; they are
+ * written out (as GraphViz, see writeDot) in a pre-order walk.
+ */
+final class AbstractSyntaxTree {
+
+    // The kinds of nodes (and their GraphViz shapes).
+    private static final byte PROGRAM = 0;
+    private static final byte STATEMENT = 1;
+    private static final byte OPERATOR = 2;
+    private static final byte LEAF = 3;
+    private static final String[] SHAPES = {"diamond", "rect", "circle", "oval"};
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    // The parse tree it was built from.
+    private final ParseTree tree;
+
+    private String[] labels = new String[INITIAL_CAPACITY];
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private int[] firstChildren = new int[INITIAL_CAPACITY];
+    private int[] lastChildren = new int[INITIAL_CAPACITY];
+    private int[] nextSiblings = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private AbstractSyntaxTree(ParseTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Build the abstract syntax tree of a (complete) parse tree.
+     *
+     * @param tree the parse tree.
+     * @return its abstract syntax tree.
+     * @throws Parser.ParseException if the parse tree is incomplete (the
+     * parse stopped at a syntax error).
+     */
+    static AbstractSyntaxTree build(ParseTree tree) {
+        if (tree.size() == 0) {
+            throw new Parser.ParseException("SYNTAX ERROR: no program");
+        }
+        if (tree.getErrorNode() != ParseTree.NONE) {
+            throw new Parser.ParseException(tree.getError());
+        }
+
+        final var ast = new AbstractSyntaxTree(tree);
+
+        // <PARSE TREE> -> <PROGRAM> -> <STMT_LIST>
+        final var program = ast.add("program", PROGRAM);
+        ast.stmtList(tree.getFirstChild(tree.getFirstChild(tree.getRoot())), program);
+        return ast;
+    }
+
+    // The number of nodes.
+    int size() {
+        return size;
+    }
+
+    // The number of nodes of the parse tree it was built from.
+    int getParseTreeSize() {
+        return tree.size();
+    }
+
+    // How many times fewer nodes than the parse tree.
+    double getReduction() {
+        return tree.size() / (double) size;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Parse tree -> abstract syntax tree.
+    ////////////////////////////////////////////////////////////////////////////
+    // A new node (with no parent yet).
+    private int add(String label, byte kind) {
+        if (size == labels.length) {
+            final var capacity = size * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        }
+        final var node = size++;
+        labels[node] = label;
+        kinds[node] = kind;
+        firstChildren[node] = ParseTree.NONE;
+        lastChildren[node] = ParseTree.NONE;
+        nextSiblings[node] = ParseTree.NONE;
+        return node;
+    }
+
+    // Make a node the last child of another.
+    private void adopt(int parent, int child) {
+        if (firstChildren[parent] == ParseTree.NONE) {
+            firstChildren[parent] = child;
+        } else {
+            nextSiblings[lastChildren[parent]] = child;
+        }
+        lastChildren[parent] = child;
+    }
+
+    // The i-th child of a parse tree node.
+    private int child(int node, int i) {
+        var child = tree.getFirstChild(node);
+        while (i-- > 0 && child != ParseTree.NONE) {
+            child = tree.getNextSibling(child);
+        }
+        if (child == ParseTree.NONE) {
+            throw new Parser.ParseException("SYNTAX ERROR: incomplete " + tree.getLabel(node));
+        }
+        return child;
+    }
+
+    // The lexeme of the leaf below a "<TOKEN>" node.
+    private String lexeme(int tokenNode) {
+        return tree.getLabel(child(tokenNode, 0));
+    }
+
+    // <STMT_LIST> -> <STMT> <STMT_LIST> | (nothing); the statements become
+    // children of the parent, in order (with a loop, not recursion).
+    private void stmtList(int node, int parent) {
+        while (node != ParseTree.NONE && tree.getFirstChild(node) != ParseTree.NONE) {
+            final var statement = tree.getFirstChild(node);
+            stmt(statement, parent);
+            node = tree.getNextSibling(statement);
+        }
+    }
+
+    private void stmt(int node, int parent) {
+        final var first = child(node, 0);
+
+        switch (tree.getToken(first)) {
+            case IF: // IF CONDITION THEN STMT_LIST ENDIF
+            case WHILE: { // WHILE CONDITION DO STMT_LIST DONE
+                final var statement = add(lexeme(first), STATEMENT);
+                adopt(parent, statement);
+                adopt(statement, condition(child(node, 1)));
+                stmtList(child(node, 3), statement);
+                break;
+            }
+            case OTHER: { // OTHER ASGN EXPR
+                final var statement = add(lexeme(child(node, 1)), STATEMENT);
+                adopt(parent, statement);
+                adopt(statement, add(lexeme(first), LEAF));
+                adopt(statement, expr(child(node, 2)));
+                break;
+            }
+            case READ: // READ OTHER
+            case WRITE: { // WRITE EXPR
+                final var statement = add(lexeme(first), STATEMENT);
+                adopt(parent, statement);
+                adopt(statement, tree.getToken(first) == TOKEN.READ
+                        ? add(lexeme(child(node, 1)), LEAF)
+                        : expr(child(node, 1)));
+                break;
+            }
+            default: // a stray "do" does nothing.
+                break;
+        }
+    }
+
+    // <CONDITION> -> <EXPR> <RELATION> <EXPR>
+    private int condition(int node) {
+        final var left = expr(child(node, 0));
+        final var relation = add(lexeme(child(node, 1)), OPERATOR);
+        adopt(relation, left);
+        adopt(relation, expr(child(node, 2)));
+        return relation;
+    }
+
+    // <EXPR> -> <TERM> <TERM_TAIL>, <TERM_TAIL> -> <ADD_OP> <TERM> <TERM_TAIL> | &epsilon;
+    private int expr(int node) {
+        var value = term(child(node, 0));
+
+        var tail = child(node, 1);
+        while (tree.getSymbol(child(tail, 0)) != ParseTree.EPSILON) {
+            value = operator(lexeme(child(tail, 0)), value, term(child(tail, 1)));
+            tail = child(tail, 2);
+        }
+        return value;
+    }
+
+    // <TERM> -> <FACTOR> <FACTOR_TAIL>, <FACTOR_TAIL> -> <MULT_OP> <FACTOR> <FACTOR_TAIL> | &epsilon;
+    private int term(int node) {
+        var value = factor(child(node, 0));
+
+        var tail = child(node, 1);
+        while (tree.getSymbol(child(tail, 0)) != ParseTree.EPSILON) {
+            value = operator(lexeme(child(tail, 0)), value, factor(child(tail, 1)));
+            tail = child(tail, 2);
+        }
+        return value;
+    }
+
+    // <FACTOR> -> ( <EXPR> ) | OTHER | NUMBER
+    private int factor(int node) {
+        if (tree.getFirstChild(node) == ParseTree.NONE) {
+            throw new Parser.ParseException("SYNTAX ERROR: a FACTOR was expected");
+        }
+
+        final var first = child(node, 0);
+        return tree.getToken(first) == TOKEN.OP
+                ? expr(child(node, 1))
+                : add(lexeme(first), LEAF);
+    }
+
+    // A binary operator node: "left operator right".
+    private int operator(String operator, int left, int right) {
+        final var node = add(operator, OPERATOR);
+        adopt(node, left);
+        adopt(node, right);
+        return node;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Output.
+    ////////////////////////////////////////////////////////////////////////////
+    /**
+     * The tree as a GraphViz (DOT) graph, with the nodes numbered in a
+     * pre-order walk, eg. "program-0" -> {":=-1" [label=":=", shape=rect]};
+     *
+     * @param out where the graph goes.
+     * @return the number of chars written.
+     */
+    long writeDot(Appendable out) {
+        final var dot = new StringBuilder(8192 + 256);
+        var written = 0L;
+        dot.append("digraph AbstractSyntaxTree {\n");
+        dot.append(String.format(Locale.ROOT, "\t// %d nodes, from %d parse tree nodes (%.1f times fewer)\n",
+                size, tree.size(), getReduction()));
+
+        // The number of each node in the walk (known before its children).
+        final var ids = new int[size];
+        final var parents = new int[size];
+        var nextId = 0;
+
+        // (A pre-order walk, with an explicit stack rather than recursion.)
+        final var stack = new int[size];
+        var top = 0;
+        stack[top++] = 0;
+        parents[0] = ParseTree.NONE;
+        while (top > 0) {
+            final var node = stack[--top];
+            ids[node] = nextId++;
+
+            dot.append('\t');
+            if (parents[node] == ParseTree.NONE) {
+                appendNode(dot, node, ids[node]);
+                appendAttributes(dot, node).append(";\n");
+            } else {
+                appendNode(dot, parents[node], ids[parents[node]]).append(" -> {");
+                appendNode(dot, node, ids[node]);
+                appendAttributes(dot, node).append("};\n");
+            }
+
+            // Push the children last to first, so the first comes out first.
+            final var first = top;
+            for (var child = firstChildren[node]; child != ParseTree.NONE; child = nextSiblings[child]) {
+                parents[child] = node;
+                stack[top++] = child;
+            }
+            for (int i = first, j = top - 1; i < j; i++, j--) {
+                final var child = stack[i];
+                stack[i] = stack[j];
+                stack[j] = child;
+            }
+
+            if (dot.length() >= 8192) {
+                written += append(out, dot);
+            }
+        }
+        dot.append("}\n");
+        return written + append(out, dot);
+    }
+
+    // eg. "x-3" (with any quotes in the label escaped)
+    private StringBuilder appendNode(StringBuilder dot, int node, int id) {
+        dot.append('"');
+        appendEscaped(dot, labels[node]);
+        return dot.append('-').append(id).append('"');
+    }
+
+    // eg. [label="x", shape=oval]
+    private StringBuilder appendAttributes(StringBuilder dot, int node) {
+        dot.append(" [label=\"");
+        appendEscaped(dot, labels[node]);
+        return dot.append("\", shape=").append(SHAPES[kinds[node]]).append(']');
+    }
+
+    private static void appendEscaped(StringBuilder dot, String string) {
+        for (var i = 0; i < string.length(); i++) {
+            final var c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                dot.append('\\');
+            }
+            dot.append(c);
+        }
+    }
+
+    // Hand the graph so far to its sink; returns its length.
+    private static int append(Appendable out, StringBuilder dot) {
+        try {
+            final var length = dot.length();
+            out.append(dot);
+            dot.setLength(0);
+            return length;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error writing the abstract syntax tree", ex);
+        }
+    }
+}
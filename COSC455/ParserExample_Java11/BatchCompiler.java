@@ -0,0 +1,500 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * *****************************************************************************
+ * Compiles many input files at once, on a pool of threads.
+ *
+ * Usage: MAIN_Compiler [--threads N] [--out DIR] [--format FORMAT] [--check] [--metrics FILE]
+ *            [--cache DIR] [--cache-size SIZE] [--cache-memory SIZE] INPUT...
+ *
+ * where every INPUT is one of:
+ *
+ *   - a file,
+ *   - a directory (every "*.txt" file in it, and in its sub-directories),
+ *   - a glob, eg. "programs/**.txt" (quote it, so the shell leaves it alone),
+ *   - "@LIST", a file listing one input file per line.
+ *
+ * The output of "a/b/prog.txt" goes to "a/b/prog.txt.dot", or, with --out,
+ * to "DIR/b/prog.txt.dot" (relative to the directory or glob it was found in).
+ * Two inputs with the same output (eg. "a/prog.txt" and "b/prog.txt", given
+ * as files, with --out) are not both written to it: the second one fails.
+ * With "--format bytecode" the outputs are JVM classes ("prog.txt.class")
+ * instead of GraphViz graphs, with "--format ast" GraphViz graphs of the
+ * abstract syntax trees ("prog.txt.ast.dot", see AbstractSyntaxTree), and
+ * with "--format tree" (or compressed_tree) binary parse trees
+ * ("prog.txt.tree", see TreeFile); see OUTPUT_MODE. With
+ * --check nothing is written at all: every syntax error of every file is
+ * reported instead, and, for the files that parse, the variables that are
+ * read before they are assigned or never used (as warnings, see DefUse). With
+ * --metrics, the totals of CompilerMetrics are written to FILE ("-" for the
+ * standard error) as JSON at the end.
+ *
+ * With --cache (or --cache-memory), a file compiled before (by any process
+ * sharing the cache directory) isn't compiled again: its output is copied from
+ * the CompileCache. The disk tier holds up to --cache-size (256MB by default),
+ * and the memory tier up to --cache-memory (64MB by default).
+ *
+ * Every file is compiled on its own (one lexer/parser/code generator each), so
+ * a file that fails to compile is reported but doesn't stop the batch. The
+ * results are always reported in the same (sorted) order, no matter which
+ * thread finished first.
+ */
+final class BatchCompiler {
+
+    private static final String USAGE = "Usage: MAIN_Compiler [--threads N] [--out DIR] [--format graphviz|ast|bytecode|tree|compressed_tree] [--check] [--metrics FILE] [--cache DIR] [--cache-size SIZE] [--cache-memory SIZE] (FILE | DIRECTORY | GLOB | @LIST)...";
+
+    // The parser recurses once per nesting level, so (as in MAIN_Headless)
+    // every file is compiled on a thread with a big stack. (The stack is only
+    // reserved, not used, up front.)
+    private static final long STACK_SIZE = 512L * 1024 * 1024;
+
+    private final int threads;
+    private final Path outputDirectory;
+    private final OUTPUT_MODE mode;
+    private final boolean checkOnly;
+
+    // The results of earlier compilations, or null (see CompileCache).
+    private CompileCache cache;
+
+    /**
+     * An input file, and the directory its output path is relative to.
+     */
+    static final class Input {
+
+        final Path file;
+        final Path base;
+
+        Input(Path file, Path base) {
+            this.file = file;
+            this.base = base;
+        }
+    }
+
+    /**
+     * The outcome of compiling one file.
+     */
+    static final class Result {
+
+        final Path input;
+        final Path output;
+        final long bytes;
+        final long nanos;
+        final String error; // null if the file compiled
+        final List<DefUse.Warning> warnings; // (only with --check)
+
+        Result(Path input, Path output, long bytes, long nanos, String error) {
+            this(input, output, bytes, nanos, error, List.of());
+        }
+
+        Result(Path input, Path output, long bytes, long nanos, String error, List<DefUse.Warning> warnings) {
+            this.input = input;
+            this.output = output;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.error = error;
+            this.warnings = warnings;
+        }
+
+        boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * @param threads the number of files to compile at the same time.
+     * @param outputDirectory where the outputs go, or null to write every
+     * output next to its input.
+     * @param mode what to generate for every file.
+     * @param checkOnly true to only look for syntax errors (all of them), and
+     * variables that look wrong.
+     */
+    BatchCompiler(int threads, Path outputDirectory, OUTPUT_MODE mode, boolean checkOnly) {
+        this.threads = threads;
+        this.outputDirectory = outputDirectory;
+        this.mode = mode;
+        this.checkOnly = checkOnly;
+    }
+
+    /**
+     * Copy the results of files compiled before from a cache, rather than
+     * compiling them again.
+     *
+     * @param cache the cache, or null for none.
+     * @return this.
+     */
+    BatchCompiler setCache(CompileCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Run the batch compiler from the command line.
+     *
+     * @param args the command line arguments (see the class comment).
+     * @return the exit status: 0 if every file compiled, 1 if any failed, 2
+     * for bad arguments.
+     */
+    static int run(String[] args) {
+        var threads = Runtime.getRuntime().availableProcessors();
+        Path outputDirectory = null;
+        var mode = OUTPUT_MODE.GRAPHVIZ;
+        var checkOnly = false;
+        String metricsFile = null;
+        Path cacheDirectory = null;
+        var cacheBytes = 256L << 20;
+        var cacheMemoryBytes = -1L;
+        final var patterns = new ArrayList<String>();
+
+        try {
+            for (var i = 0; i < args.length; i++) {
+                if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--out") && i + 1 < args.length) {
+                    outputDirectory = Path.of(args[++i]);
+                } else if (args[i].equals("--format") && i + 1 < args.length) {
+                    mode = OUTPUT_MODE.fromName(args[++i]);
+                } else if (args[i].equals("--check")) {
+                    checkOnly = true;
+                } else if (args[i].equals("--metrics") && i + 1 < args.length) {
+                    metricsFile = args[++i];
+                } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                    cacheDirectory = Path.of(args[++i]);
+                } else if (args[i].equals("--cache-size") && i + 1 < args.length) {
+                    cacheBytes = ProgramGenerator.parseSize(args[++i]);
+                } else if (args[i].equals("--cache-memory") && i + 1 < args.length) {
+                    cacheMemoryBytes = ProgramGenerator.parseSize(args[++i]);
+                } else if (args[i].startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                } else {
+                    patterns.add(args[i]);
+                }
+            }
+            if (patterns.isEmpty() || threads < 1) {
+                throw new IllegalArgumentException("Must Provide an input filename!!");
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        final List<Input> inputs;
+        try {
+            inputs = findInputs(patterns);
+        } catch (IOException | UncheckedIOException ex) {
+            System.err.printf("Could not list the input files: %s%n", ex.getMessage());
+            return 2;
+        }
+
+        CompileCache cache = null;
+        if (cacheDirectory != null || cacheMemoryBytes > 0) {
+            try {
+                cache = new CompileCache(cacheMemoryBytes < 0 ? 64L << 20 : cacheMemoryBytes, cacheDirectory, cacheBytes);
+            } catch (IOException | UncheckedIOException ex) {
+                System.err.printf("Could not open the cache %s: %s%n", cacheDirectory, ex.getMessage());
+                return 2;
+            }
+        }
+
+        final var start = System.nanoTime();
+        final var results = new BatchCompiler(threads, outputDirectory, mode, checkOnly)
+                .setCache(cache)
+                .compile(inputs);
+        final var wallNanos = System.nanoTime() - start;
+
+        report(results, wallNanos, threads);
+        if (cache != null) {
+            System.out.printf("Cache: %d hit(s) (%d in memory, %d on disk), %d miss(es), %d eviction(s)%n",
+                    cache.getMemoryHits() + cache.getDiskHits(), cache.getMemoryHits(), cache.getDiskHits(),
+                    cache.getMisses(), cache.getMemoryEvictions() + cache.getDiskEvictions());
+        }
+        // (Only the files actually compiled count, not those from the cache.)
+        final var metrics = CompilerMetrics.get();
+        if (mode == OUTPUT_MODE.AST && CompilerMetrics.ENABLED && metrics.getAstNodes() > 0) {
+            System.out.printf("AST: %d node(s), from %d parse tree node(s) (%.1f times fewer)%n",
+                    metrics.getAstNodes(), metrics.getAstParseTreeNodes(),
+                    metrics.getAstParseTreeNodes() / (double) metrics.getAstNodes());
+        }
+        if (metricsFile != null) {
+            writeMetrics(metricsFile);
+        }
+        return results.stream().allMatch(Result::isSuccess) ? 0 : 1;
+    }
+
+    // Write the CompilerMetrics summary (JSON) to a file, or "-" for stderr.
+    private static void writeMetrics(String file) {
+        if (!CompilerMetrics.ENABLED) {
+            System.err.println("The metrics are turned off (-Dcompiler.metrics=off)");
+            return;
+        }
+        final var summary = CompilerMetrics.get().getSummary();
+        if (file.equals("-")) {
+            System.err.println(summary);
+            return;
+        }
+        try {
+            Files.writeString(Path.of(file), summary + System.lineSeparator());
+        } catch (IOException ex) {
+            System.err.printf("Could not write the metrics to %s: %s%n", file, ex.getMessage());
+        }
+    }
+
+    /**
+     * Find all of the input files named by the arguments, in sorted order
+     * (and without duplicates).
+     *
+     * @param patterns files, directories, globs or "@LIST" files.
+     * @return the input files.
+     * @throws IOException if a directory or list can't be read.
+     */
+    static List<Input> findInputs(List<String> patterns) throws IOException {
+        final var inputs = new TreeMap<Path, Input>();
+
+        for (var pattern : patterns) {
+            if (pattern.startsWith("@")) {
+                for (var line : Files.readAllLines(Path.of(pattern.substring(1)))) {
+                    final var name = line.trim();
+                    if (!name.isEmpty() && !name.startsWith("#")) {
+                        addFile(inputs, Path.of(name));
+                    }
+                }
+            } else if (isGlob(pattern)) {
+                final var base = globBase(pattern);
+                final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalizeGlob(pattern));
+                addTree(inputs, base, matcher::matches);
+            } else if (Files.isDirectory(Path.of(pattern))) {
+                final var directory = Path.of(pattern);
+                addTree(inputs, directory, file -> file.getFileName().toString().endsWith(".txt"));
+            } else {
+                // (A missing file is reported as a failure of that file.)
+                addFile(inputs, Path.of(pattern));
+            }
+        }
+        return new ArrayList<>(inputs.values());
+    }
+
+    private static void addFile(Map<Path, Input> inputs, Path file) {
+        // (Keyed by the absolute path, so "a.txt" and the same file named
+        // from the root are one input.)
+        final var absolute = file.toAbsolutePath().normalize();
+        inputs.putIfAbsent(absolute, new Input(file.normalize(), absolute.getParent()));
+    }
+
+    private static void addTree(Map<Path, Input> inputs, Path base, PathMatcher matcher) throws IOException {
+        if (!Files.isDirectory(base)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(base)) {
+            for (var file : files.filter(Files::isRegularFile).map(Path::normalize).filter(matcher::matches).collect(Collectors.toList())) {
+                inputs.putIfAbsent(file.toAbsolutePath().normalize(), new Input(file, base.toAbsolutePath().normalize()));
+            }
+        }
+    }
+
+    private static boolean isGlob(String pattern) {
+        for (var c : "*?[{".toCharArray()) {
+            if (pattern.indexOf(c) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The directory part of a glob before the first "wildcard", eg. "a/b" for
+    // "a/b/*/c*.txt".
+    private static Path globBase(String pattern) {
+        final var separator = FileSystems.getDefault().getSeparator();
+        var base = Path.of(pattern.startsWith(separator) ? separator : ".");
+
+        for (var part : pattern.split("[/\\\\]")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            if (isGlob(part)) {
+                break;
+            }
+            base = base.resolve(part);
+        }
+        return base.normalize().toString().isEmpty() ? Path.of(".") : base.normalize();
+    }
+
+    // A glob whose directory part is normalized like the (walked) paths it is
+    // matched against, eg. "a/*.txt" for "./a/*.txt" and "*.txt" for "*.txt".
+    private static String normalizeGlob(String pattern) {
+        final var parts = pattern.split("[/\\\\]");
+        var first = 0;
+        while (first < parts.length && !isGlob(parts[first])) {
+            first++;
+        }
+        final var wildcards = String.join("/", Arrays.asList(parts).subList(first, parts.length));
+
+        // (The glob syntax takes "/" as the separator on every platform.)
+        final var base = globBase(pattern);
+        final var directory = base.toString().replace(FileSystems.getDefault().getSeparator(), "/");
+        if (base.equals(Path.of("."))) {
+            return wildcards;
+        }
+        return directory.endsWith("/") ? directory + wildcards : directory + "/" + wildcards;
+    }
+
+    /**
+     * Compile all of the inputs.
+     *
+     * @param inputs the files to compile.
+     * @return one result per input, in the same order.
+     */
+    List<Result> compile(List<Input> inputs) {
+        final ExecutorService pool = Executors.newFixedThreadPool(threads, compilerThreads());
+        try {
+            final var futures = new ArrayList<Future<Result>>(inputs.size());
+            final var outputs = new HashMap<Path, Path>();
+            for (var input : inputs) {
+                final var output = checkOnly ? null : outputFile(input);
+                final var other = output == null ? null : outputs.putIfAbsent(output.toAbsolutePath().normalize(), input.file);
+                if (other != null) {
+                    futures.add(CompletableFuture.completedFuture(new Result(input.file, output, 0, 0,
+                            "Same output file as " + other + ": " + output)));
+                } else {
+                    futures.add(pool.submit(() -> compile(input)));
+                }
+            }
+
+            final var results = new ArrayList<Result>(inputs.size());
+            for (var i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (Exception ex) {
+                    final var input = inputs.get(i).file;
+                    results.add(new Result(input, null, 0, 0, String.valueOf(ex.getCause())));
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // (Not a ForkJoinPool: its worker threads can't be given a stack size.)
+    private static ThreadFactory compilerThreads() {
+        final var count = new AtomicInteger();
+        return runnable -> new Thread(null, runnable, "compiler-" + count.incrementAndGet(), STACK_SIZE);
+    }
+
+    /**
+     * Compile a single file into its output file.
+     *
+     * @param input the file to compile.
+     * @return the result; failures are reported here rather than thrown.
+     */
+    Result compile(Input input) {
+        if (checkOnly) {
+            return check(input);
+        }
+
+        final var start = System.nanoTime();
+        final var output = outputFile(input);
+
+        try {
+            final long bytes = Files.size(input.file);
+            if (output.getParent() != null) {
+                Files.createDirectories(output.getParent());
+            }
+
+            final String error;
+            try (var stream = new BufferedOutputStream(Files.newOutputStream(output))) {
+                error = cache == null
+                        ? MAIN_Compiler.compile(input.file.toFile(), stream, mode)
+                        : cache.compile(input.file.toFile(), stream, mode);
+            }
+            return new Result(input.file, output, bytes, System.nanoTime() - start, error);
+
+        } catch (IOException | RuntimeException ex) {
+            return new Result(input.file, output, 0, System.nanoTime() - start, ex.toString());
+        }
+    }
+
+    /**
+     * Check a single file for syntax errors.
+     *
+     * @param input the file to check.
+     * @return the result: the error lists every syntax error, one per line.
+     */
+    Result check(Input input) {
+        final var start = System.nanoTime();
+
+        try {
+            final long bytes = Files.size(input.file);
+            final var warnings = new ArrayList<DefUse.Warning>();
+            final var diagnostics = MAIN_Compiler.check(input.file.toFile(), warnings);
+
+            String error = null;
+            if (!diagnostics.isEmpty()) {
+                final var errors = new StringJoiner(System.lineSeparator() + "\t" + input.file + ":",
+                        diagnostics.size() + " syntax error(s)" + System.lineSeparator() + "\t" + input.file + ":", "");
+                for (var diagnostic : diagnostics) {
+                    errors.add(diagnostic.toString());
+                }
+                error = errors.toString();
+            }
+            return new Result(input.file, null, bytes, System.nanoTime() - start, error, warnings);
+
+        } catch (IOException | RuntimeException ex) {
+            return new Result(input.file, null, 0, System.nanoTime() - start, ex.toString());
+        }
+    }
+
+    // Where the output of an input goes (see the class comment).
+    Path outputFile(Input input) {
+        final var name = input.file.getFileName() + mode.getExtension();
+        if (outputDirectory == null) {
+            return input.file.resolveSibling(name);
+        }
+
+        final var relative = input.base.relativize(input.file.toAbsolutePath().normalize());
+        return outputDirectory.resolve(relative).resolveSibling(name);
+    }
+
+    /**
+     * Print the failures (in order) and the totals for the batch.
+     */
+    static void report(List<Result> results, long wallNanos, int threads) {
+        var failures = 0;
+        var bytes = 0L;
+        var cpuNanos = 0L;
+
+        for (var result : results) {
+            bytes += result.bytes;
+            cpuNanos += result.nanos;
+            for (var warning : result.warnings) {
+                System.err.printf("%s:%s%n", result.input, warning);
+            }
+            if (!result.isSuccess()) {
+                failures++;
+                System.err.printf("FAILED %s: %s%n", result.input, result.error);
+            }
+        }
+
+        final var seconds = Math.max(wallNanos, 1) / 1e9;
+        System.out.printf("Compiled %d file(s), %d failed, on %d thread(s) in %.1f ms%n",
+                results.size(), failures, threads, wallNanos / 1e6);
+        System.out.printf("Throughput: %.1f files/s, %.2f MB/s (%.1f ms total compile time)%n",
+                results.size() / seconds, bytes / seconds / (1024 * 1024), cpuNanos / 1e6);
+    }
+}
@@ -0,0 +1,491 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * *****************************************************************************
+ * A "real" code generator: translates a program into a JVM class file.
+ *
+ * The generated class has a single method,
+ *
+ *   public static void run(LongSupplier in, LongConsumer out)
+ *
+ * in which every variable of the program is a local (long) variable, so the
+ * JIT compiler can turn hot "while ... do ... od" loops into native code.
+ *
+ * The class file is written "by hand" (there is no class file library in the
+ * JDK before Java 22). To keep this simple, the class file is version 49
+ * (Java 5): the JVM verifies those without the "stack map frames" that newer
+ * class files need at every branch target.
+ *
+ * The input is the program as compiled by the Interpreter: its nodes double as
+ * our "intermediate representation", and the variables already have slots.
+ *
+ * NOTE: A JVM method can hold at most 64K of code (and a branch can jump at
+ * most 32K), so very large programs can't be compiled this way; they are
+ * rejected with a ProgramTooLargeException (and can still be run on the
+ * Interpreter).
+ */
+final class BytecodeCompiler {
+
+    // The name of the generated class (in the "unnamed" package).
+    static final String CLASS_NAME = "GeneratedProgram";
+
+    // The name and type of the generated method.
+    static final String METHOD_NAME = "run";
+    static final MethodType METHOD_TYPE = MethodType.methodType(void.class, LongSupplier.class, LongConsumer.class);
+
+    // Class file constants.
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 49;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    // The (few) opcodes we need.
+    private static final int LCONST_0 = 0x09;
+    private static final int LCONST_1 = 0x0a;
+    private static final int LDC2_W = 0x14;
+    private static final int LLOAD = 0x16;
+    private static final int LSTORE = 0x37;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int LADD = 0x61;
+    private static final int LSUB = 0x65;
+    private static final int LMUL = 0x69;
+    private static final int LDIV = 0x6d;
+    private static final int LCMP = 0x94;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IFLT = 0x9b;
+    private static final int IFGE = 0x9c;
+    private static final int IFGT = 0x9d;
+    private static final int IFLE = 0x9e;
+    private static final int GOTO = 0xa7;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int WIDE = 0xc4;
+
+    // The first local variable of the program (0 and 1 are "in" and "out").
+    private static final int FIRST_LOCAL = 2;
+
+    // The constant pool.
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndexes = new HashMap<>();
+    private int poolCount = 1;
+
+    // The code of the method.
+    private byte[] code = new byte[1024];
+    private int codeLength;
+    private int stack;
+    private int maxStack;
+
+    private BytecodeCompiler() {
+    }
+
+    /**
+     * Translate a program into a class file.
+     *
+     * @param program the program, as compiled by the Interpreter.
+     * @return the bytes of the class file.
+     * @throws ProgramTooLargeException if the program is too large for a JVM
+     * method.
+     */
+    static byte[] compile(Interpreter program) throws ProgramTooLargeException {
+        return new BytecodeCompiler().compileClass(program);
+    }
+
+    /**
+     * Load a (generated) class file and get its run() method. Every class gets
+     * its own class loader, so it is unloaded once it is no longer used.
+     *
+     * @param classFile the bytes of the class file.
+     * @return the compiled program.
+     */
+    static CompiledProgram load(byte[] classFile) {
+        final var loader = new ProgramClassLoader(BytecodeCompiler.class.getClassLoader());
+        final var programClass = loader.define(classFile);
+        try {
+            return new CompiledProgram(MethodHandles.publicLookup().findStatic(programClass, METHOD_NAME, METHOD_TYPE));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new IllegalStateException("Invalid generated class", ex);
+        }
+    }
+
+    /**
+     * A program that is too large to be compiled into a JVM method: the
+     * Interpreter can still run it.
+     */
+    static final class ProgramTooLargeException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        public ProgramTooLargeException() {
+            super("Program too large for a JVM method");
+        }
+    }
+
+    /**
+     * A program that was compiled to a JVM class.
+     */
+    static final class CompiledProgram {
+
+        private final MethodHandle run;
+
+        private CompiledProgram(MethodHandle run) {
+            this.run = run;
+        }
+
+        /**
+         * Run the program.
+         *
+         * @param in where "read" gets its numbers from.
+         * @param out where "write" sends its numbers to.
+         * @throws Interpreter.RuntimeError if the program fails.
+         */
+        void run(LongSupplier in, LongConsumer out) throws Interpreter.RuntimeError {
+            try {
+                run.invokeExact(in, out);
+            } catch (ArithmeticException ex) {
+                throw new Interpreter.RuntimeError(Interpreter.RuntimeError.DIVISION_BY_ZERO);
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    // A class loader for a single generated class.
+    private static final class ProgramClassLoader extends ClassLoader {
+
+        ProgramClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(byte[] classFile) {
+            return defineClass(CLASS_NAME, classFile, 0, classFile.length);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // The class file.
+    ////////////////////////////////////////////////////////////////////////////
+    private byte[] compileClass(Interpreter program) throws ProgramTooLargeException {
+        final var variables = program.getVariables().length;
+
+        // Every variable starts out as 0.
+        for (var slot = 0; slot < variables; slot++) {
+            push(LCONST_0, 2);
+            local(LSTORE, slot);
+            stack -= 2;
+        }
+        statement(program.getProgram());
+        emit(RETURN);
+
+        if (codeLength > 65535) {
+            throw new ProgramTooLargeException();
+        }
+
+        final var thisClass = classConstant(CLASS_NAME);
+        final var superClass = classConstant("java/lang/Object");
+        final var methodName = utf8(METHOD_NAME);
+        final var methodType = utf8(METHOD_TYPE.toMethodDescriptorString());
+        final var codeName = utf8("Code");
+
+        final var bytes = new ByteArrayOutputStream(codeLength + poolBytes.size() + 128);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+
+            out.writeShort(1); // methods
+            out.writeShort(ACC_PUBLIC | ACC_STATIC);
+            out.writeShort(methodName);
+            out.writeShort(methodType);
+            out.writeShort(1); // attributes
+
+            out.writeShort(codeName);
+            out.writeInt(12 + codeLength);
+            out.writeShort(maxStack);
+            out.writeShort(FIRST_LOCAL + 2 * variables);
+            out.writeInt(codeLength);
+            out.write(code, 0, codeLength);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+
+            out.writeShort(0); // class attributes
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // The constant pool (every constant is only added once).
+    ////////////////////////////////////////////////////////////////////////////
+    private interface PoolWriter {
+
+        void write(DataOutputStream pool) throws IOException;
+    }
+
+    private int constant(String key, int size, PoolWriter writer) {
+        final var index = poolIndexes.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            writer.write(pool);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        poolIndexes.put(key, poolCount);
+        poolCount += size;
+        return poolCount - size;
+    }
+
+    private int utf8(String value) {
+        return constant("U" + value, 1, p -> {
+            p.writeByte(CONSTANT_UTF8);
+            p.writeUTF(value);
+        });
+    }
+
+    private int classConstant(String name) {
+        final var nameIndex = utf8(name);
+        return constant("C" + name, 1, p -> {
+            p.writeByte(CONSTANT_CLASS);
+            p.writeShort(nameIndex);
+        });
+    }
+
+    private int longConstant(long value) {
+        // (A long takes up two entries of the pool.)
+        return constant("J" + value, 2, p -> {
+            p.writeByte(CONSTANT_LONG);
+            p.writeLong(value);
+        });
+    }
+
+    private int interfaceMethod(String owner, String name, String type) {
+        final var ownerIndex = classConstant(owner);
+        final var nameIndex = utf8(name);
+        final var typeIndex = utf8(type);
+        final var nameAndType = constant("N" + name + type, 1, p -> {
+            p.writeByte(CONSTANT_NAME_AND_TYPE);
+            p.writeShort(nameIndex);
+            p.writeShort(typeIndex);
+        });
+        return constant("I" + owner + "." + name + type, 1, p -> {
+            p.writeByte(CONSTANT_INTERFACE_METHODREF);
+            p.writeShort(ownerIndex);
+            p.writeShort(nameAndType);
+        });
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // The code: one method per kind of node.
+    ////////////////////////////////////////////////////////////////////////////
+    private void statement(Interpreter.Stmt statement) throws ProgramTooLargeException {
+        if (statement instanceof Interpreter.Block) {
+            for (var s : ((Interpreter.Block) statement).statements) {
+                statement(s);
+            }
+        } else if (statement instanceof Interpreter.Assign) {
+            final var assign = (Interpreter.Assign) statement;
+            expression(assign.value);
+            local(LSTORE, assign.slot);
+            stack -= 2;
+        } else if (statement instanceof Interpreter.Read) {
+            push(ALOAD_0, 1);
+            invokeInterface("java/util/function/LongSupplier", "getAsLong", "()J", 1);
+            stack += 2 - 1;
+            maxStack = Math.max(maxStack, stack);
+            local(LSTORE, ((Interpreter.Read) statement).slot);
+            stack -= 2;
+        } else if (statement instanceof Interpreter.Write) {
+            push(ALOAD_1, 1);
+            expression(((Interpreter.Write) statement).value);
+            invokeInterface("java/util/function/LongConsumer", "accept", "(J)V", 3);
+            stack -= 3;
+        } else if (statement instanceof Interpreter.If) {
+            // if (!condition) goto end; body; end:
+            final var ifStatement = (Interpreter.If) statement;
+            final var jump = condition(ifStatement.condition, false);
+            statement(ifStatement.body);
+            patch(jump, codeLength);
+        } else if (statement instanceof Interpreter.While) {
+            // goto test; body: ...; test: if (condition) goto body;
+            final var whileStatement = (Interpreter.While) statement;
+            final var jumpToTest = jump(GOTO);
+            final var body = codeLength;
+            statement(whileStatement.body);
+            patch(jumpToTest, codeLength);
+            final var jumpToBody = condition(whileStatement.condition, true);
+            patch(jumpToBody, body);
+        } else {
+            throw new IllegalArgumentException("Unknown statement: " + statement);
+        }
+    }
+
+    private void expression(Interpreter.Expr expression) {
+        if (expression instanceof Interpreter.Constant) {
+            final var value = ((Interpreter.Constant) expression).value;
+            if (value == 0 || value == 1) {
+                push(value == 0 ? LCONST_0 : LCONST_1, 2);
+            } else {
+                push(LDC2_W, 2);
+                emit2(longConstant(value));
+            }
+        } else if (expression instanceof Interpreter.Variable) {
+            local(LLOAD, ((Interpreter.Variable) expression).slot);
+            stack += 2;
+            maxStack = Math.max(maxStack, stack);
+        } else if (expression instanceof Interpreter.Add) {
+            binary(((Interpreter.Add) expression).left, ((Interpreter.Add) expression).right, LADD);
+        } else if (expression instanceof Interpreter.Subtract) {
+            binary(((Interpreter.Subtract) expression).left, ((Interpreter.Subtract) expression).right, LSUB);
+        } else if (expression instanceof Interpreter.Multiply) {
+            binary(((Interpreter.Multiply) expression).left, ((Interpreter.Multiply) expression).right, LMUL);
+        } else if (expression instanceof Interpreter.Divide) {
+            binary(((Interpreter.Divide) expression).left, ((Interpreter.Divide) expression).right, LDIV);
+        } else {
+            throw new IllegalArgumentException("Unknown expression: " + expression);
+        }
+    }
+
+    private void binary(Interpreter.Expr left, Interpreter.Expr right, int opcode) {
+        expression(left);
+        expression(right);
+        emit(opcode);
+        stack -= 2;
+    }
+
+    /**
+     * Compare the two sides of a condition, and emit a (not yet patched)
+     * jump taken when the condition is "when".
+     *
+     * @return the address of the jump, for patch().
+     */
+    private int condition(Interpreter.Condition condition, boolean when) {
+        final int ifTrue, ifFalse;
+        final Interpreter.Expr left, right;
+
+        if (condition instanceof Interpreter.LessThan) {
+            left = ((Interpreter.LessThan) condition).left;
+            right = ((Interpreter.LessThan) condition).right;
+            ifTrue = IFLT;
+            ifFalse = IFGE;
+        } else if (condition instanceof Interpreter.LessOrEqual) {
+            left = ((Interpreter.LessOrEqual) condition).left;
+            right = ((Interpreter.LessOrEqual) condition).right;
+            ifTrue = IFLE;
+            ifFalse = IFGT;
+        } else if (condition instanceof Interpreter.Equal) {
+            left = ((Interpreter.Equal) condition).left;
+            right = ((Interpreter.Equal) condition).right;
+            ifTrue = IFEQ;
+            ifFalse = IFNE;
+        } else if (condition instanceof Interpreter.NotEqual) {
+            left = ((Interpreter.NotEqual) condition).left;
+            right = ((Interpreter.NotEqual) condition).right;
+            ifTrue = IFNE;
+            ifFalse = IFEQ;
+        } else {
+            throw new IllegalArgumentException("Unknown condition: " + condition);
+        }
+
+        expression(left);
+        expression(right);
+        emit(LCMP);
+        stack -= 3;
+        final var jump = jump(when ? ifTrue : ifFalse);
+        stack -= 1;
+        return jump;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Writing the code.
+    ////////////////////////////////////////////////////////////////////////////
+    private void emit(int b) {
+        if (codeLength == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[codeLength++] = (byte) b;
+    }
+
+    private void emit2(int value) {
+        emit(value >> 8);
+        emit(value);
+    }
+
+    // Emit an instruction that pushes "size" stack entries.
+    private void push(int opcode, int size) {
+        emit(opcode);
+        stack += size;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    // lload/lstore of a program variable (WIDE past local 255).
+    private void local(int opcode, int slot) {
+        final var local = FIRST_LOCAL + 2 * slot;
+        if (local > 255) {
+            emit(WIDE);
+            emit(opcode);
+            emit2(local);
+        } else {
+            emit(opcode);
+            emit(local);
+        }
+    }
+
+    private void invokeInterface(String owner, String name, String type, int argumentSlots) {
+        emit(INVOKEINTERFACE);
+        emit2(interfaceMethod(owner, name, type));
+        emit(argumentSlots);
+        emit(0);
+    }
+
+    // Emit a jump to be patched later; returns the address of the jump.
+    private int jump(int opcode) {
+        final var address = codeLength;
+        emit(opcode);
+        emit2(0);
+        return address;
+    }
+
+    private void patch(int jump, int target) throws ProgramTooLargeException {
+        final var offset = target - jump;
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new ProgramTooLargeException();
+        }
+        code[jump + 1] = (byte) (offset >> 8);
+        code[jump + 2] = (byte) offset;
+    }
+}
@@ -0,0 +1,637 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * *****************************************************************************
+ * A cache of compilation results, in front of MAIN_Compiler.compile: compiling
+ * a file that was compiled before is a hash of the file and a copy of the old
+ * output, with no lexing or parsing at all.
+ *
+ * The key of a result is the SHA-256 of:
+ *
+ *   - the compiler itself (its jar, or all of its class files; see
+ *     COMPILER_VERSION), so a new compiler never sees the results of an old
+ *     one,
+ *   - the output mode (OUTPUT_MODE),
+ *   - the source, normalized: '#' comment lines are dropped (as SourceReader
+ *     does), and every run of whitespace is one space. Only the tokens make
+ *     it into the output, so re-indenting a file still hits.
+ *
+ * There are two tiers, both bounded by size:
+ *
+ *   - memory: the least recently used results are evicted first. (With a
+ *     disk tier too, a result goes into memory when it is first read back.)
+ *   - disk (optional): one file per result, under the cache directory. A
+ *     result is written to a temporary file and then moved into place, so
+ *     (any number of) processes can share the directory: a reader sees a
+ *     whole result, or none. A hit "touches" the file, and once the directory
+ *     grows past its size, the files touched longest ago are deleted.
+ *
+ * The results of files that don't compile are cached too (the output, and
+ * the syntax error). An output too big for either tier is never held in
+ * memory: it goes straight to its stream, and is not cached.
+ */
+final class CompileCache {
+
+    // The layout of a result file (bump it if it changes).
+    private static final int FORMAT = 0x43430001;
+
+    // The compiler, as a hash of its code (see above).
+    static final String COMPILER_VERSION = compilerVersion();
+
+    // A tier holds no result bigger than this part of its size.
+    private static final int LARGEST_ENTRY_FRACTION = 4;
+
+    // The disk tier is trimmed down to this part of its size (so it isn't
+    // trimmed again right away).
+    private static final double TRIM_TO = 0.9;
+
+    // A temporary file this old was left behind (see diskFiles).
+    private static final long STALE_MILLIS = 60 * 60 * 1000;
+
+    private static final Logger LOGGER = Logger.getLogger("CompileCache");
+
+    /**
+     * A cached result: the output (data[offset, offset + length)), and the
+     * syntax error (or null).
+     */
+    static final class Entry {
+
+        final byte[] data;
+        final int offset;
+        final int length;
+        final String error;
+
+        Entry(byte[] data, int offset, int length, String error) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            this.error = error;
+        }
+
+        // (Roughly) the memory it takes.
+        long size() {
+            return 64L + data.length + (error == null ? 0 : 2L * error.length());
+        }
+    }
+
+    private final long memoryBytes;
+    private final Path directory;
+    private final long diskBytes;
+
+    // The memory tier, least recently used first (guarded by itself).
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryUsed;
+
+    // The size of the disk tier, as far as this process knows (another one
+    // may be writing to it too; see trimDisk).
+    private final AtomicLong diskUsed = new AtomicLong();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong memoryEvictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    /**
+     * @param memoryBytes the size of the memory tier (0 for none).
+     * @param directory the directory of the disk tier, or null for none.
+     * @param diskBytes the size of the disk tier.
+     * @throws IOException if the directory can't be created or read.
+     */
+    CompileCache(long memoryBytes, Path directory, long diskBytes) throws IOException {
+        this.memoryBytes = memoryBytes;
+        this.directory = directory;
+        this.diskBytes = directory == null ? 0 : diskBytes;
+
+        if (directory != null) {
+            Files.createDirectories(directory);
+            diskUsed.set(diskFiles().stream().mapToLong(file -> file.size).sum());
+        }
+    }
+
+    /**
+     * Compile a file, or copy its cached result (see
+     * MAIN_Compiler.compile(File, OutputStream, OUTPUT_MODE)).
+     *
+     * @param inputFile the File to read for input.
+     * @param output where the generated code goes.
+     * @param mode what to generate.
+     * @return the syntax error that stopped the compilation, or null if the
+     * file compiled.
+     * @throws IOException if the file can't be read, or the output can't be
+     * written.
+     */
+    String compile(File inputFile, OutputStream output, OUTPUT_MODE mode) throws IOException {
+        final var key = key(inputFile.toPath(), mode);
+
+        final var entry = get(key);
+        if (entry != null) {
+            output.write(entry.data, entry.offset, entry.length);
+            return entry.error;
+        }
+
+        misses.incrementAndGet();
+        final var recording = new Recording(key, output);
+        try {
+            final var error = MAIN_Compiler.compile(inputFile, recording, mode);
+            recording.finish(error);
+            return error;
+        } finally {
+            recording.discard();
+        }
+    }
+
+    /**
+     * The key of a file, compiled in a mode (see the class comment), in hex.
+     *
+     * @param file the source file.
+     * @param mode the output mode.
+     * @return the key.
+     * @throws IOException if the file can't be read.
+     */
+    static String key(Path file, OUTPUT_MODE mode) throws IOException {
+        final var digest = sha256();
+        digest.update(COMPILER_VERSION.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(mode.name().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final var buffer = ByteBuffer.allocate(64 * 1024);
+            final var normalizer = new Normalizer(digest, buffer.capacity());
+            while (channel.read(buffer) >= 0) {
+                normalizer.update(buffer.array(), buffer.position());
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Feeds the source to the digest, normalized (see the class comment). The
+     * source is UTF-8, so its bytes can be looked at one by one: whitespace,
+     * '#' and the ends of lines are all ASCII, and never part of another
+     * character.
+     */
+    private static final class Normalizer {
+
+        // The kinds of bytes.
+        private static final byte OTHER = 0;
+        private static final byte SPACE = 1;
+        private static final byte END_OF_LINE = 2;
+        private static final byte HASH = 3;
+        private static final byte CONTROL = 4; // (not whitespace, but <= ' ')
+
+        private static final byte[] KINDS = new byte[256];
+
+        static {
+            for (var c = 0; c <= ' '; c++) {
+                KINDS[c] = CONTROL;
+            }
+            // (The whitespace of DfaScanner.)
+            KINDS[' '] = KINDS['\t'] = KINDS[0x0B] = KINDS['\f'] = SPACE;
+            KINDS['\n'] = KINDS['\r'] = END_OF_LINE;
+            KINDS['#'] = HASH;
+        }
+
+        private final MessageDigest digest;
+        private final byte[] out;
+
+        // (The same as in SourceReader.)
+        private boolean atLineStart = true;
+        private boolean inComment = false;
+
+        // Whitespace was skipped since the last character kept (leading
+        // whitespace doesn't count)?
+        private boolean started = false;
+        private boolean space = false;
+
+        // (Normalizing never more than doubles the bytes.)
+        Normalizer(MessageDigest digest, int chunkSize) {
+            this.digest = digest;
+            this.out = new byte[chunkSize + 1];
+        }
+
+        void update(byte[] bytes, int length) {
+            var atLineStart = this.atLineStart;
+            var inComment = this.inComment;
+            var started = this.started;
+            var space = this.space;
+            var write = 0;
+
+            for (var read = 0; read < length; read++) {
+                final var c = bytes[read];
+                final var kind = KINDS[c & 0xFF];
+
+                if (inComment) {
+                    if (kind == END_OF_LINE) {
+                        inComment = false;
+                        atLineStart = true;
+                        space = started;
+                    }
+                } else if (kind == OTHER || kind == CONTROL || kind == HASH && !atLineStart) {
+                    if (space) {
+                        out[write++] = ' ';
+                        space = false;
+                    }
+                    out[write++] = c;
+                    started = true;
+                    atLineStart &= kind == CONTROL;
+                } else if (kind == HASH) {
+                    inComment = true;
+                } else {
+                    space = started;
+                    atLineStart |= kind == END_OF_LINE;
+                }
+            }
+            digest.update(out, 0, write);
+
+            this.atLineStart = atLineStart;
+            this.inComment = inComment;
+            this.started = started;
+            this.space = space;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Every JVM has SHA-256", ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        final var hex = new StringBuilder(bytes.length * 2);
+        for (var b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    // A hash of the code source of the compiler: the jar, or every class file
+    // of the package (so nested classes, and classes added later, count too).
+    // If it can't be read, a random version: no results are shared with
+    // another process then, but none can be stale either.
+    private static String compilerVersion() {
+        final var digest = sha256();
+        try {
+            final var source = CompileCache.class.getProtectionDomain().getCodeSource();
+            if (source == null) {
+                throw new IOException("No code source");
+            }
+            final var location = Path.of(source.getLocation().toURI());
+            if (Files.isDirectory(location)) {
+                final var directory = location.resolve(CompileCache.class.getPackageName().replace('.', '/'));
+                final List<Path> classFiles;
+                try (Stream<Path> paths = Files.walk(directory)) {
+                    classFiles = paths
+                            .filter(path -> path.toString().endsWith(".class"))
+                            .sorted()
+                            .collect(Collectors.toList());
+                }
+                for (var path : classFiles) {
+                    digest.update(directory.relativize(path).toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(path));
+                }
+            } else {
+                digest.update(Files.readAllBytes(location));
+            }
+        } catch (IOException | URISyntaxException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Could not hash the compiler; results are not shared", ex);
+            digest.update(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return toHex(digest.digest()).substring(0, 16);
+    }
+
+    /**
+     * Look up a result: in memory first, then on disk (and a result found on
+     * disk is kept in memory from then on).
+     *
+     * @param key the key of the result.
+     * @return the result, or null.
+     */
+    Entry get(String key) {
+        synchronized (memory) {
+            final var entry = memory.get(key);
+            if (entry != null) {
+                memoryHits.incrementAndGet();
+                return entry;
+            }
+        }
+
+        final var entry = readDisk(key);
+        if (entry != null) {
+            diskHits.incrementAndGet();
+            putMemory(key, entry);
+        }
+        return entry;
+    }
+
+    private void putMemory(String key, Entry entry) {
+        final var size = entry.size();
+        if (size > memoryBytes / LARGEST_ENTRY_FRACTION) {
+            return;
+        }
+
+        synchronized (memory) {
+            final var old = memory.put(key, entry);
+            memoryUsed += size - (old == null ? 0 : old.size());
+
+            // Evict the least recently used results.
+            final var iterator = memory.values().iterator();
+            while (memoryUsed > memoryBytes && iterator.hasNext()) {
+                memoryUsed -= iterator.next().size();
+                iterator.remove();
+                memoryEvictions.incrementAndGet();
+            }
+        }
+    }
+
+    // eg. "DIR/3f/3f2a...", so that no one directory gets too big.
+    private Path diskFile(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    /**
+     * Read a result file:
+     *
+     *   int FORMAT, the output, boolean (a syntax error?), the error (UTF, if
+     *   any), int (the length of the output), int FORMAT.
+     *
+     * (The lengths are at the end, so the file can be written as the output
+     * is generated.)
+     */
+    private Entry readDisk(String key) {
+        if (directory == null) {
+            return null;
+        }
+
+        final var file = diskFile(key);
+        try {
+            final var data = Files.readAllBytes(file);
+            final var buffer = ByteBuffer.wrap(data);
+            final var end = data.length - 8;
+            if (data.length < 13 || buffer.getInt(0) != FORMAT || buffer.getInt(end + 4) != FORMAT) {
+                throw new IOException("Not a result file");
+            }
+            final var length = buffer.getInt(end);
+            if (length < 0 || length > end - 5) {
+                throw new IOException("Not a result file");
+            }
+
+            final var trailer = new DataInputStream(new ByteArrayInputStream(data, 4 + length, end - 4 - length));
+            final var error = trailer.readBoolean() ? trailer.readUTF() : null;
+
+            // (The most recently used files are evicted last.)
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return new Entry(data, 4, length, error);
+
+        } catch (NoSuchFileException ex) {
+            return null;
+        } catch (IOException ex) {
+            // eg. a file of an older format: compile instead (and replace it).
+            LOGGER.log(Level.FINE, "Could not read the cached result " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Passes the output of a compilation on, and records it on the way, as
+     * long as it isn't too big: into a temporary result file for the disk
+     * tier, or, with no disk tier, into memory. (With a disk tier, a result
+     * only goes into memory once it is read back from disk: copying every
+     * output of a batch into memory, only to evict it unread, costs more than
+     * it saves.)
+     */
+    private final class Recording extends OutputStream {
+
+        private final String key;
+        private final OutputStream out;
+
+        private ByteArrayOutputStream memoryCopy;
+        private Path temporary;
+        private DataOutputStream diskCopy;
+        private long length;
+
+        Recording(String key, OutputStream out) {
+            this.key = key;
+            this.out = out;
+            if (directory == null && memoryBytes > 0) {
+                memoryCopy = new ByteArrayOutputStream();
+            } else if (directory != null) {
+                try {
+                    final var file = diskFile(key);
+                    Files.createDirectories(file.getParent());
+                    temporary = Files.createTempFile(file.getParent(), key, ".tmp");
+                    diskCopy = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 64 * 1024));
+                    diskCopy.writeInt(FORMAT);
+                } catch (IOException ex) {
+                    // The result is just not cached on disk.
+                    LOGGER.log(Level.FINE, "Could not cache " + key, ex);
+                    discard();
+                }
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            out.write(bytes, offset, count);
+            length += count;
+
+            if (memoryCopy != null) {
+                if (length > memoryBytes / LARGEST_ENTRY_FRACTION) {
+                    memoryCopy = null;
+                } else {
+                    memoryCopy.write(bytes, offset, count);
+                }
+            }
+            if (diskCopy != null) {
+                if (length > Math.min(diskBytes / LARGEST_ENTRY_FRACTION, Integer.MAX_VALUE - 1024)) {
+                    discard();
+                } else {
+                    try {
+                        diskCopy.write(bytes, offset, count);
+                    } catch (IOException ex) {
+                        LOGGER.log(Level.FINE, "Could not cache " + key, ex);
+                        discard();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        // The compilation is done: cache what was recorded.
+        void finish(String error) {
+            if (memoryCopy != null) {
+                putMemory(key, new Entry(memoryCopy.toByteArray(), 0, (int) length, error));
+                memoryCopy = null;
+            }
+            if (diskCopy == null) {
+                return;
+            }
+
+            final var file = diskFile(key);
+            try {
+                diskCopy.writeBoolean(error != null);
+                if (error != null) {
+                    diskCopy.writeUTF(error);
+                }
+                diskCopy.writeInt((int) length);
+                diskCopy.writeInt(FORMAT);
+                diskCopy.close();
+                diskCopy = null;
+
+                final var size = Files.size(temporary);
+                try {
+                    Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+                temporary = null;
+
+                if (diskUsed.addAndGet(size) > diskBytes) {
+                    trimDisk();
+                }
+            } catch (IOException ex) {
+                // The result is just not cached on disk.
+                LOGGER.log(Level.FINE, "Could not cache " + file, ex);
+            }
+        }
+
+        // Drop the temporary file (if it wasn't moved into place).
+        void discard() {
+            try {
+                if (diskCopy != null) {
+                    diskCopy.close();
+                }
+                if (temporary != null) {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "Could not delete " + temporary, ex);
+            }
+            diskCopy = null;
+            temporary = null;
+        }
+    }
+
+    /**
+     * A result file, its size and when it was last used.
+     */
+    private static final class DiskFile {
+
+        final Path path;
+        final long size;
+        final long lastUsed;
+
+        DiskFile(Path path, long size, long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    // All of the result files. (Temporary files left behind by a process
+    // that died are deleted.)
+    private List<DiskFile> diskFiles() throws IOException {
+        final var stale = System.currentTimeMillis() - STALE_MILLIS;
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            final var found = new ArrayList<DiskFile>();
+            for (var path : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                try {
+                    final var lastUsed = Files.getLastModifiedTime(path).toMillis();
+                    if (!path.getFileName().toString().endsWith(".tmp")) {
+                        found.add(new DiskFile(path, Files.size(path), lastUsed));
+                    } else if (lastUsed < stale) {
+                        Files.deleteIfExists(path);
+                    }
+                } catch (NoSuchFileException ex) {
+                    // (Just evicted, or moved into place, by another process.)
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Delete the result files used longest ago, until the disk tier is back
+     * to TRIM_TO of its size. The directory is listed again first, which also
+     * counts what other processes have written.
+     */
+    private synchronized void trimDisk() throws IOException {
+        if (diskUsed.get() <= diskBytes) {
+            return; // (Another thread just did it.)
+        }
+
+        final var files = diskFiles();
+        files.sort(Comparator.comparingLong(file -> file.lastUsed));
+        var used = files.stream().mapToLong(file -> file.size).sum();
+
+        final var target = (long) (diskBytes * TRIM_TO);
+        for (var i = 0; i < files.size() && used > target; i++) {
+            if (Files.deleteIfExists(files.get(i).path)) {
+                diskEvictions.incrementAndGet();
+            }
+            used -= files.get(i).size;
+        }
+        diskUsed.set(used);
+    }
+
+    long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    long getDiskHits() {
+        return diskHits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getMemoryEvictions() {
+        return memoryEvictions.get();
+    }
+
+    long getDiskEvictions() {
+        return diskEvictions.get();
+    }
+}
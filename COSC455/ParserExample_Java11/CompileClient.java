@@ -0,0 +1,190 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * *****************************************************************************
+ * A thin client of the CompileServer: it sends programs over one connection
+ * and copies the output back, as it arrives. (See CompileServer for the
+ * protocol.)
+ *
+ * Usage: MAIN_Compiler --client [--host HOST] [--port N] FILE...
+ *
+ * The output of each FILE goes to FILE.dot, next to it.
+ */
+final class CompileClient implements Closeable {
+
+    private static final String USAGE = "Usage: MAIN_Compiler --client [--host HOST] [--port N] FILE...";
+
+    // How long to wait for the server to answer the connection.
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    // The chunk of output being copied.
+    private byte[] chunk = new byte[8192];
+
+    /**
+     * The result of a request: a status (CompileServer.OK, SYNTAX_ERROR,
+     * REJECTED or FAILED) and a message (eg. the syntax error).
+     */
+    static final class Response {
+
+        final byte status;
+        final String message;
+
+        Response(byte status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+
+        boolean isSuccess() {
+            return status == CompileServer.OK;
+        }
+    }
+
+    /**
+     * Connect to a CompileServer.
+     *
+     * @param host the host of the server (eg. "localhost").
+     * @param port its port.
+     * @throws IOException if it can't be reached.
+     */
+    CompileClient(String host, int port) throws IOException {
+        this.socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        } catch (IOException ex) {
+            socket.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Compile a program on the server.
+     *
+     * @param source the program (UTF-8).
+     * @param output where the output goes, as it arrives.
+     * @return the status of the compile.
+     * @throws IOException if the connection fails.
+     */
+    Response compile(byte[] source, OutputStream output) throws IOException {
+        out.writeInt(source.length);
+        out.write(source);
+        out.flush();
+
+        for (var length = in.readInt(); length > 0; length = in.readInt()) {
+            if (length > chunk.length) {
+                chunk = new byte[length];
+            }
+            in.readFully(chunk, 0, length);
+            output.write(chunk, 0, length);
+        }
+        return new Response(in.readByte(), in.readUTF());
+    }
+
+    /**
+     * Compile a program on the server.
+     *
+     * @param source the program.
+     * @return the output (if it compiled).
+     * @throws Parser.ParseException if it did not.
+     * @throws IOException if the connection fails.
+     */
+    String compile(String source) throws IOException {
+        final var output = new ByteArrayOutputStream();
+        final var response = compile(source.getBytes(StandardCharsets.UTF_8), output);
+        if (!response.isSuccess()) {
+            throw new Parser.ParseException(response.message);
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Compile files on a server, from the command line.
+     *
+     * @param args the command line arguments (see the class comment).
+     * @return the exit status: 0 if everything compiled, 1 if not, 2 for bad
+     * arguments.
+     */
+    static int run(String[] args) {
+        var host = "localhost";
+        var port = CompileServer.DEFAULT_PORT;
+        var first = 0;
+
+        try {
+            for (; first < args.length && args[first].startsWith("--"); first += 2) {
+                if (first + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[first]);
+                }
+                switch (args[first]) {
+                    case "--host":
+                        host = args[first + 1];
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[first + 1]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[first]);
+                }
+            }
+            if (first == args.length) {
+                throw new IllegalArgumentException("No input files");
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        var failures = 0;
+        try (var client = new CompileClient(host, port)) {
+            for (var i = first; i < args.length; i++) {
+                final var file = Path.of(args[i]);
+                final byte[] source;
+                try {
+                    source = Files.readAllBytes(file);
+                } catch (IOException ex) {
+                    failures++;
+                    System.err.printf("FAILED %s: could not read it: %s%n", file, ex);
+                    continue;
+                }
+
+                final Response response;
+                try (var output = new BufferedOutputStream(Files.newOutputStream(Path.of(args[i] + ".dot")))) {
+                    response = client.compile(source, output);
+                }
+                if (!response.isSuccess()) {
+                    failures++;
+                    System.err.printf("FAILED %s: %s%n", file, response.message);
+                }
+            }
+        } catch (IOException ex) {
+            System.err.printf("Could not compile on %s:%d: %s%n", host, port, ex);
+            return 1;
+        }
+        return failures == 0 ? 0 : 1;
+    }
+}
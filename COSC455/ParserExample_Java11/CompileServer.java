@@ -0,0 +1,482 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * *****************************************************************************
+ * A long lived compile server: the JVM starts (and the JIT warms up) once, and
+ * then compiles program after program sent to it over a socket, so a small
+ * program takes well under a millisecond rather than a whole JVM start.
+ *
+ * Usage: MAIN_Compiler --server [--port N] [--bind ADDRESS] [--threads N]
+ *            [--max-connections N] [--max-request SIZE] [--idle-timeout SECONDS]
+ *
+ * The protocol (see CompileClient), over one connection, any number of times:
+ *
+ *   request:  int length, then the program (length bytes of UTF-8).
+ *   response: the GraphViz output, as frames of (int length, bytes), as it
+ *             is generated; then an int 0, the status (a byte: OK,
+ *             SYNTAX_ERROR, REJECTED or FAILED) and a message (writeUTF).
+ *
+ * Every connection has a thread of its own, which reads the requests; the
+ * compiling itself is done on a pool of worker threads (one per processor by
+ * default), straight into the socket. Limits:
+ *
+ *   - At most --max-connections connections are served at once. Past that,
+ *     the server stops accepting (backpressure): new clients wait in the
+ *     listen backlog of the socket until a connection closes.
+ *   - A request longer than --max-request is REJECTED (and the connection
+ *     closed).
+ *   - A connection that sends nothing for --idle-timeout seconds is closed.
+ *   - So is one that stops reading its response: a write to it that is stuck
+ *     for --idle-timeout seconds (sockets have no timeout of their own for
+ *     writes) closes the socket, so the write fails and the worker is free
+ *     again. Otherwise a few such clients could hold every worker forever.
+ *
+ * NOTE: The server listens on the loopback address by default (and has no
+ * authentication, so keep it that way). Java 11 has no Unix domain sockets,
+ * so it is TCP only. Programs are parsed by the TableDrivenParser: the same
+ * output as the Parser, without the deep recursion on a pool thread.
+ */
+final class CompileServer implements Closeable {
+
+    static final int DEFAULT_PORT = 4555;
+
+    // The status at the end of every response.
+    static final byte OK = 0;
+    static final byte SYNTAX_ERROR = 1;
+    static final byte REJECTED = 2;
+    static final byte FAILED = 3;
+
+    private static final String USAGE = "Usage: MAIN_Compiler --server [--port N] [--bind ADDRESS] [--threads N] [--max-connections N] [--max-request SIZE] [--idle-timeout SECONDS]";
+
+    private static final Logger LOGGER = Logger.getLogger("CompileServer");
+
+    private final ServerSocket serverSocket;
+    private final int maxRequestBytes;
+    private final int idleTimeoutMillis;
+
+    // A permit per connection being served.
+    private final Semaphore connectionPermits;
+    private final ExecutorService connections;
+    private final ExecutorService workers;
+
+    // The output of every connection, checked for stuck writes (or null,
+    // with no timeout).
+    private final Set<GuardedOutputStream> outputs = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService watchdog;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+    private final AtomicLong stalledConnections = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Start listening (but not accepting yet; see serve()).
+     *
+     * @param address the address to listen on (eg. the loopback address).
+     * @param port the port, or 0 for any free one (see getPort()).
+     * @param threads the number of worker threads.
+     * @param maxConnections the most connections served at once.
+     * @param maxRequestBytes the longest program accepted.
+     * @param idleTimeoutMillis how long a connection may wait between
+     * requests, and a write to it may be stuck (0 for ever).
+     * @throws IOException if the port can't be listened on.
+     */
+    CompileServer(InetAddress address, int port, int threads, int maxConnections,
+            int maxRequestBytes, int idleTimeoutMillis) throws IOException {
+        this.serverSocket = new ServerSocket(port, maxConnections, address);
+        this.maxRequestBytes = maxRequestBytes;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.connectionPermits = new Semaphore(maxConnections);
+        this.connections = Executors.newCachedThreadPool(daemonThreads("compile-connection"));
+        this.workers = Executors.newFixedThreadPool(threads, daemonThreads("compile-worker"));
+
+        if (idleTimeoutMillis > 0) {
+            final var period = Math.max(100, Math.min(1000, idleTimeoutMillis / 4));
+            this.watchdog = Executors.newSingleThreadScheduledExecutor(daemonThreads("compile-watchdog"));
+            watchdog.scheduleWithFixedDelay(this::closeStalled, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.watchdog = null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        final var count = new AtomicInteger();
+        return runnable -> {
+            final var thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Run the server from the command line, until it is killed.
+     *
+     * @param args the command line arguments (see the class comment).
+     * @return the exit status: 2 for bad arguments, 1 if the server failed.
+     */
+    static int run(String[] args) {
+        var port = DEFAULT_PORT;
+        var address = InetAddress.getLoopbackAddress();
+        var threads = Runtime.getRuntime().availableProcessors();
+        var maxConnections = 64;
+        var maxRequestBytes = 16 << 20;
+        var idleTimeoutSeconds = 60;
+
+        try {
+            for (var i = 0; i < args.length; i++) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+                switch (args[i]) {
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--bind":
+                        address = InetAddress.getByName(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--max-connections":
+                        maxConnections = Integer.parseInt(args[++i]);
+                        break;
+                    case "--max-request":
+                        maxRequestBytes = Math.toIntExact(ProgramGenerator.parseSize(args[++i]));
+                        break;
+                    case "--idle-timeout":
+                        idleTimeoutSeconds = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (threads < 1 || maxConnections < 1 || maxRequestBytes < 0 || idleTimeoutSeconds < 0) {
+                throw new IllegalArgumentException("The limits must be positive");
+            }
+        } catch (IllegalArgumentException | ArithmeticException | IOException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        try (var server = new CompileServer(address, port, threads, maxConnections,
+                maxRequestBytes, idleTimeoutSeconds * 1000)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            System.err.printf("Listening on %s:%d (%d worker threads, at most %d connections)%n",
+                    address.getHostAddress(), server.getPort(), threads, maxConnections);
+            server.serve();
+            return 0;
+        } catch (IOException ex) {
+            System.err.printf("Could not listen on port %d: %s%n", port, ex.getMessage());
+            return 1;
+        }
+    }
+
+    // The port the server listens on.
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // The number of requests answered (compiled or not), and of those that
+    // were rejected.
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getRejectedRequests() {
+        return rejectedRequests.get();
+    }
+
+    // The number of connections closed as they stopped reading.
+    long getStalledConnections() {
+        return stalledConnections.get();
+    }
+
+    // Close the connections with a write stuck for too long.
+    private void closeStalled() {
+        final var now = System.nanoTime();
+        for (var output : outputs) {
+            if (output.isStalled(now, TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis))) {
+                stalledConnections.incrementAndGet();
+                output.closeSocket();
+            }
+        }
+    }
+
+    /**
+     * Accept connections until the server is closed.
+     */
+    void serve() {
+        while (!closed) {
+            try {
+                // Wait for a free connection before accepting another one.
+                connectionPermits.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException ex) {
+                connectionPermits.release();
+                if (!closed) {
+                    LOGGER.log(Level.WARNING, "Could not accept a connection", ex);
+                }
+                continue;
+            }
+
+            connections.execute(() -> {
+                try {
+                    serveConnection(socket);
+                } finally {
+                    connectionPermits.release();
+                }
+            });
+        }
+    }
+
+    // Accept connections on a thread of its own (eg. for a server inside
+    // another program).
+    CompileServer start() {
+        daemonThreads("compile-server").newThread(this::serve).start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Error closing the server socket", ex);
+        }
+        connections.shutdownNow();
+        workers.shutdownNow();
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+    }
+
+    // Answer the requests of one client, until it hangs up.
+    private void serveConnection(Socket socket) {
+        GuardedOutputStream output = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(idleTimeoutMillis);
+            final var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            output = new GuardedOutputStream(socket);
+            if (watchdog != null) {
+                outputs.add(output);
+            }
+            final var out = new DataOutputStream(new BufferedOutputStream(output, 64 * 1024));
+
+            while (!closed) {
+                final int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException | SocketTimeoutException ex) {
+                    return; // (Done, or idle for too long.)
+                }
+
+                requests.incrementAndGet();
+                if (length < 0 || length > maxRequestBytes) {
+                    rejectedRequests.incrementAndGet();
+                    endResponse(out, REJECTED, String.format(
+                            "The program is too long: %d bytes (at most %d)", length, maxRequestBytes));
+                    return; // (The rest of the request can't be skipped safely.)
+                }
+
+                final var source = in.readNBytes(length);
+                if (source.length < length) {
+                    return;
+                }
+
+                try {
+                    workers.submit(() -> {
+                        compile(source, out);
+                        return null;
+                    }).get();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof IOException) {
+                        return; // (The client went away.)
+                    }
+                    LOGGER.log(Level.WARNING, "Compile failed", ex.getCause());
+                    return;
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Connection closed", ex);
+        } finally {
+            if (output != null) {
+                outputs.remove(output);
+            }
+        }
+    }
+
+    /**
+     * Compile one program, streaming the output (and the status) to the
+     * client.
+     */
+    private static void compile(byte[] source, DataOutputStream out) throws IOException {
+        final var chars = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(source));
+        // (The '#' comment lines are dropped, as when a file is read.)
+        final var length = SourceReader.stripComments(chars.array(), chars.limit());
+        final var writer = new OutputStreamWriter(new FrameOutputStream(out), StandardCharsets.UTF_8);
+
+        final var metrics = CompilerMetrics.start();
+        var success = false;
+        try {
+            final var lexer = new LexicalAnalyzer(chars.array(), length);
+            if (metrics != null) {
+                metrics.addBytesRead(source.length);
+                metrics.countTokens(lexer.getTokenStream());
+                metrics.lap(CompilerMetrics.PHASE.TOKENIZE);
+            }
+
+            final var codeGenerator = new CodeGenerator(writer, false);
+            codeGenerator.setMetrics(metrics);
+            final var parser = new TableDrivenParser(lexer, codeGenerator);
+            success = parser.analyze();
+            codeGenerator.flush();
+
+            endResponse(out, success ? OK : SYNTAX_ERROR, success ? "" : parser.getSyntaxError());
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause(); // (From the CodeGenerator: the client went away.)
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Compile failed", ex);
+            writer.flush();
+            endResponse(out, FAILED, String.valueOf(ex));
+        } finally {
+            if (metrics != null) {
+                metrics.lap(CompilerMetrics.PHASE.PARSE);
+                metrics.finish(success);
+            }
+        }
+    }
+
+    private static void endResponse(DataOutputStream out, byte status, String message) throws IOException {
+        out.writeInt(0);
+        out.writeByte(status);
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    /**
+     * The output of a socket, which notes when a write (or flush) started, so
+     * that the watchdog can tell when one is stuck.
+     */
+    private static final class GuardedOutputStream extends FilterOutputStream {
+
+        // "No write in progress".
+        private static final long NOT_WRITING = Long.MIN_VALUE;
+
+        private final Socket socket;
+        private volatile long writeStart = NOT_WRITING;
+
+        GuardedOutputStream(Socket socket) throws IOException {
+            super(socket.getOutputStream());
+            this.socket = socket;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            writeStart = System.nanoTime();
+            try {
+                out.write(bytes, offset, length);
+            } finally {
+                writeStart = NOT_WRITING;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeStart = System.nanoTime();
+            try {
+                out.flush();
+            } finally {
+                writeStart = NOT_WRITING;
+            }
+        }
+
+        boolean isStalled(long now, long timeoutNanos) {
+            final var start = writeStart;
+            return start != NOT_WRITING && now - start > timeoutNanos;
+        }
+
+        // (The stuck write then fails with a SocketException.)
+        void closeSocket() {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "Error closing a stalled connection", ex);
+            }
+        }
+    }
+
+    /**
+     * Writes every chunk of output as a frame: (int length, bytes).
+     */
+    private static final class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+
+        FrameOutputStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > 0) {
+                out.writeInt(length);
+                out.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
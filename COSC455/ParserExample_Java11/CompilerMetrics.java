@@ -0,0 +1,378 @@
+package COSC455.ParserExample_Java11;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * *****************************************************************************
+ * Counters and timers for every phase of MAIN_Compiler.compile, so a slow
+ * compile can be blamed on the right phase:
+ *
+ *   READ      reading (and decoding) the input file,
+ *   TOKENIZE  the LexicalAnalyzer,
+ *   PARSE     the Parser (and, for GraphViz, formatting the output as it goes),
+ *   OPTIMIZE  the Interpreter and the Optimizer (bytecode only),
+ *   GENERATE  the BytecodeCompiler (bytecode), or the AbstractSyntaxTree (ast),
+ *   WRITE     handing the output to its stream.
+ *
+ * Along with the time (and the bytes allocated by the compiling thread) per
+ * phase, the bytes read, the tokens by type, the parse tree nodes by
+ * nonterminal, the deepest nonterminal and the bytes written are counted (and,
+ * for "--format ast", the nodes of the abstract syntax trees, and of the
+ * parse trees they were built from).
+ *
+ * Each compilation counts into its own Compilation (no locks, no sharing), and
+ * only adds it to the totals when it is done, so the cost is a few clock reads
+ * per phase, plus one increment per token and per nonterminal node. The totals
+ * are published as a JMX MBean (see CompilerMetricsMXBean), and as JSON with
+ * "--metrics FILE" (see BatchCompiler).
+ *
+ * To turn all of this off (no counting, no clock reads, no MBean), run with
+ * -Dcompiler.metrics=off.
+ */
+final class CompilerMetrics implements CompilerMetricsMXBean {
+
+    // -Dcompiler.metrics=off turns the metrics off.
+    static final boolean ENABLED = !"off".equalsIgnoreCase(System.getProperty("compiler.metrics", "on"));
+
+    // The name of the MBean.
+    static final String OBJECT_NAME = "COSC455.ParserExample_Java11:type=CompilerMetrics";
+
+    /**
+     * The phases of a compilation (see above).
+     */
+    enum PHASE {
+        READ, TOKENIZE, PARSE, OPTIMIZE, GENERATE, WRITE
+    }
+
+    private static final PHASE[] PHASES = PHASE.values();
+    private static final TOKEN[] TOKENS = TOKEN.values();
+    private static final NONTERMINAL[] NONTERMINALS = NONTERMINAL.values();
+
+    // Allocations by thread, if the JVM can count them (HotSpot can).
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private static final CompilerMetrics INSTANCE = new CompilerMetrics();
+
+    static {
+        if (ENABLED) {
+            Registration.register();
+        }
+    }
+
+    /**
+     * Registers the MBean. (A class of its own, so that with the metrics off,
+     * nothing of JMX is ever loaded: not even JMException, which the verifier
+     * would load for a "catch" in CompilerMetrics itself.)
+     */
+    private static final class Registration {
+
+        static void register() {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            } catch (JMException | SecurityException ex) {
+                Logger.getLogger("CompilerMetrics").log(Level.WARNING, "Could not register the metrics MBean", ex);
+            }
+        }
+    }
+
+    // The totals (guarded by "this").
+    private long compilations;
+    private long failedCompilations;
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final long[] phaseAllocated = new long[PHASES.length];
+    private final long[] tokens = new long[TOKENS.length];
+    private final long[] nodes = new long[NONTERMINALS.length];
+    private long bytesRead;
+    private long outputBytes;
+    private int maxDepth;
+    private long astNodes;
+    private long astParseTreeNodes;
+
+    private CompilerMetrics() {
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (!ENABLED) {
+            return null;
+        }
+        final var threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            final var counter = (com.sun.management.ThreadMXBean) threads;
+            if (counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled()) {
+                return counter;
+            }
+        }
+        return null;
+    }
+
+    // The bytes allocated by the current thread so far (0 if unknown).
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // The totals of every compilation so far.
+    static CompilerMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start counting a compilation (on the current thread); its clock starts
+     * now, in the READ phase.
+     *
+     * @return the compilation, or null if the metrics are turned off.
+     */
+    static Compilation start() {
+        return ENABLED ? new Compilation() : null;
+    }
+
+    /**
+     * The counts of one compilation, on one thread (no locking).
+     */
+    static final class Compilation {
+
+        private final long[] phaseNanos = new long[PHASES.length];
+        private final long[] phaseAllocated = new long[PHASES.length];
+        private final long[] tokens = new long[TOKENS.length];
+        private final long[] nodes = new long[NONTERMINALS.length];
+        private long bytesRead;
+        private long outputBytes;
+        private int maxDepth;
+        private long astNodes;
+        private long astParseTreeNodes;
+
+        // Where the current phase started.
+        private long lapNanos = System.nanoTime();
+        private long lapAllocated = allocatedBytes();
+
+        // The writes (see beginWrite) during the current phase, which are not
+        // part of it.
+        private long writeNanos;
+        private long writeAllocated;
+        private long writeStartNanos;
+        private long writeStartAllocated;
+
+        /**
+         * End a phase: everything since the end of the previous one (but the
+         * writes) was spent in it.
+         *
+         * @param phase the phase that just ended.
+         */
+        void lap(PHASE phase) {
+            final var nanos = System.nanoTime();
+            final var allocated = allocatedBytes();
+            phaseNanos[phase.ordinal()] += nanos - lapNanos - writeNanos;
+            phaseAllocated[phase.ordinal()] += allocated - lapAllocated - writeAllocated;
+            lapNanos = nanos;
+            lapAllocated = allocated;
+            writeNanos = 0;
+            writeAllocated = 0;
+        }
+
+        // Output is being written, in the middle of another phase.
+        void beginWrite() {
+            writeStartNanos = System.nanoTime();
+            writeStartAllocated = allocatedBytes();
+        }
+
+        // The output (of some number of bytes) was written.
+        void endWrite(long bytes) {
+            final var nanos = System.nanoTime() - writeStartNanos;
+            final var allocated = allocatedBytes() - writeStartAllocated;
+            writeNanos += nanos;
+            writeAllocated += allocated;
+            phaseNanos[PHASE.WRITE.ordinal()] += nanos;
+            phaseAllocated[PHASE.WRITE.ordinal()] += allocated;
+            outputBytes += bytes;
+        }
+
+        void addBytesRead(long bytes) {
+            bytesRead += bytes;
+        }
+
+        void countTokens(TokenStream tokenStream) {
+            for (var i = 0; i < tokenStream.size(); i++) {
+                tokens[tokenStream.tokenAt(i).ordinal()]++;
+            }
+        }
+
+        // A nonterminal node, "depth" nonterminals down.
+        void countNode(NONTERMINAL nonTerminal, int depth) {
+            nodes[nonTerminal.ordinal()]++;
+            if (depth > maxDepth) {
+                maxDepth = depth;
+            }
+        }
+
+        // All of the nonterminal nodes of a (whole) tree.
+        void countNodes(ParseTree tree) {
+            tree.walk(new ParseTree.Visitor() {
+                private int depth;
+
+                @Override
+                public void enter(ParseTree t, int node) {
+                    final var symbol = t.getSymbol(node);
+                    if (symbol < ParseTree.TOKEN_BASE) {
+                        countNode(NONTERMINALS[symbol], depth);
+                    }
+                    depth++;
+                }
+
+                @Override
+                public void exit(ParseTree t, int node) {
+                    depth--;
+                }
+            });
+        }
+
+        // An abstract syntax tree (and the parse tree it was built from).
+        void countAst(AbstractSyntaxTree ast) {
+            astNodes += ast.size();
+            astParseTreeNodes += ast.getParseTreeSize();
+        }
+
+        /**
+         * The compilation is done: add it to the totals.
+         *
+         * @param success false if it failed.
+         */
+        void finish(boolean success) {
+            INSTANCE.add(this, success);
+        }
+    }
+
+    private synchronized void add(Compilation compilation, boolean success) {
+        compilations++;
+        if (!success) {
+            failedCompilations++;
+        }
+        addAll(phaseNanos, compilation.phaseNanos);
+        addAll(phaseAllocated, compilation.phaseAllocated);
+        addAll(tokens, compilation.tokens);
+        addAll(nodes, compilation.nodes);
+        bytesRead += compilation.bytesRead;
+        outputBytes += compilation.outputBytes;
+        maxDepth = Math.max(maxDepth, compilation.maxDepth);
+        astNodes += compilation.astNodes;
+        astParseTreeNodes += compilation.astParseTreeNodes;
+    }
+
+    private static void addAll(long[] totals, long[] counts) {
+        for (var i = 0; i < totals.length; i++) {
+            totals[i] += counts[i];
+        }
+    }
+
+    // The non-zero counts, by name (in order).
+    private static Map<String, Long> byName(Enum<?>[] names, long[] counts) {
+        final var map = new LinkedHashMap<String, Long>();
+        for (var i = 0; i < names.length; i++) {
+            if (counts[i] != 0) {
+                map.put(names[i].name(), counts[i]);
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public synchronized long getCompilations() {
+        return compilations;
+    }
+
+    @Override
+    public synchronized long getFailedCompilations() {
+        return failedCompilations;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getPhaseNanos() {
+        return byName(PHASES, phaseNanos);
+    }
+
+    @Override
+    public synchronized Map<String, Long> getPhaseAllocatedBytes() {
+        return byName(PHASES, phaseAllocated);
+    }
+
+    @Override
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getTokens() {
+        return byName(TOKENS, tokens);
+    }
+
+    @Override
+    public synchronized Map<String, Long> getNodes() {
+        return byName(NONTERMINALS, nodes);
+    }
+
+    @Override
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public synchronized long getOutputBytes() {
+        return outputBytes;
+    }
+
+    @Override
+    public synchronized long getAstNodes() {
+        return astNodes;
+    }
+
+    @Override
+    public synchronized long getAstParseTreeNodes() {
+        return astParseTreeNodes;
+    }
+
+    /**
+     * eg. {"compilations":3,"failedCompilations":0,"phaseNanos":{"READ":...},
+     * ..., "maxDepth":12,"outputBytes":5120,"astNodes":0,"astParseTreeNodes":0}
+     */
+    @Override
+    public synchronized String getSummary() {
+        final var json = new StringBuilder("{");
+        json.append("\"compilations\":").append(compilations)
+                .append(",\"failedCompilations\":").append(failedCompilations);
+        appendMap(json.append(",\"phaseNanos\":"), getPhaseNanos());
+        appendMap(json.append(",\"phaseAllocatedBytes\":"), getPhaseAllocatedBytes());
+        json.append(",\"bytesRead\":").append(bytesRead);
+        appendMap(json.append(",\"tokens\":"), getTokens());
+        appendMap(json.append(",\"nodes\":"), getNodes());
+        json.append(",\"maxDepth\":").append(maxDepth)
+                .append(",\"outputBytes\":").append(outputBytes)
+                .append(",\"astNodes\":").append(astNodes)
+                .append(",\"astParseTreeNodes\":").append(astParseTreeNodes);
+        return json.append('}').toString();
+    }
+
+    // (The keys are enum names: nothing to escape.)
+    private static void appendMap(StringBuilder json, Map<String, Long> map) {
+        final var joiner = new StringJoiner(",", "{", "}");
+        map.forEach((key, value) -> joiner.add("\"" + key + "\":" + value));
+        json.append(joiner);
+    }
+
+    @Override
+    public synchronized void reset() {
+        compilations = 0;
+        failedCompilations = 0;
+        Arrays.fill(phaseNanos, 0);
+        Arrays.fill(phaseAllocated, 0);
+        Arrays.fill(tokens, 0);
+        Arrays.fill(nodes, 0);
+        bytesRead = 0;
+        outputBytes = 0;
+        maxDepth = 0;
+        astNodes = 0;
+        astParseTreeNodes = 0;
+    }
+}
@@ -0,0 +1,53 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.Map;
+
+/**
+ * *****************************************************************************
+ * The management interface of CompilerMetrics: the totals of every compilation
+ * so far, as seen in JConsole, VisualVM, etc. under
+ * "COSC455.ParserExample_Java11:type=CompilerMetrics".
+ *
+ * (JMX insists that this interface is public.)
+ */
+public interface CompilerMetricsMXBean {
+
+    // The number of compilations (finished), and of those that failed.
+    long getCompilations();
+
+    long getFailedCompilations();
+
+    // The time spent in each phase (see CompilerMetrics.PHASE), in nanoseconds.
+    Map<String, Long> getPhaseNanos();
+
+    // The bytes allocated (by the compiling thread) in each phase.
+    Map<String, Long> getPhaseAllocatedBytes();
+
+    // The size of the input files.
+    long getBytesRead();
+
+    // The number of tokens, by token type.
+    Map<String, Long> getTokens();
+
+    // The number of parse tree nodes, by nonterminal.
+    Map<String, Long> getNodes();
+
+    // The deepest nonterminal in any parse tree (the deepest the Parser has
+    // recursed).
+    int getMaxDepth();
+
+    // The size of the output.
+    long getOutputBytes();
+
+    // The nodes of the abstract syntax trees ("--format ast"), and of the
+    // parse trees they were built from.
+    long getAstNodes();
+
+    long getAstParseTreeNodes();
+
+    // All of the above, as JSON.
+    String getSummary();
+
+    // Start counting from zero again.
+    void reset();
+}
@@ -0,0 +1,298 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.*;
+
+/**
+ * *****************************************************************************
+ * Where every variable is defined (assigned, or read into) and used, found by
+ * a pass over a (complete) parse tree; and the variables that look wrong:
+ *
+ *   - read before it is assigned: a use that isn't preceded by a definition
+ *     on every path to it. (The body of an if or a while may not run, so what
+ *     is assigned in it doesn't count after it.) The variable is 0 then, which
+ *     is rarely what was meant.
+ *   - unused: defined but never used.
+ *
+ * Only the first such use (or definition) of each variable is reported, and
+ * these are warnings rather than errors: the program still compiles.
+ *
+ * Variables are the int ids of the SymbolTable, so the "is it assigned yet"
+ * sets are just BitSets.
+ */
+final class DefUse {
+
+    private final ParseTree tree;
+    private final SymbolTable symbolTable;
+
+    // Every definition and use, in the order of the program: its variable,
+    // its token, and whether it is a definition.
+    private int[] siteVariables = new int[64];
+    private int[] siteTokens = new int[64];
+    private boolean[] siteDefinitions = new boolean[64];
+    private int sites;
+
+    // By variable: the number of definitions and uses, the first definition,
+    // and the first use that may come before any definition (or NONE).
+    private final int[] definitionCounts;
+    private final int[] useCounts;
+    private final int[] firstDefinitions;
+    private final int[] firstUnassignedUses;
+
+    private final List<Warning> warnings = new ArrayList<>();
+
+    /**
+     * A variable that looks wrong, with where it was found.
+     */
+    static final class Warning {
+
+        private final String message;
+        private final String variable;
+        private final int line;
+        private final int column;
+
+        Warning(String message, String variable, int line, int column) {
+            this.message = message;
+            this.variable = variable;
+            this.line = line;
+            this.column = column;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        // The name of the variable, eg. "sum".
+        public String getVariable() {
+            return variable;
+        }
+
+        // The line (from 1) of the token the warning is about.
+        public int getLine() {
+            return line;
+        }
+
+        // The column (from 1) of the token the warning is about.
+        public int getColumn() {
+            return column;
+        }
+
+        // eg. "3:7: WARNING: ..."
+        @Override
+        public String toString() {
+            return String.format("%d:%d: %s", line, column, message);
+        }
+    }
+
+    private DefUse(ParseTree tree) {
+        this.tree = tree;
+        this.symbolTable = tree.getSymbolTable();
+
+        final var variables = symbolTable.size();
+        this.definitionCounts = new int[variables];
+        this.useCounts = new int[variables];
+        this.firstDefinitions = new int[variables];
+        this.firstUnassignedUses = new int[variables];
+        Arrays.fill(firstDefinitions, ParseTree.NONE);
+        Arrays.fill(firstUnassignedUses, ParseTree.NONE);
+    }
+
+    /**
+     * Find the definitions and uses of the variables of a program.
+     *
+     * @param tree the parse tree of the program.
+     * @return the definitions, uses and warnings.
+     * @throws Parser.ParseException if the tree is incomplete (the parse
+     * stopped at a syntax error).
+     */
+    static DefUse analyze(ParseTree tree) {
+        if (tree.size() == 0) {
+            throw new Parser.ParseException("SYNTAX ERROR: no program");
+        }
+        if (tree.getErrorNode() != ParseTree.NONE) {
+            throw new Parser.ParseException(tree.getError());
+        }
+
+        final var defUse = new DefUse(tree);
+
+        // <PARSE TREE> -> <PROGRAM> -> <STMT_LIST>
+        final var program = tree.getFirstChild(tree.getRoot());
+        defUse.stmtList(tree.getFirstChild(program), new BitSet());
+        defUse.warn();
+        return defUse;
+    }
+
+    // The identifiers the variables are ids of.
+    SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    // The number of times a variable is defined (assigned, or read into).
+    int getDefinitionCount(int variable) {
+        return definitionCounts[variable];
+    }
+
+    // The number of times a variable is used (in an expression).
+    int getUseCount(int variable) {
+        return useCounts[variable];
+    }
+
+    /**
+     * @param variable a SymbolTable id.
+     * @return the tokens (TokenStream indexes) where it is defined, in order.
+     */
+    int[] getDefinitions(int variable) {
+        return sitesOf(variable, true, definitionCounts[variable]);
+    }
+
+    /**
+     * @param variable a SymbolTable id.
+     * @return the tokens (TokenStream indexes) where it is used, in order.
+     */
+    int[] getUses(int variable) {
+        return sitesOf(variable, false, useCounts[variable]);
+    }
+
+    // The warnings, in the order of the program.
+    List<Warning> getWarnings() {
+        return Collections.unmodifiableList(warnings);
+    }
+
+    private int[] sitesOf(int variable, boolean definitions, int count) {
+        final var tokens = new int[count];
+        var n = 0;
+        for (var i = 0; i < sites && n < count; i++) {
+            if (siteVariables[i] == variable && siteDefinitions[i] == definitions) {
+                tokens[n++] = siteTokens[i];
+            }
+        }
+        return tokens;
+    }
+
+    private void addSite(int leaf, boolean definition) {
+        if (sites == siteVariables.length) {
+            final var capacity = sites * 2;
+            siteVariables = Arrays.copyOf(siteVariables, capacity);
+            siteTokens = Arrays.copyOf(siteTokens, capacity);
+            siteDefinitions = Arrays.copyOf(siteDefinitions, capacity);
+        }
+        siteVariables[sites] = tree.getVariable(leaf);
+        siteTokens[sites] = tree.getTokenIndex(leaf);
+        siteDefinitions[sites] = definition;
+        sites++;
+    }
+
+    // A variable (given its leaf node) is assigned.
+    private void define(int leaf, BitSet assigned) {
+        final var variable = tree.getVariable(leaf);
+        addSite(leaf, true);
+        definitionCounts[variable]++;
+        if (firstDefinitions[variable] == ParseTree.NONE) {
+            firstDefinitions[variable] = tree.getTokenIndex(leaf);
+        }
+        assigned.set(variable);
+    }
+
+    // Every variable below a node (an <EXPR> or <CONDITION>) is used.
+    private void use(int node, BitSet assigned) {
+        // (A pre-order walk of the sub-tree, without recursion.)
+        var n = node;
+        while (true) {
+            if (tree.getSymbol(n) == ParseTree.LEXEME && tree.getVariable(n) != SymbolTable.NONE) {
+                final var variable = tree.getVariable(n);
+                addSite(n, false);
+                useCounts[variable]++;
+                if (!assigned.get(variable) && firstUnassignedUses[variable] == ParseTree.NONE) {
+                    firstUnassignedUses[variable] = tree.getTokenIndex(n);
+                }
+            }
+
+            if (tree.getFirstChild(n) != ParseTree.NONE) {
+                n = tree.getFirstChild(n);
+                continue;
+            }
+            while (n != node && tree.getNextSibling(n) == ParseTree.NONE) {
+                n = tree.getParent(n);
+            }
+            if (n == node) {
+                return;
+            }
+            n = tree.getNextSibling(n);
+        }
+    }
+
+    // The i-th child of a node.
+    private int child(int node, int i) {
+        var child = tree.getFirstChild(node);
+        while (i-- > 0 && child != ParseTree.NONE) {
+            child = tree.getNextSibling(child);
+        }
+        if (child == ParseTree.NONE) {
+            throw new Parser.ParseException("SYNTAX ERROR: incomplete " + tree.getLabel(node));
+        }
+        return child;
+    }
+
+    // The leaf below a "<TOKEN>" node.
+    private int leaf(int tokenNode) {
+        return child(tokenNode, 0);
+    }
+
+    // <STMT_LIST> -> <STMT> <STMT_LIST> | (nothing); done with a loop, as in
+    // the Interpreter. "assigned" is updated as the statements go.
+    private void stmtList(int node, BitSet assigned) {
+        while (node != ParseTree.NONE && tree.getFirstChild(node) != ParseTree.NONE) {
+            final var statement = tree.getFirstChild(node);
+            stmt(statement, assigned);
+            node = tree.getNextSibling(statement);
+        }
+    }
+
+    private void stmt(int node, BitSet assigned) {
+        final var first = child(node, 0);
+
+        switch (tree.getToken(first)) {
+            case IF: // IF CONDITION THEN STMT_LIST ENDIF
+            case WHILE: // WHILE CONDITION DO STMT_LIST DONE
+                use(child(node, 1), assigned);
+                // (The body may not run: what it assigns is forgotten after.)
+                stmtList(child(node, 3), (BitSet) assigned.clone());
+                break;
+            case OTHER: // OTHER ASGN EXPR
+                use(child(node, 2), assigned);
+                define(leaf(first), assigned);
+                break;
+            case READ: // READ OTHER
+                define(leaf(child(node, 1)), assigned);
+                break;
+            case WRITE: // WRITE EXPR
+                use(child(node, 1), assigned);
+                break;
+            default: // a stray "do" does nothing.
+                break;
+        }
+    }
+
+    // Turn the first unassigned uses and the unused variables into warnings,
+    // in the order of the program.
+    private void warn() {
+        final var found = new ArrayList<int[]>(); // {token, variable, unused?}
+        for (var variable = 0; variable < symbolTable.size(); variable++) {
+            if (firstUnassignedUses[variable] != ParseTree.NONE) {
+                found.add(new int[]{firstUnassignedUses[variable], variable, 0});
+            }
+            if (useCounts[variable] == 0 && firstDefinitions[variable] != ParseTree.NONE) {
+                found.add(new int[]{firstDefinitions[variable], variable, 1});
+            }
+        }
+        found.sort(Comparator.comparingInt(f -> f[0]));
+
+        final var tokens = tree.getTokens();
+        for (var f : found) {
+            final var name = symbolTable.getName(f[1]);
+            final var message = f[2] == 0
+                    ? String.format("WARNING: '%s' may be read before it is assigned (it is 0 until then).", name)
+                    : String.format("WARNING: '%s' is assigned but never used.", name);
+            warnings.add(new Warning(message, name, tokens.lineAt(f[0]), tokens.columnAt(f[0])));
+        }
+    }
+}
@@ -0,0 +1,638 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.*;
+
+/**
+ * *****************************************************************************
+ * Keeps a program parsed while it is being edited (eg. in an editor, on every
+ * keystroke), re-lexing and re-parsing only the statements around each edit.
+ *
+ * The program is kept as a list of its top level statements, each with its own
+ * (small) ParseTree and tokens. This works because the parse of a statement
+ * only depends on the tokens from its start onwards, plus a single token of
+ * lookahead past its end. So after an edit:
+ *
+ *   1. The "damaged" statements are the one holding the edit, plus the one
+ *      before it (its lookahead token may have changed).
+ *   2. Their text (plus one more statement, for the lookahead) is lexed and
+ *      parsed again, one top level statement at a time.
+ *   3. As soon as a new statement starts exactly where an old, undamaged one
+ *      did, the rest of the old statements are kept as they were: the same
+ *      text, so the same tokens and the same trees.
+ *
+ * If the new statements "run into" the end of what was lexed (eg. an "if"
+ * was typed, and it takes the following statements with it), the range is
+ * doubled and parsed again.
+ *
+ * The body of an "if" or "while" (its STMT_LIST) is a list of statements
+ * too, kept the same way: the tree of the "if" or "while" itself only has
+ * the nodes around its body. So an edit is re-parsed in the innermost body
+ * that holds all of it (not touching the "then" or "do" before it, nor the
+ * "fi" or "od" after it, with whitespace in between): an edit deep inside a
+ * big loop re-parses a statement or two of the loop, not the whole loop. If
+ * the new statements no longer fit in the body (eg. an "od" was typed, or a
+ * "while" without one), or the last one might take the token after the body
+ * (a "while" takes any token as its "od"), the body around it is re-parsed
+ * instead, and so on out to the program. (MAIN_CrossCheck checks the tree
+ * against a full parse after thousands of random edits.)
+ *
+ * The node ids of a statement's tree are relative to the statement, so the
+ * trees that are kept keep their node ids; only the ids of the statements are
+ * offset in the whole tree (see getTree()). Likewise the offsets of the
+ * statements of a body are from the start of its "if" or "while", so only
+ * the statements after the edit in each enclosing list move along.
+ *
+ * NOTE: The text is lexed like a String (see LexicalAnalyzer(String)), so '#'
+ * comment lines are not dropped. Apart from the re-parse, the cost of an edit
+ * is only moving the text and the statement lists along (System.arraycopy)
+ * and adjusting the offsets of the statements after the edit.
+ */
+final class IncrementalParser {
+
+    // The label of the root, as in Parser.analyze().
+    private static final String ROOT_LABEL = "PARSE TREE";
+
+    private static final int STMT_LIST = NONTERMINAL.STMT_LIST.ordinal();
+
+    // The text of the program; only text[0, length) is used.
+    private char[] text;
+    private int length;
+
+    // The top level statements, in order (see Statement).
+    private final List<Statement> statements = new ArrayList<>();
+
+    // What the last edit did.
+    private int reparsedStatements;
+    private int keptStatements;
+
+    /**
+     * One statement: its tokens and its tree, as parsed from its start. It
+     * owns the text from its start to the start of the next one.
+     *
+     * NOTE: The parse ends at the first statement with a syntax error, or at
+     * the (tree-less) tokens that don't start a statement. The statements
+     * after that are not part of the program any more, but are kept in case a
+     * later edit makes them part of it again. (Only at the top level: the
+     * statements of a body all parsed.)
+     */
+    private static final class Statement {
+
+        // Where the statement starts (its first token): in the text for a top
+        // level statement, else from the start of the "if" or "while" whose
+        // body it is in.
+        int start;
+
+        // Its tokens: tokens[firstToken, firstToken + tokenCount). (With a
+        // body, the tokens up to the "then" or "do" only.)
+        final TokenStream tokens;
+        final int firstToken;
+        final int tokenCount;
+
+        // Where "start" is in the source buffer of the tokens.
+        final int sourceOffset;
+
+        // Its tree (the root stands for the STMT_LIST above the statement), or
+        // null for the tokens the parser stopped at.
+        final ParseTree tree;
+
+        // The statements of the body of an "if" or "while" that parsed, or
+        // null. (Their nodes go before the tree node bodyNode, the first one
+        // of the "fi" or "od", as children of the STMT node.)
+        List<Statement> body;
+        int bodyNode;
+
+        // Where the body starts (just past the "then" or "do"), and where the
+        // "fi" or "od" does, from start.
+        int bodyStart;
+        int tailStart;
+
+        // The tokens of the "fi" or "od": tokens[tailToken, tailToken +
+        // tailTokenCount).
+        int tailToken;
+        int tailTokenCount;
+
+        Statement(int start, TokenStream tokens, int firstToken, int tokenCount, int sourceOffset, ParseTree tree) {
+            this.start = start;
+            this.tokens = tokens;
+            this.firstToken = firstToken;
+            this.tokenCount = tokenCount;
+            this.sourceOffset = sourceOffset;
+            this.tree = tree;
+        }
+
+        // Does the parse stop here?
+        boolean isLast() {
+            return tree == null || tree.getError() != null;
+        }
+    }
+
+    /**
+     * A list of statements being re-parsed: the program, or the body of an
+     * "if" or "while".
+     */
+    private static final class Block {
+
+        final List<Statement> statements;
+
+        // The "if" or "while" of a body (null for the program), and where it
+        // starts in the text (the offsets of the statements are from there).
+        final Statement owner;
+        final int base;
+
+        // The statement before the edit, and the one holding its end (found
+        // by their offsets before the text moves).
+        final int first;
+        final int damaged;
+
+        Block(List<Statement> statements, Statement owner, int base, int offset, int end) {
+            this.statements = statements;
+            this.owner = owner;
+            this.base = base;
+            this.first = Math.max(0, statementAt(offset) - 1);
+            this.damaged = statementAt(end);
+        }
+
+        // The index of the statement that owns the text at an offset, or -1
+        // for the whitespace before the first statement.
+        int statementAt(int offset) {
+            var low = 0;
+            var high = statements.size() - 1;
+            while (low <= high) {
+                final var middle = (low + high) >>> 1;
+                if (base + statements.get(middle).start <= offset) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low - 1;
+        }
+
+        // Where the statements of the block start in the text.
+        int start() {
+            return owner == null ? 0 : base + owner.bodyStart;
+        }
+    }
+
+    // How the parse of a region ended.
+    private enum Outcome {
+        // Lined up with the old statements after it (or the end): done.
+        DONE,
+        // Ran into the end of what was lexed: parse a longer region.
+        LONGER,
+        // The statements no longer fit in their body: re-parse the enclosing
+        // block instead.
+        ENCLOSING
+    }
+
+    /**
+     * Parse a whole program.
+     *
+     * @param program the text of the program.
+     */
+    IncrementalParser(String program) {
+        this.text = program.toCharArray();
+        this.length = text.length;
+        reparse(List.of(new Block(statements, null, 0, 0, -1)), 0, 0);
+    }
+
+    /**
+     * Edit the text, and re-parse the statements around the edit.
+     *
+     * @param offset where the edit starts.
+     * @param removedLength the number of characters removed from there.
+     * @param insertedText the text inserted in their place.
+     * @throws IndexOutOfBoundsException if the removed text is not in the
+     * program.
+     */
+    void edit(int offset, int removedLength, String insertedText) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Edit [%d, %d) outside the program [0, %d)", offset, offset + removedLength, length));
+        }
+
+        // The blocks holding the edit, from the program in to the innermost
+        // body holding all of it. (Found before the text moves.)
+        final var end = offset + removedLength;
+        final var blocks = new ArrayList<Block>();
+        var block = new Block(statements, null, 0, offset, end);
+        while (true) {
+            blocks.add(block);
+            if (block.damaged < 0 || block.statementAt(offset) != block.damaged) {
+                break;
+            }
+            final var statement = block.statements.get(block.damaged);
+            final var start = block.base + statement.start;
+            if (statement.body == null || !isInBody(statement, start, offset, end)) {
+                break;
+            }
+            block = new Block(statement.body, statement, start, offset, end);
+        }
+
+        replaceText(offset, removedLength, insertedText);
+
+        var level = blocks.size() - 1;
+        while (!reparse(blocks, level, insertedText.length() - removedLength)) {
+            level--;
+        }
+    }
+
+    // Is the text [offset, end) inside the body of an "if" or "while" (at
+    // "start"), with whitespace that stays on both sides? (Then the "then" or
+    // "do", and the "fi" or "od", are lexed just as they were.)
+    private boolean isInBody(Statement statement, int start, int offset, int end) {
+        final var bodyStart = start + statement.bodyStart;
+        final var tailStart = start + statement.tailStart;
+        return offset > bodyStart && end < tailStart
+                && DfaScanner.isWhitespace(text[bodyStart]) && DfaScanner.isWhitespace(text[tailStart - 1]);
+    }
+
+    private void replaceText(int offset, int removedLength, String insertedText) {
+        final var newLength = length - removedLength + insertedText.length();
+        if (newLength > text.length) {
+            text = Arrays.copyOf(text, Math.max(newLength, text.length + (text.length >> 1)));
+        }
+        System.arraycopy(text, offset + removedLength, text, offset + insertedText.length(),
+                length - offset - removedLength);
+        insertedText.getChars(0, insertedText.length(), text, offset);
+        length = newLength;
+    }
+
+    /**
+     * Re-parse the statements of a block from "first" on, until the parse
+     * lines up with an old statement after "damaged" (or the end of the
+     * block).
+     *
+     * @param blocks the blocks holding the edit (see edit()).
+     * @param level the block to re-parse.
+     * @param delta how far the text after the edit has moved.
+     * @return false if the statements of a body no longer fit in it.
+     */
+    private boolean reparse(List<Block> blocks, int level, int delta) {
+        final var block = blocks.get(level);
+        final var statements = block.statements;
+        for (var lookahead = 1;; lookahead *= 2) {
+            final var last = Math.min(statements.size() - 1, block.damaged + lookahead);
+            final var atEnd = last == statements.size() - 1;
+            final var regionStart = block.first == 0 ? block.start() : block.base + statements.get(block.first).start;
+            final int regionEnd;
+            if (!atEnd) {
+                regionEnd = block.base + statements.get(last + 1).start + delta;
+            } else if (block.owner != null) {
+                regionEnd = block.base + block.owner.tailStart + delta;
+            } else {
+                regionEnd = length;
+            }
+
+            final var outcome = parseRegion(blocks, level, last, atEnd, regionStart, regionEnd, delta);
+            if (outcome != Outcome.LONGER) {
+                return outcome == Outcome.DONE;
+            }
+        }
+    }
+
+    /**
+     * Lex text[regionStart, regionEnd) (the old statements first to last of
+     * the block) and parse it, statement by statement.
+     */
+    private Outcome parseRegion(List<Block> blocks, int level, int last, boolean atEnd,
+            int regionStart, int regionEnd, int delta) {
+        final var block = blocks.get(level);
+        final var source = Arrays.copyOfRange(text, regionStart, regionEnd);
+        final var lexer = new LexicalAnalyzer(source, source.length);
+        final var tokens = lexer.getTokenStream();
+
+        final var parsed = new ArrayList<Statement>();
+        var reusable = block.damaged + 1;
+
+        while (true) {
+            final var index = lexer.getCurrentTokenIndex();
+            final var position = (index < tokens.size() ? regionStart + tokens.startAt(index) : regionEnd) - block.base;
+
+            // Lined up with an old statement after the edit? Keep the rest.
+            while (reusable <= last && block.statements.get(reusable).start + delta < position) {
+                reusable++;
+            }
+            if (reusable <= last && block.statements.get(reusable).start + delta == position) {
+                splice(blocks, level, reusable, parsed, delta);
+                return Outcome.DONE;
+            }
+
+            if (index == tokens.size()) {
+                if (!atEnd) {
+                    return Outcome.LONGER;
+                }
+                splice(blocks, level, last + 1, parsed, delta);
+                return Outcome.DONE;
+            }
+
+            // The parser stops at a token that can't start a statement (in a
+            // body, that has to be its "fi" or "od", which isn't lexed here).
+            if (!Parser.isStatementStart(lexer.getCurrentToken())) {
+                if (block.owner != null) {
+                    return Outcome.ENCLOSING;
+                }
+                parsed.add(new Statement(position, tokens, index, tokens.size() - index, tokens.startAt(index), null));
+                splice(blocks, level, last + 1, parsed, delta);
+                return Outcome.DONE;
+            }
+
+            final var tree = new ParseTree(16);
+            final var treeBuilder = new ParseTreeBuilder(tree, lexer);
+            try {
+                new Parser(lexer, treeBuilder).stmt(treeBuilder.writeHeader(ROOT_LABEL));
+            } catch (Parser.ParseException ex) {
+                // (Recorded in the tree.)
+            }
+
+            // Did the parse look past what was lexed?
+            final var end = lexer.getCurrentTokenIndex();
+            if (end == tokens.size() && !atEnd) {
+                return Outcome.LONGER;
+            }
+            // (The end of a body is its "fi" or "od", which a "while" can't
+            // end at the end of the input instead of; see Parser.ENDWHILE().)
+            if (block.owner != null && end == tokens.size() && lastToken(tree) == tokens.size()) {
+                return Outcome.ENCLOSING;
+            }
+            // The lookahead past the body is its "fi" or "od", which isn't
+            // lexed here: fine, as neither can go on a statement. But a
+            // "while" takes any token as its "od" (eg. "+"), which the last
+            // statement of its body might have taken instead.
+            if (block.owner != null && end == tokens.size() && !isBodyEnd(block.owner)) {
+                return Outcome.ENCLOSING;
+            }
+
+            final Statement statement;
+            if (tree.getError() == null && hasBody(tree, 1, tree.size())) {
+                statement = split(tree, 1, tree.size(), block.base - regionStart);
+            } else {
+                statement = new Statement(position, tokens, index, end - index, tokens.startAt(index), tree);
+            }
+            if (statement.isLast() && block.owner != null) {
+                return Outcome.ENCLOSING;
+            }
+            parsed.add(statement);
+            if (statement.isLast()) {
+                splice(blocks, level, last + 1, parsed, delta);
+                return Outcome.DONE;
+            }
+        }
+    }
+
+    // Replace the old statements [first, end) of a block with the new ones;
+    // the ones after them (and the "fi" or "od" of every body around them,
+    // and the statements after those) have moved by delta.
+    private void splice(List<Block> blocks, int level, int end, List<Statement> parsed, int delta) {
+        final var block = blocks.get(level);
+        final var statements = block.statements;
+        statements.subList(block.first, end).clear();
+        statements.addAll(block.first, parsed);
+        move(statements, block.first + parsed.size(), delta);
+
+        for (var i = level; i > 0; i--) {
+            final var enclosing = blocks.get(i - 1);
+            blocks.get(i).owner.tailStart += delta;
+            move(enclosing.statements, enclosing.damaged + 1, delta);
+        }
+
+        reparsedStatements = parsed.size();
+        keptStatements = statements.size() - parsed.size();
+    }
+
+    private static void move(List<Statement> statements, int from, int delta) {
+        for (var i = from; i < statements.size(); i++) {
+            statements.get(i).start += delta;
+        }
+    }
+
+    // Is the token after the body of an "if" or "while" a real "fi" or "od"?
+    private static boolean isBodyEnd(Statement statement) {
+        final var token = statement.tokens.tokenAt(statement.tailToken);
+        return token == TOKEN.ENDIF || token == TOKEN.DONE;
+    }
+
+    // The STMT_LIST of the body of an "if" or "while" (a STMT node), or NONE.
+    private static int bodyOf(ParseTree tree, int stmt) {
+        for (var child = tree.getFirstChild(stmt); child != ParseTree.NONE; child = tree.getNextSibling(child)) {
+            if (tree.getSymbol(child) == STMT_LIST) {
+                return child;
+            }
+        }
+        return ParseTree.NONE;
+    }
+
+    // Does a STMT node that parsed, [stmt, end), have a body to split off? (A
+    // "while" can end at the end of the input, see Parser.ENDWHILE(), with no
+    // "od" to keep apart from its body: then it is kept whole.)
+    private static boolean hasBody(ParseTree tree, int stmt, int end) {
+        final var body = bodyOf(tree, stmt);
+        return body != ParseTree.NONE && firstToken(tree, tree.getNextSibling(body), end) < tree.getTokens().size();
+    }
+
+    /**
+     * Make a Statement of a STMT node that parsed, and its nodes [stmt, end);
+     * the statements of its body (if it has one) become statements of their
+     * own, and so on for the bodies in them.
+     *
+     * @param origin where the start of the statement is measured from, in the
+     * source buffer of the tokens.
+     */
+    private static Statement split(ParseTree source, int stmt, int end, int origin) {
+        final var tokens = source.getTokens();
+        final var body = bodyOf(source, stmt);
+        final var headEnd = body == ParseTree.NONE ? end : body;
+        final var tail = body == ParseTree.NONE ? end : source.getNextSibling(body);
+
+        final var tree = new ParseTree(headEnd - stmt + end - tail + 1);
+        tree.reset(tokens);
+        tree.addRoot(ROOT_LABEL, 0);
+        copyNodes(source, stmt, headEnd, tree, stmt, headEnd, tail);
+
+        final var firstToken = firstToken(source, stmt, headEnd);
+        final var sourceOffset = tokens.startAt(firstToken);
+        final var statement = new Statement(sourceOffset - origin, tokens, firstToken,
+                tokenCount(source, stmt, headEnd), sourceOffset, tree);
+        if (body == ParseTree.NONE) {
+            return statement;
+        }
+
+        statement.body = new ArrayList<>();
+        for (var list = body; source.getFirstChild(list) != ParseTree.NONE;) {
+            final var child = source.getFirstChild(list);
+            final var next = source.getNextSibling(child);
+            statement.body.add(split(source, child, next, sourceOffset));
+            list = next;
+        }
+
+        final var lastToken = firstToken + statement.tokenCount - 1;
+        statement.bodyStart = tokens.startAt(lastToken) + tokens.lengthAt(lastToken) - sourceOffset;
+        statement.bodyNode = tree.size();
+        copyNodes(source, tail, end, tree, stmt, headEnd, tail);
+        statement.tailToken = firstToken(source, tail, end);
+        statement.tailTokenCount = tokenCount(source, tail, end);
+        statement.tailStart = tokens.startAt(statement.tailToken) - sourceOffset;
+        return statement;
+    }
+
+    // Copy the nodes [from, to) of a statement [stmt, ...) without its body
+    // [body, tail). (The root of the copy stands for the STMT_LIST above it.)
+    private static void copyNodes(ParseTree source, int from, int to, ParseTree tree, int stmt, int body, int tail) {
+        final var bodyNode = body - stmt + 1;
+        for (var node = from; node < to; node++) {
+            final var parent = source.getParent(node);
+            final int copiedParent;
+            if (node == stmt) {
+                copiedParent = tree.getRoot();
+            } else if (parent < body) {
+                copiedParent = parent - stmt + 1;
+            } else {
+                copiedParent = bodyNode + parent - tail;
+            }
+            tree.addNode(copiedParent, source.getSymbol(node), source.getTokenIndex(node));
+        }
+    }
+
+    // The first token (leaf) of the nodes [from, to).
+    private static int firstToken(ParseTree source, int from, int to) {
+        for (var node = from; node < to; node++) {
+            if (source.getSymbol(node) == ParseTree.LEXEME) {
+                return source.getTokenIndex(node);
+            }
+        }
+        return ParseTree.NONE;
+    }
+
+    // The last token (leaf) of a tree.
+    private static int lastToken(ParseTree tree) {
+        for (var node = tree.size() - 1; node > tree.getRoot(); node--) {
+            if (tree.getSymbol(node) == ParseTree.LEXEME) {
+                return tree.getTokenIndex(node);
+            }
+        }
+        return ParseTree.NONE;
+    }
+
+    // The number of tokens (leaves) of the nodes [from, to).
+    private static int tokenCount(ParseTree source, int from, int to) {
+        var count = 0;
+        for (var node = from; node < to; node++) {
+            if (source.getSymbol(node) == ParseTree.LEXEME) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // The number of statements parsed by the last edit (in the innermost
+    // block re-parsed: the program, or the body of an "if" or "while").
+    int getReparsedStatements() {
+        return reparsedStatements;
+    }
+
+    // The number of statements of that block kept as they were by the last
+    // edit.
+    int getKeptStatements() {
+        return keptStatements;
+    }
+
+    // The current text of the program.
+    String getText() {
+        return new String(text, 0, length);
+    }
+
+    /**
+     * Put the whole parse tree together: the same tree (with the same node
+     * ids) as parsing the current text from scratch, eg. for
+     * CodeGenerator.writeTree. (This takes time in proportion to the size of
+     * the program, of course.)
+     *
+     * @param tree the tree to fill in (it is reset first).
+     * @return the tree.
+     */
+    ParseTree getTree(ParseTree tree) {
+        // One token stream for all of the statements, over a copy of the text.
+        final var tokens = new TokenStream(Arrays.copyOf(text, length), length);
+        tree.reset(tokens);
+
+        final var root = tree.addRoot(ROOT_LABEL, 0);
+        var parent = tree.addNode(root, NONTERMINAL.PROGRAM.ordinal(), ParseTree.NONE);
+
+        for (var statement : statements) {
+            final var list = tree.addNode(parent, STMT_LIST, ParseTree.NONE);
+            if (statement.tree == null) {
+                return tree;
+            }
+            addStatement(tree, statement, 0, list);
+
+            final var statementTree = statement.tree;
+            if (statementTree.getError() != null) {
+                tree.setError(list + statementTree.getErrorNode(), statementTree.getError());
+                return tree;
+            }
+            parent = list;
+        }
+
+        // The (empty) STMT_LIST at the end of the program.
+        tree.addNode(parent, STMT_LIST, ParseTree.NONE);
+        return tree;
+    }
+
+    /**
+     * Add the nodes of a statement below its STMT_LIST (and its tokens): the
+     * nodes of its own tree, with those of the statements of its body (if it
+     * has one) in between.
+     *
+     * @param base where the start of the statement is from (see
+     * Statement.start).
+     */
+    private static void addStatement(ParseTree tree, Statement statement, int base, int list) {
+        final var start = base + statement.start;
+        final var statementTree = statement.tree;
+        final var headEnd = statement.body == null ? statementTree.size() : statement.bodyNode;
+
+        // The nodes of the statement follow its STMT_LIST, in order.
+        final var firstToken = addTokens(tree.getTokens(), statement.tokens, statement.firstToken,
+                statement.tokenCount, start - statement.sourceOffset);
+        for (var node = 1; node < headEnd; node++) {
+            tree.addNode(list + statementTree.getParent(node), statementTree.getSymbol(node),
+                    moveToken(statementTree.getTokenIndex(node), firstToken - statement.firstToken));
+        }
+        if (statement.body == null) {
+            return;
+        }
+
+        // The body: a STMT_LIST for every statement, below the STMT node.
+        var parent = list + 1;
+        for (var child : statement.body) {
+            final var childList = tree.addNode(parent, STMT_LIST, ParseTree.NONE);
+            addStatement(tree, child, start, childList);
+            parent = childList;
+        }
+        tree.addNode(parent, STMT_LIST, ParseTree.NONE);
+
+        // The "fi" or "od".
+        final var tailToken = addTokens(tree.getTokens(), statement.tokens, statement.tailToken,
+                statement.tailTokenCount, start + statement.tailStart - statement.tokens.startAt(statement.tailToken));
+        final var offset = tree.size() - headEnd;
+        for (var node = headEnd; node < statementTree.size(); node++) {
+            final var parentNode = statementTree.getParent(node);
+            tree.addNode(parentNode < headEnd ? list + parentNode : offset + parentNode, statementTree.getSymbol(node),
+                    moveToken(statementTree.getTokenIndex(node), tailToken - statement.tailToken));
+        }
+    }
+
+    // Add the tokens [first, first + count) of a statement, moved by "shift"
+    // from where they were lexed; returns the index of the first one.
+    private static int addTokens(TokenStream tokens, TokenStream from, int first, int count, int shift) {
+        final var index = tokens.size();
+        for (var i = first; i < first + count; i++) {
+            tokens.add(from.tokenAt(i), shift + from.startAt(i), from.lengthAt(i));
+        }
+        return index;
+    }
+
+    private static int moveToken(int tokenIndex, int shift) {
+        return tokenIndex == ParseTree.NONE ? ParseTree.NONE : tokenIndex + shift;
+    }
+}
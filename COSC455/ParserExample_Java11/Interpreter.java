@@ -0,0 +1,536 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * *****************************************************************************
+ * A "tree walking" interpreter for the language of the Parser.
+ *
+ * The parse tree itself is a poor thing to execute (all of those TERM_TAIL and
+ * &epsilon; nodes!), so compile() first turns it into a small tree of
+ * executable nodes: one node per statement, operator, variable or number.
+ * Running the program is then just a matter of calling exec()/eval() on the
+ * root.
+ *
+ * Every variable is given a "slot" (an index into a long[]) at compile time,
+ * so accessing a variable at run time is a plain array access rather than a
+ * lookup by name. All arithmetic is done on Java longs (64 bit, wrapping on
+ * overflow; "/" truncates) and variables start out as 0.
+ */
+final class Interpreter {
+
+    // The variable names, by slot.
+    private final String[] variables;
+
+    // The whole program.
+    private final Stmt program;
+
+    Interpreter(String[] variables, Stmt program) {
+        this.variables = variables;
+        this.program = program;
+    }
+
+    /**
+     * An error while running a program (eg. division by zero, or reading past
+     * the end of the input).
+     */
+    static class RuntimeError extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        // The message of an ArithmeticException (the only one is "/ 0"),
+        // whose own message may be null: eg. one the JIT throws without it.
+        static final String DIVISION_BY_ZERO = "RUNTIME ERROR: division by zero";
+
+        public RuntimeError(String errMsg) {
+            super(errMsg);
+        }
+    }
+
+    /**
+     * Compile a parse tree.
+     *
+     * @param tree a tree built by ParseTreeBuilder (eg. MAIN_Compiler.parse).
+     * @return the compiled program.
+     * @throws Parser.ParseException if the program didn't parse.
+     */
+    static Interpreter compile(ParseTree tree) throws Parser.ParseException {
+        return new Compiler(tree).compile();
+    }
+
+    // The variable names, by slot.
+    String[] getVariables() {
+        return variables.clone();
+    }
+
+    // The compiled program (eg. for another back end to translate).
+    Stmt getProgram() {
+        return program;
+    }
+
+    /**
+     * Run the program.
+     *
+     * @param in where "read" gets its numbers from.
+     * @param out where "write" sends its numbers to.
+     * @return the final values of the variables, by slot.
+     * @throws RuntimeError if the program fails.
+     */
+    long[] run(LongSupplier in, LongConsumer out) throws RuntimeError {
+        final var frame = new Frame(new long[variables.length], in, out);
+        try {
+            program.exec(frame);
+        } catch (ArithmeticException ex) {
+            throw new RuntimeError(RuntimeError.DIVISION_BY_ZERO);
+        }
+        return frame.slots;
+    }
+
+    /**
+     * The state of a running program.
+     */
+    static final class Frame {
+
+        final long[] slots;
+        final LongSupplier in;
+        final LongConsumer out;
+
+        Frame(long[] slots, LongSupplier in, LongConsumer out) {
+            this.slots = slots;
+            this.in = in;
+            this.out = out;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // The executable nodes.
+    ////////////////////////////////////////////////////////////////////////////
+    abstract static class Stmt {
+
+        abstract void exec(Frame frame);
+    }
+
+    abstract static class Expr {
+
+        abstract long eval(long[] slots);
+    }
+
+    abstract static class Condition {
+
+        abstract boolean test(long[] slots);
+    }
+
+    static final class Block extends Stmt {
+
+        final Stmt[] statements;
+
+        Block(Stmt[] statements) {
+            this.statements = statements;
+        }
+
+        @Override
+        void exec(Frame frame) {
+            for (var statement : statements) {
+                statement.exec(frame);
+            }
+        }
+    }
+
+    static final class Assign extends Stmt {
+
+        final int slot;
+        final Expr value;
+
+        Assign(int slot, Expr value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        void exec(Frame frame) {
+            frame.slots[slot] = value.eval(frame.slots);
+        }
+    }
+
+    static final class Read extends Stmt {
+
+        final int slot;
+
+        Read(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        void exec(Frame frame) {
+            frame.slots[slot] = frame.in.getAsLong();
+        }
+    }
+
+    static final class Write extends Stmt {
+
+        final Expr value;
+
+        Write(Expr value) {
+            this.value = value;
+        }
+
+        @Override
+        void exec(Frame frame) {
+            frame.out.accept(value.eval(frame.slots));
+        }
+    }
+
+    static final class If extends Stmt {
+
+        final Condition condition;
+        final Stmt body;
+
+        If(Condition condition, Stmt body) {
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        void exec(Frame frame) {
+            if (condition.test(frame.slots)) {
+                body.exec(frame);
+            }
+        }
+    }
+
+    static final class While extends Stmt {
+
+        final Condition condition;
+        final Stmt body;
+
+        While(Condition condition, Stmt body) {
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        void exec(Frame frame) {
+            while (condition.test(frame.slots)) {
+                body.exec(frame);
+            }
+        }
+    }
+
+    static final class Constant extends Expr {
+
+        final long value;
+
+        Constant(long value) {
+            this.value = value;
+        }
+
+        @Override
+        long eval(long[] slots) {
+            return value;
+        }
+    }
+
+    static final class Variable extends Expr {
+
+        final int slot;
+
+        Variable(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        long eval(long[] slots) {
+            return slots[slot];
+        }
+    }
+
+    static final class Add extends Expr {
+
+        final Expr left, right;
+
+        Add(Expr left, Expr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        long eval(long[] slots) {
+            return left.eval(slots) + right.eval(slots);
+        }
+    }
+
+    static final class Subtract extends Expr {
+
+        final Expr left, right;
+
+        Subtract(Expr left, Expr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        long eval(long[] slots) {
+            return left.eval(slots) - right.eval(slots);
+        }
+    }
+
+    static final class Multiply extends Expr {
+
+        final Expr left, right;
+
+        Multiply(Expr left, Expr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        long eval(long[] slots) {
+            return left.eval(slots) * right.eval(slots);
+        }
+    }
+
+    static final class Divide extends Expr {
+
+        final Expr left, right;
+
+        Divide(Expr left, Expr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        long eval(long[] slots) {
+            return left.eval(slots) / right.eval(slots);
+        }
+    }
+
+    static final class LessThan extends Condition {
+
+        final Expr left, right;
+
+        LessThan(Expr left, Expr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(long[] slots) {
+            return left.eval(slots) < right.eval(slots);
+        }
+    }
+
+    static final class LessOrEqual extends Condition {
+
+        final Expr left, right;
+
+        LessOrEqual(Expr left, Expr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(long[] slots) {
+            return left.eval(slots) <= right.eval(slots);
+        }
+    }
+
+    static final class Equal extends Condition {
+
+        final Expr left, right;
+
+        Equal(Expr left, Expr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(long[] slots) {
+            return left.eval(slots) == right.eval(slots);
+        }
+    }
+
+    static final class NotEqual extends Condition {
+
+        final Expr left, right;
+
+        NotEqual(Expr left, Expr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean test(long[] slots) {
+            return left.eval(slots) != right.eval(slots);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Parse tree -> executable nodes.
+    ////////////////////////////////////////////////////////////////////////////
+    private static final class Compiler {
+
+        private final ParseTree tree;
+
+        // SymbolTable id -> slot (only needed while compiling), and the
+        // variable names by slot. (Slots are given out in order of first use.)
+        private int[] slots;
+        private final List<String> variables = new ArrayList<>();
+
+        Compiler(ParseTree tree) {
+            this.tree = tree;
+        }
+
+        Interpreter compile() {
+            if (tree.size() == 0) {
+                throw new Parser.ParseException("SYNTAX ERROR: no program");
+            }
+            if (tree.getErrorNode() != ParseTree.NONE) {
+                throw new Parser.ParseException(tree.getError());
+            }
+
+            slots = new int[tree.getSymbolTable().size()];
+            Arrays.fill(slots, -1);
+
+            // <PARSE TREE> -> <PROGRAM> -> <STMT_LIST>
+            final var program = tree.getFirstChild(tree.getRoot());
+            final var body = stmtList(tree.getFirstChild(program));
+
+            return new Interpreter(variables.toArray(new String[0]), body);
+        }
+
+        // The slot of a variable (given its leaf node), allocated on first use.
+        private int slot(int leaf) {
+            final var variable = tree.getVariable(leaf);
+            if (slots[variable] < 0) {
+                slots[variable] = variables.size();
+                variables.add(tree.getSymbolTable().getName(variable));
+            }
+            return slots[variable];
+        }
+
+        // The i-th child of a node.
+        private int child(int node, int i) {
+            var child = tree.getFirstChild(node);
+            while (i-- > 0 && child != ParseTree.NONE) {
+                child = tree.getNextSibling(child);
+            }
+            if (child == ParseTree.NONE) {
+                throw new Parser.ParseException("SYNTAX ERROR: incomplete " + tree.getLabel(node));
+            }
+            return child;
+        }
+
+        // The leaf below a "<TOKEN>" node.
+        private int leaf(int tokenNode) {
+            return child(tokenNode, 0);
+        }
+
+        // <STMT_LIST> -> <STMT> <STMT_LIST> | (nothing); done with a loop
+        // rather than recursion, so long programs are fine.
+        private Stmt stmtList(int node) {
+            final var statements = new ArrayList<Stmt>();
+
+            while (node != ParseTree.NONE && tree.getFirstChild(node) != ParseTree.NONE) {
+                final var statement = tree.getFirstChild(node);
+                final var compiled = stmt(statement);
+                if (compiled != null) {
+                    statements.add(compiled);
+                }
+                node = tree.getNextSibling(statement);
+            }
+            return statements.size() == 1 ? statements.get(0) : new Block(statements.toArray(new Stmt[0]));
+        }
+
+        private Stmt stmt(int node) {
+            final var first = child(node, 0);
+
+            switch (tree.getToken(first)) {
+                case IF: // IF CONDITION THEN STMT_LIST ENDIF
+                    return new If(condition(child(node, 1)), stmtList(child(node, 3)));
+                case WHILE: // WHILE CONDITION DO STMT_LIST DONE
+                    return new While(condition(child(node, 1)), stmtList(child(node, 3)));
+                case OTHER: // OTHER ASGN EXPR
+                    return new Assign(slot(leaf(first)), expr(child(node, 2)));
+                case READ: // READ OTHER
+                    return new Read(slot(leaf(child(node, 1))));
+                case WRITE: // WRITE EXPR
+                    return new Write(expr(child(node, 1)));
+                default: // a stray "do" does nothing.
+                    return null;
+            }
+        }
+
+        // <CONDITION> -> <EXPR> <RELATION> <EXPR>
+        private Condition condition(int node) {
+            final var left = expr(child(node, 0));
+            final var relation = tree.getLabel(leaf(child(node, 1)));
+            final var right = expr(child(node, 2));
+
+            switch (relation) {
+                case "<":
+                    return new LessThan(left, right);
+                case ">":
+                    return new LessThan(right, left);
+                case "<=":
+                    return new LessOrEqual(left, right);
+                case ">=":
+                    return new LessOrEqual(right, left);
+                case "=":
+                    return new Equal(left, right);
+                default:
+                    return new NotEqual(left, right);
+            }
+        }
+
+        // <EXPR> -> <TERM> <TERM_TAIL>, <TERM_TAIL> -> <ADD_OP> <TERM> <TERM_TAIL> | &epsilon;
+        private Expr expr(int node) {
+            var value = term(child(node, 0));
+
+            var tail = child(node, 1);
+            while (tree.getSymbol(child(tail, 0)) != ParseTree.EPSILON) {
+                final var operator = tree.getLabel(leaf(child(tail, 0)));
+                final var right = term(child(tail, 1));
+                value = operator.equals("+") ? new Add(value, right) : new Subtract(value, right);
+                tail = child(tail, 2);
+            }
+            return value;
+        }
+
+        // <TERM> -> <FACTOR> <FACTOR_TAIL>, <FACTOR_TAIL> -> <MULT_OP> <FACTOR> <FACTOR_TAIL> | &epsilon;
+        private Expr term(int node) {
+            var value = factor(child(node, 0));
+
+            var tail = child(node, 1);
+            while (tree.getSymbol(child(tail, 0)) != ParseTree.EPSILON) {
+                final var operator = tree.getLabel(leaf(child(tail, 0)));
+                final var right = factor(child(tail, 1));
+                value = operator.equals("*") ? new Multiply(value, right) : new Divide(value, right);
+                tail = child(tail, 2);
+            }
+            return value;
+        }
+
+        // <FACTOR> -> ( <EXPR> ) | OTHER | NUMBER
+        private Expr factor(int node) {
+            if (tree.getFirstChild(node) == ParseTree.NONE) {
+                throw new Parser.ParseException("SYNTAX ERROR: a FACTOR was expected");
+            }
+
+            final var first = child(node, 0);
+            switch (tree.getToken(first)) {
+                case OP:
+                    return expr(child(node, 1));
+                case OTHER:
+                    return new Variable(slot(leaf(first)));
+                default:
+                    try {
+                        return new Constant(Long.parseLong(tree.getLabel(leaf(first))));
+                    } catch (NumberFormatException ex) {
+                        throw new Parser.ParseException("SYNTAX ERROR: number too large: " + tree.getLabel(leaf(first)));
+                    }
+            }
+        }
+    }
+}
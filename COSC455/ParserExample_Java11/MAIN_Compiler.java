@@ -1,22 +1,23 @@
 
 package COSC455.ParserExample_Java11;
 
-import java.awt.Desktop;
 import java.io.File;
+import java.io.Flushable;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URISyntaxException;
-import java.nio.file.Files;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import javax.swing.JOptionPane;
-
-import java.net.URL;
-import java.net.URLEncoder;
-
 
 /**
  * COSC 455 Programming Languages: Implementation and Design.
@@ -28,37 +29,39 @@ import java.net.URLEncoder;
  * This syntax analyzer implements a top-down, left-to-right, recursive-descent
  * parser based on the production rules for a simple English language provided
  * by Weber in "Modern Programming Languages".
+ *
+ * To see the parse tree in a browser, run MAIN_GraphViz instead. (This class,
+ * like the rest of the compiler, never touches AWT or Swing; see
+ * MAIN_Headless.)
  */
 public class MAIN_Compiler {
 
-    // !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
-    // !!!!!!! toggle to display grapviz prompt. !!!!!!!
-    // !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
-    static final boolean PROMPT_FOR_GRAPHVIZ = true;
-
     public static void main(String[] args) throws IOException {
         // Check for an input file argument
         if (args.length == 0) {
             final File file = new File("COSC455/ParserExample_Java11/input.txt");
             System.out.println(file.getCanonicalPath());
             if (file.exists()) {
-                String compiledCode = compile(file);
-
-                // Display the graphviz test page if desired.
-                if (PROMPT_FOR_GRAPHVIZ) {
-                    try {
-                        CodeGenerator.openWebGraphViz(compiledCode);
-                    } catch (UnsupportedEncodingException ex) {
-                        final String msg = "Could not create a valid URL String!!!";
-                        Logger.getLogger("MAIN_Compiler").log(Level.SEVERE, msg, ex);
-                    }
-                }
+                compile(file);
             } else {
                 System.err.printf("Input file not found: %s%n", file.toPath());
             }
 
+        } else if (args[0].equals("--server")) {
+            // Keep compiling programs sent over a socket (see CompileServer).
+            System.exit(CompileServer.run(Arrays.copyOfRange(args, 1, args.length)));
+
+        } else if (args[0].equals("--client")) {
+            // Compile files on a running CompileServer.
+            System.exit(CompileClient.run(Arrays.copyOfRange(args, 1, args.length)));
+
+        } else if (args[0].equals("--dot")) {
+            // Convert tree files (see TreeFile) to DOT.
+            System.exit(TreeFile.run(Arrays.copyOfRange(args, 1, args.length)));
+
         } else {
-            System.err.println("Must Provide an input filename!!");
+            // Compile all of the files named on the command line.
+            System.exit(BatchCompiler.run(args));
         }
     }
 
@@ -68,37 +71,324 @@ public class MAIN_Compiler {
      * @param inputFile the File to read for input.
      */
     static String compile(File inputFile) {
+        final var metrics = CompilerMetrics.start();
         final CodeGenerator codeGenerator = new CodeGenerator();
-        final LexicalAnalyzer lexicalAnalyzer = new LexicalAnalyzer(inputFile);
+        codeGenerator.setMetrics(metrics);
+        final LexicalAnalyzer lexicalAnalyzer = new LexicalAnalyzer(inputFile, metrics);
 
         // Compile the program from the input supplied by the lexical analyzer.
         final Parser parser = new Parser(lexicalAnalyzer, codeGenerator);
-        parser.analyze();
+        final var success = parser.analyze();
 
+        if (metrics != null) {
+            metrics.lap(CompilerMetrics.PHASE.PARSE);
+            metrics.finish(success);
+        }
         return codeGenerator.generatedCodeBuffer.toString();
     }
 
+    /**
+     * Compile "quietly" (nothing is echoed to the screen) straight into a
+     * sink, so the size of the output is never bounded by the heap.
+     *
+     * @param inputFile the File to read for input.
+     * @param output where the generated code goes.
+     * @return the syntax error that stopped the compilation, or null if the
+     * file compiled.
+     */
+    static String compile(File inputFile, Appendable output) {
+        final var metrics = CompilerMetrics.start();
+        var success = false;
+        try {
+            final CodeGenerator codeGenerator = new CodeGenerator(output, false);
+            codeGenerator.setMetrics(metrics);
+            final LexicalAnalyzer lexicalAnalyzer = new LexicalAnalyzer(inputFile, metrics);
+
+            final Parser parser = new Parser(lexicalAnalyzer, codeGenerator);
+            success = parser.analyze();
+            codeGenerator.flush();
+
+            return success ? null : parser.getSyntaxError();
+        } finally {
+            if (metrics != null) {
+                metrics.lap(CompilerMetrics.PHASE.PARSE);
+                metrics.finish(success);
+            }
+        }
+    }
+
+    /**
+     * Parse into an in-memory tree instead of generating code as we go. The
+     * tree can then be handed to any "back end" (eg. CodeGenerator.writeTree
+     * or ParseTree.writeJson).
+     *
+     * @param inputFile the File to read for input.
+     * @param tree the tree to fill in; it is reset first, so the same tree
+     * (and its memory) can be reused for every compilation.
+     * @return the tree.
+     */
+    static ParseTree parse(File inputFile, ParseTree tree) {
+        return parse(inputFile, tree, null, 1);
+    }
+
+    /**
+     * The same, counting the reading, tokenizing and parsing in metrics; and
+     * for a big enough file, lexing and parsing it on several threads at once
+     * (see ParallelParser: the tree is the same).
+     *
+     * @param threads the number of threads to parse on (1 for just this one).
+     */
+    private static ParseTree parse(File inputFile, ParseTree tree, CompilerMetrics.Compilation metrics, int threads) {
+        if (isParallel(inputFile, threads)) {
+            return ParallelParser.parse(inputFile, tree, threads, metrics);
+        }
+
+        final LexicalAnalyzer lexicalAnalyzer = new LexicalAnalyzer(inputFile, metrics);
+        final CodeGenerator treeBuilder = new ParseTreeBuilder(tree, lexicalAnalyzer);
+
+        final Parser parser = new Parser(lexicalAnalyzer, treeBuilder);
+        parser.analyze();
+
+        if (metrics != null) {
+            metrics.countNodes(tree);
+            metrics.lap(CompilerMetrics.PHASE.PARSE);
+        }
+        return tree;
+    }
+
+    // Is the file big enough to be worth parsing on more than one thread?
+    private static boolean isParallel(File inputFile, int threads) {
+        return threads > 1 && inputFile.length() >= ParallelParser.MIN_PARALLEL_LENGTH;
+    }
+
+    /**
+     * Check a file for syntax errors, finding all of them in one pass (the
+     * parser recovers from every error) rather than just the first one.
+     *
+     * @param inputFile the File to read for input.
+     * @return the syntax errors, in order (none if the file parsed).
+     */
+    static List<Parser.Diagnostic> check(File inputFile) {
+        return check(inputFile, null);
+    }
+
+    /**
+     * The same, also looking for variables that are read before they are
+     * assigned, or never used (see DefUse), if the file parsed.
+     *
+     * @param inputFile the File to read for input.
+     * @param warnings where the warnings go (in order), or null.
+     * @return the syntax errors, in order (none if the file parsed).
+     */
+    static List<Parser.Diagnostic> check(File inputFile, List<DefUse.Warning> warnings) {
+        final LexicalAnalyzer lexicalAnalyzer = new LexicalAnalyzer(inputFile);
+        final var tree = new ParseTree();
+        final CodeGenerator treeBuilder = new ParseTreeBuilder(tree, lexicalAnalyzer);
+
+        final Parser parser = new Parser(lexicalAnalyzer, treeBuilder, true);
+        parser.analyze();
+
+        if (warnings != null && parser.getDiagnostics().isEmpty()) {
+            warnings.addAll(DefUse.analyze(tree).getWarnings());
+        }
+        return parser.getDiagnostics();
+    }
+
+    /**
+     * Compile "quietly" into a stream, in any of the output modes.
+     *
+     * @param inputFile the File to read for input.
+     * @param output where the generated code goes.
+     * @param mode what to generate.
+     * @return the syntax error that stopped the compilation, or null if the
+     * file compiled.
+     * @throws IOException if the output can't be written.
+     */
+    static String compile(File inputFile, OutputStream output, OUTPUT_MODE mode) throws IOException {
+        return compile(inputFile, output, mode, 1);
+    }
+
+    /**
+     * The same, parsing a big enough file on several threads at once (see
+     * ParallelParser); the output is the same. (Only for the modes that build
+     * a ParseTree anyway: the GraphViz is still written as the file is
+     * parsed, so it never needs the memory for the whole tree.)
+     *
+     * @param threads the number of threads to parse on (1 for just this one).
+     */
+    static String compile(File inputFile, OutputStream output, OUTPUT_MODE mode, int threads) throws IOException {
+        switch (mode) {
+            case BYTECODE: {
+                final var metrics = CompilerMetrics.start();
+                var success = false;
+                try {
+                    final var tree = parse(inputFile, new ParseTree(), metrics, threads);
+                    if (tree.getError() != null) {
+                        return tree.getError();
+                    }
+                    final Interpreter compiled;
+                    try {
+                        compiled = Interpreter.compile(tree);
+                    } catch (Parser.ParseException ex) {
+                        // (eg. a FACTOR that matched nothing, as for the AST.)
+                        return ex.getMessage();
+                    }
+                    final var program = new Optimizer(compiled).optimize();
+                    if (metrics != null) {
+                        metrics.lap(CompilerMetrics.PHASE.OPTIMIZE);
+                    }
+                    final byte[] code;
+                    try {
+                        code = BytecodeCompiler.compile(program);
+                    } catch (BytecodeCompiler.ProgramTooLargeException ex) {
+                        // (There is no class file to write: the program can
+                        // only be run on the Interpreter, by MAIN_Interpreter.)
+                        return ex.getMessage() + " (it can still be run with MAIN_Interpreter)";
+                    }
+                    if (metrics != null) {
+                        metrics.lap(CompilerMetrics.PHASE.GENERATE);
+                        metrics.beginWrite();
+                    }
+                    output.write(code);
+                    if (metrics != null) {
+                        metrics.endWrite(code.length);
+                    }
+                    success = true;
+                    return null;
+                } finally {
+                    if (metrics != null) {
+                        metrics.finish(success);
+                    }
+                }
+            }
+            case AST: {
+                final var metrics = CompilerMetrics.start();
+                var success = false;
+                try {
+                    final var tree = parse(inputFile, new ParseTree(), metrics, threads);
+                    if (tree.getError() != null) {
+                        return tree.getError();
+                    }
+                    final AbstractSyntaxTree ast;
+                    try {
+                        ast = AbstractSyntaxTree.build(tree);
+                    } catch (Parser.ParseException ex) {
+                        // (eg. a FACTOR that matched nothing: fine for the
+                        // parse tree, but there is no expression to build.)
+                        return ex.getMessage();
+                    }
+                    if (metrics != null) {
+                        metrics.countAst(ast);
+                        metrics.lap(CompilerMetrics.PHASE.GENERATE);
+                    }
+                    if (metrics != null) {
+                        metrics.beginWrite();
+                    }
+                    final var writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+                    final var chars = ast.writeDot(writer);
+                    writer.flush();
+                    if (metrics != null) {
+                        metrics.endWrite(chars);
+                    }
+                    success = true;
+                    return null;
+                } finally {
+                    if (metrics != null) {
+                        metrics.finish(success);
+                    }
+                }
+            }
+            case TREE:
+            case COMPRESSED_TREE: {
+                final var metrics = CompilerMetrics.start();
+                var success = false;
+                try {
+                    final var tree = parse(inputFile, new ParseTree(), metrics, threads);
+                    if (metrics != null) {
+                        metrics.beginWrite();
+                    }
+                    final var bytes = TreeFile.write(tree, output, mode == OUTPUT_MODE.COMPRESSED_TREE);
+                    if (metrics != null) {
+                        metrics.endWrite(bytes);
+                    }
+                    // (Like the DOT, the tree is written up to the syntax error.)
+                    success = tree.getError() == null;
+                    return tree.getError();
+                } finally {
+                    if (metrics != null) {
+                        metrics.finish(success);
+                    }
+                }
+            }
+            default: {
+                final var writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+                final var error = compile(inputFile, writer);
+                writer.flush();
+                return error;
+            }
+        }
+    }
+
 }
 
 /**
  * *****************************************************************************
- * This is a *FAKE* (Overly simplified) Lexical Analyzer...
- *
- * NOTE: This DOES NOT "lex" the input in the traditional manner on a DFA based
- * "state machine" or even host language supported regular expressions (which
- * are compiled into "state machine" anyhow in most implementations.)
+ * What the compiler generates.
+ */
+enum OUTPUT_MODE {
+    // The parse tree, as a GraphViz (DOT) graph.
+    GRAPHVIZ(".dot"),
+    // The (optimized) program itself, as a JVM class (see BytecodeCompiler).
+    BYTECODE(".class"),
+    // The parse tree, as a compact binary file (see TreeFile).
+    TREE(".tree"),
+    // The same, with the blocks of the file deflated.
+    COMPRESSED_TREE(".tree"),
+    // The abstract syntax tree, as a GraphViz (DOT) graph (see
+    // AbstractSyntaxTree).
+    AST(".ast.dot");
+
+    private final String extension;
+
+    OUTPUT_MODE(String extension) {
+        this.extension = extension;
+    }
+
+    // The extension of the output files, eg. ".dot"
+    String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @param name the name of a mode, in any case (eg. "bytecode").
+     * @return the mode.
+     * @throws IllegalArgumentException if there is no such mode.
+     */
+    static OUTPUT_MODE fromName(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown format: " + name + " " + Arrays.toString(values()));
+        }
+    }
+}
+
+/**
+ * *****************************************************************************
+ * A (still fairly simple) Lexical Analyzer...
  *
- * Instead of using "state transitions", this is merely a quick hack to create a
- * something that BEHAVES like a traditional lexer in it's FUNCTIONALITY, but it
- * ONLY knows how to separate (tokenize) lexemes delimited by SPACES. A Real
- * Lexer would tokenize based upon far more sophisticated lexical rules.
+ * The actual character-level work is done by the DfaScanner below, which is a
+ * small table driven "state machine" (see the DFA notes there). This class only
+ * keeps the tokens that the scanner recognizes and hands them to the parser
+ * one at a time.
  *
- * AGAIN: ALL TOKENS MUST BE WHITESPACE DELIMITED.
+ * Tokens no longer need to be whitespace delimited: "abs:=n" and "(a+b)" are
+ * scanned exactly like "abs := n" and "( a + b )".
  */
 class LexicalAnalyzer {
 
     // TOKENIZED input.
-    private Queue<TokenString> tokenList;
+    private TokenStream tokens;
 
     // Simple Wrapper around current token.
     boolean isCurrentToken(TOKEN token) {
@@ -116,33 +406,84 @@ class LexicalAnalyzer {
 
     /**
      * Construct a Lexer over the contents of a file. Filters out lines starting
-     * with a '#' Symbol. Removes EOL markers; otherwise, our grammar would have
-     * to deal with them).
+     * with a '#' Symbol. (See SourceReader; EOL markers are just whitespace to
+     * the scanner, so our grammar doesn't have to deal with them.)
      *
      * @param inputFile
      */
     LexicalAnalyzer(File inputFile) {
-        try {
-            Path filePath = inputFile.toPath();
+        this(inputFile, null);
+    }
 
-            tokenize(Files.lines(filePath) // read lines
-                    .map(String::trim) // map to trimmed strings
-                    .filter(x -> !x.startsWith("#")) // filter out lines starting with #
-                    .collect(Collectors.joining(" "))); // join lines together with spaces in between. 
+    /**
+     * Construct a Lexer over the contents of a file, timing the reading and
+     * the tokenizing, and counting the tokens.
+     *
+     * @param inputFile
+     * @param metrics where to count (see CompilerMetrics), or null.
+     * @throws UncheckedIOException if the file can't be read (or isn't UTF-8),
+     * so that it fails rather than "compiling" as an empty program.
+     */
+    LexicalAnalyzer(File inputFile, CompilerMetrics.Compilation metrics) {
+        final CharBuffer source;
+        try {
+            source = SourceReader.read(inputFile.toPath());
         } catch (IOException ex) {
-            Logger.getAnonymousLogger().log(Level.SEVERE, "Error Reading File: {0}", ex);
+            throw new UncheckedIOException("Error reading " + inputFile, ex);
+        }
+        if (metrics != null) {
+            metrics.addBytesRead(inputFile.length());
+            metrics.lap(CompilerMetrics.PHASE.READ);
+        }
+        tokenize(source.array(), source.limit());
+        if (metrics != null) {
+            metrics.countTokens(tokens);
+            metrics.lap(CompilerMetrics.PHASE.TOKENIZE);
         }
     }
 
+    /**
+     * Construct a lexer over (part of) a char buffer, eg. a piece of a larger
+     * text (see IncrementalParser). The buffer must not change afterwards: the
+     * lexemes are read from it.
+     *
+     * @param buffer the characters to scan.
+     * @param length the number of characters used in the buffer.
+     */
+    LexicalAnalyzer(char[] buffer, int length) {
+        tokenize(buffer, length);
+    }
+
+    /**
+     * Construct a lexer over tokens lexed already (from the cursor of the
+     * stream on).
+     *
+     * @param tokens the tokens.
+     */
+    LexicalAnalyzer(TokenStream tokens) {
+        this.tokens = tokens;
+    }
+
     /*
      * Convert the line to a series of tokens.
      */
     private void tokenize(final String line) {
-        // Using Java 8's "Function Streams"
-        this.tokenList = Arrays
-                .stream(line.trim().split("\\s+")) // split string on spaces
-                .map(TokenString::new) // map to a new Token
-                .collect(Collectors.toCollection(LinkedList::new)); // collect into a new list
+        final char[] buffer = line.toCharArray();
+        tokenize(buffer, buffer.length);
+    }
+
+    /*
+     * Convert buffer[0, length) to a series of tokens.
+     */
+    private void tokenize(final char[] buffer, final int length) {
+        final var scanner = new DfaScanner(buffer, 0, length);
+
+        this.tokens = new TokenStream(buffer, length);
+        while (scanner.nextToken()) {
+            final var start = scanner.getTokenStart();
+            final var tokenLength = scanner.getTokenLength();
+            this.tokens.add(TOKEN.fromLexeme(buffer, start, tokenLength), start, tokenLength);
+        }
     }
 
     /**
@@ -152,54 +493,580 @@ class LexicalAnalyzer {
      * tokens.
      */
     public String getCurrentLexeme() {
-        return (this.tokenList.isEmpty() || getCurrentToken() == TOKEN.EOF)
+        return (getCurrentToken() == TOKEN.EOF)
                 ? "EOF"
-                : this.tokenList.peek().lexeme;
+                : this.tokens.lexeme(0);
     }
 
     /*
      * get just the token
      */
     public TOKEN getCurrentToken() {
-        return this.tokenList.isEmpty()
-                ? TOKEN.EOF
-                : this.tokenList.peek().token;
+        return this.tokens.peek(0);
+    }
+
+    /**
+     * Look ahead without consuming anything.
+     *
+     * @param k how far to look ahead (0 is the current token).
+     * @return the k-th token from the current one (EOF past the end).
+     */
+    public TOKEN peekToken(int k) {
+        return this.tokens.peek(k);
     }
 
     /*
      * Advance to next token, making it current.
      */
     public void advanceToken() {
-        if (!this.tokenList.isEmpty()) {
-            this.tokenList.remove();
+        this.tokens.advance();
+    }
+
+    // The index of the current token in the token stream.
+    int getCurrentTokenIndex() {
+        return this.tokens.getCursor();
+    }
+
+    // All of the tokens (eg. to look up lexemes by index later on).
+    TokenStream getTokenStream() {
+        return this.tokens;
+    }
+
+    @Override
+    public String toString() {
+        return this.tokens.toString();
+    }
+}
+
+/**
+ * *****************************************************************************
+ * A compact "struct of arrays" list of tokens.
+ *
+ * Rather than one object per token (plus a String for its lexeme), each token
+ * is three ints in growable parallel arrays: the TOKEN ordinal, and the start
+ * and length of the lexeme in the (shared) source buffer. The parser moves a
+ * cursor through the arrays instead of removing tokens, so looking ahead any
+ * distance is just an array index.
+ *
+ * Lexemes are only turned into Strings when someone actually asks for them.
+ * Identifiers (OTHER tokens) are interned into the SymbolTable as they are
+ * added, so each token also has the int id of its name, and a name is only
+ * ever one String, however often it is used.
+ */
+final class TokenStream {
+
+    private static final TOKEN[] TOKENS = TOKEN.values();
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final char[] source;
+
+    private int[] tokens;
+    private int[] starts;
+    private int[] lengths;
+    private int[] symbols; // (SymbolTable.NONE unless an identifier.)
+    private int count;
+
+    private final SymbolTable symbolTable;
+    private int cursor;
+
+    // For lineAt(): source[lineOffset] is on line number "line".
+    private int lineOffset;
+    private int line = 1;
+
+    /**
+     * Construct an empty token stream over a source buffer.
+     *
+     * @param source the characters the tokens refer to.
+     * @param sourceLength the number of characters used in the buffer (only
+     * used to guess the number of tokens).
+     */
+    TokenStream(char[] source, int sourceLength) {
+        this.source = source;
+
+        // Roughly one token per 4 characters is typical; grow if needed.
+        final var capacity = Math.max(INITIAL_CAPACITY, sourceLength / 4);
+        this.tokens = new int[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.symbols = new int[capacity];
+        this.symbolTable = new SymbolTable();
+    }
+
+    // Another cursor over the same tokens (see cursorAt).
+    private TokenStream(TokenStream tokens, int cursor) {
+        this.source = tokens.source;
+        this.tokens = tokens.tokens;
+        this.starts = tokens.starts;
+        this.lengths = tokens.lengths;
+        this.symbols = tokens.symbols;
+        this.count = tokens.count;
+        this.symbolTable = tokens.symbolTable;
+        this.cursor = cursor;
+    }
+
+    /**
+     * Append a token.
+     *
+     * @param token the token type.
+     * @param start where the lexeme starts in the source buffer.
+     * @param length the length of the lexeme.
+     */
+    void add(TOKEN token, int start, int length) {
+        if (count == tokens.length) {
+            final var capacity = count + (count >> 1) + 1;
+            tokens = Arrays.copyOf(tokens, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+        }
+        tokens[count] = token.ordinal();
+        starts[count] = start;
+        lengths[count] = length;
+        symbols[count] = token == TOKEN.OTHER ? symbolTable.intern(source, start, length) : SymbolTable.NONE;
+        count++;
+    }
+
+    /**
+     * Make room for (exactly) "size" tokens in all, to be filled in with
+     * copy(); eg. from several threads at once, each copying its own part.
+     *
+     * @param size the number of tokens.
+     */
+    void resize(int size) {
+        tokens = Arrays.copyOf(tokens, size);
+        starts = Arrays.copyOf(starts, size);
+        lengths = Arrays.copyOf(lengths, size);
+        symbols = Arrays.copyOf(symbols, size);
+        count = size;
+    }
+
+    /**
+     * Copy all of the tokens of another stream (over the same source buffer)
+     * to [at, at + part.size()).
+     *
+     * @param part the tokens to copy.
+     * @param at where the first one goes.
+     * @param symbolIds the id here of every identifier of the part, by its id
+     * there (see SymbolTable.internAll).
+     */
+    void copy(TokenStream part, int at, int[] symbolIds) {
+        System.arraycopy(part.tokens, 0, tokens, at, part.count);
+        System.arraycopy(part.starts, 0, starts, at, part.count);
+        System.arraycopy(part.lengths, 0, lengths, at, part.count);
+        for (var i = 0; i < part.count; i++) {
+            final var symbol = part.symbols[i];
+            symbols[at + i] = symbol == SymbolTable.NONE ? SymbolTable.NONE : symbolIds[symbol];
+        }
+    }
+
+    /**
+     * Another cursor over the same tokens, eg. to parse different parts of
+     * them at once (see ParallelParser). No tokens may be added after this.
+     *
+     * @param index the token the new cursor starts at.
+     * @return a stream sharing these tokens.
+     */
+    TokenStream cursorAt(int index) {
+        return new TokenStream(this, index);
+    }
+
+    /**
+     * @param k how far to look ahead (0 is the current token).
+     * @return the k-th token from the cursor, or EOF past the end.
+     */
+    TOKEN peek(int k) {
+        return tokenAt(cursor + k);
+    }
+
+    /**
+     * @param k how far to look ahead (0 is the current token).
+     * @return the lexeme of the k-th token from the cursor (built on demand).
+     */
+    String lexeme(int k) {
+        return lexemeAt(cursor + k);
+    }
+
+    // Move the cursor to the next token (staying at the end).
+    void advance() {
+        if (cursor < count) {
+            cursor++;
         }
     }
 
+    // The index of the current token.
+    int getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @param index the (absolute) index of a token.
+     * @return the lexeme of the token (built on demand, unless it is an
+     * identifier), or "EOF" past the end.
+     */
+    String lexemeAt(int index) {
+        if (index >= count) {
+            return "EOF";
+        }
+        final var symbol = symbols[index];
+        return symbol == SymbolTable.NONE ? new String(source, starts[index], lengths[index]) : symbolTable.getName(symbol);
+    }
+
+    /**
+     * @param index the (absolute) index of a token.
+     * @return the id of the identifier in the SymbolTable, or
+     * SymbolTable.NONE if the token isn't one (or is past the end).
+     */
+    int symbolAt(int index) {
+        return index < count ? symbols[index] : SymbolTable.NONE;
+    }
+
+    // The identifiers of the tokens.
+    SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * @param index the (absolute) index of a token.
+     * @return the token, or EOF past the end.
+     */
+    TOKEN tokenAt(int index) {
+        return index < count ? TOKENS[tokens[index]] : TOKEN.EOF;
+    }
+
+    // The number of tokens (wherever the cursor is).
+    int size() {
+        return count;
+    }
+
+    // Where the lexeme of a token starts in the source buffer.
+    int startAt(int index) {
+        return starts[index];
+    }
+
+    // The length of the lexeme of a token.
+    int lengthAt(int index) {
+        return lengths[index];
+    }
+
+    // Where a token (or the end, past the last one) is in the source buffer.
+    private int offsetOf(int index) {
+        if (index < count) {
+            return starts[index];
+        }
+        return count == 0 ? 0 : starts[count - 1] + lengths[count - 1];
+    }
+
+    /**
+     * @param index the (absolute) index of a token.
+     * @return the line (from 1) of the token. (Lines are counted from the last
+     * call on, so asking in order only reads the source once.)
+     */
+    int lineAt(int index) {
+        final var offset = offsetOf(index);
+        if (offset < lineOffset) {
+            lineOffset = 0;
+            line = 1;
+        }
+        for (; lineOffset < offset; lineOffset++) {
+            if (source[lineOffset] == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * @param index the (absolute) index of a token.
+     * @return the column (from 1) of the token.
+     */
+    int columnAt(int index) {
+        final var offset = offsetOf(index);
+        var lineStart = offset;
+        while (lineStart > 0 && source[lineStart - 1] != '\n') {
+            lineStart--;
+        }
+        return offset - lineStart + 1;
+    }
+
+    // The number of tokens left, including the current one.
+    int remaining() {
+        return count - cursor;
+    }
+
+    /**
+     * @return the remaining tokens, as {lexeme=..., token=...} pairs.
+     */
     @Override
     public String toString() {
-        return this.tokenList.toString();
+        final var joiner = new StringJoiner(", ", "[", "]");
+        for (var k = 0; k < remaining(); k++) {
+            joiner.add(String.format("{lexeme=%s, token=%s}", lexeme(k), peek(k)));
+        }
+        return joiner.toString();
+    }
+}
+
+/**
+ * *****************************************************************************
+ * Reads a source file straight into a char[] buffer for the scanner.
+ *
+ * The file is memory mapped through a FileChannel, one fixed-size window at a
+ * time (so even huge files never need to be mapped all at once), and each
+ * window is decoded (UTF-8) directly into the buffer. Lines starting with a
+ * '#' are dropped while decoding, so the whole file is never held as a String
+ * (or as a list of lines).
+ *
+ * NOTE: The channel is closed before read() returns; the mapped windows are
+ * released by the garbage collector, as usual for MappedByteBuffers.
+ */
+final class SourceReader {
+
+    // Size of each mapped window of the file.
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final char[] buffer;
+    private int length;
+
+    // Only whitespace seen since the last end of line?
+    private boolean atLineStart = true;
+
+    // Skipping a '#' comment line?
+    private boolean inComment = false;
+
+    private SourceReader(char[] buffer) {
+        this.buffer = buffer;
     }
 
     /**
-     * Nested class: a "Pair Tuple/Struct" for the token type and original
-     * string.
+     * Drop the comment lines of a program that is in memory already (eg. one
+     * sent to the CompileServer), exactly as read() does for a file.
      *
+     * @param buffer the characters of the program, compacted in place.
+     * @param length the number of characters used in the buffer.
+     * @return the number left: the program is now buffer[0, return value).
      */
-    private class TokenString {
+    static int stripComments(char[] buffer, int length) {
+        return new SourceReader(buffer).filterComments(length);
+    }
 
-        private final String lexeme;
-        private final TOKEN token;
+    /**
+     * Read (and decode) a source file, skipping comment lines.
+     *
+     * @param path the file to read.
+     * @return the decoded characters: array() holds the source, limit() is its
+     * length.
+     * @throws IOException if the file can't be read, is too large or is not
+     * valid UTF-8.
+     */
+    static CharBuffer read(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final var size = channel.size();
+
+            // UTF-8 never decodes to more chars than there are bytes.
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("File too large: " + path);
+            }
+
+            final var reader = new SourceReader(new char[(int) size]);
+            final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+            final var out = CharBuffer.wrap(reader.buffer);
+
+            var position = 0L;
+            while (position < size) {
+                final var windowSize = (int) Math.min(WINDOW_SIZE, size - position);
+                final ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                final var lastWindow = position + windowSize == size;
 
-        TokenString(String lexeme) {
-            this.lexeme = lexeme;
-            this.token = TOKEN.fromLexeme(lexeme);
+                final CoderResult result = decoder.decode(window, out, lastWindow);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                out.position(reader.filterComments(out.position()));
+
+                // A multi-byte character split across windows is decoded
+                // again at the start of the next window.
+                position += window.position();
+            }
+
+            decoder.decode(ByteBuffer.allocate(0), out, true);
+            decoder.flush(out);
+            out.position(reader.filterComments(out.position()));
+
+            return CharBuffer.wrap(reader.buffer, 0, reader.length);
         }
+    }
 
-        @Override
-        public String toString() {
-            var msg = String.format("{lexeme=%s, token=%s}", lexeme, token);
-            return msg;
+    /*
+     * Compact the newly decoded characters, buffer[length, end), in place:
+     * characters of comment lines are dropped. Returns the end of what was
+     * kept (where the output buffer is rewound to).
+     */
+    private int filterComments(int end) {
+        var write = this.length;
+
+        for (var read = this.length; read < end; read++) {
+            final var c = buffer[read];
+            final var endOfLine = c == '\n' || c == '\r';
+
+            if (inComment) {
+                if (endOfLine) {
+                    inComment = false;
+                    atLineStart = true;
+                    buffer[write++] = c;
+                }
+            } else if (atLineStart && c == '#') {
+                inComment = true;
+            } else {
+                buffer[write++] = c;
+                if (endOfLine) {
+                    atLineStart = true;
+                } else if (c > ' ') {
+                    atLineStart = false;
+                }
+            }
         }
+
+        this.length = write;
+        return write;
+    }
+}
+
+/**
+ * *****************************************************************************
+ * A single-pass, table driven DFA scanner over a char[] buffer.
+ *
+ * Every input character is first mapped to a "character class", and the next
+ * state is then looked up in a [state][class] transition table. A token ends
+ * as soon as the current state has no transition for the next character
+ * (longest match), so "<=" is one token but "<a" is two.
+ *
+ *   START  --ws-->     START   (skipped)
+ *   START  --word-->   WORD    --word--> WORD
+ *   START  --single--> DONE    ( ) + - * / =
+ *   START  --prefix--> PREFIX  : < > !
+ *   PREFIX --'='-->    DONE    := <= >= !=
+ *
+ * A "word" is any run of characters that is not whitespace or an operator, so
+ * keywords, identifiers and numbers all come out of the WORD state and are told
+ * apart afterwards by TOKEN.fromLexeme(char[], int, int).
+ *
+ * NOTE: The scanner only reports the start/length of each token; it never
+ * allocates anything itself.
+ */
+final class DfaScanner {
+
+    // Character classes.
+    private static final int WS = 0;
+    private static final int WORD = 1;
+    private static final int SINGLE = 2;
+    private static final int PREFIX = 3;
+    private static final int EQUALS = 4;
+    private static final int CLASS_COUNT = 5;
+
+    // States. (ERROR means "no transition": the current token is finished.)
+    private static final int ERROR = -1;
+    private static final int S_START = 0;
+    private static final int S_WORD = 1;
+    private static final int S_PREFIX = 2;
+    private static final int S_DONE = 3;
+
+    // Character class for every ASCII character; everything else is a WORD.
+    private static final byte[] CHAR_CLASS = new byte[128];
+
+    // The transition table: TRANSITIONS[state * CLASS_COUNT + charClass]
+    private static final int[] TRANSITIONS = {
+        //  WS       WORD     SINGLE   PREFIX    EQUALS
+        S_START, S_WORD, S_DONE, S_PREFIX, S_DONE, // S_START
+        ERROR, S_WORD, ERROR, ERROR, ERROR, // S_WORD
+        ERROR, ERROR, ERROR, ERROR, S_DONE, // S_PREFIX
+        ERROR, ERROR, ERROR, ERROR, ERROR, // S_DONE
+    };
+
+    static {
+        Arrays.fill(CHAR_CLASS, (byte) WORD);
+
+        // The same characters as the "\\s" regular expression class.
+        for (char c : " \t\n\u000B\f\r".toCharArray()) {
+            CHAR_CLASS[c] = WS;
+        }
+        for (char c : "()+-*/".toCharArray()) {
+            CHAR_CLASS[c] = SINGLE;
+        }
+        for (char c : ":<>!".toCharArray()) {
+            CHAR_CLASS[c] = PREFIX;
+        }
+        CHAR_CLASS['='] = EQUALS;
+    }
+
+    private final char[] buffer;
+    private final int end;
+    private int position;
+
+    private int tokenStart;
+    private int tokenLength;
+
+    /**
+     * Construct a scanner over buffer[start, end).
+     *
+     * @param buffer the characters to scan.
+     * @param start the index of the first character.
+     * @param end one past the index of the last character.
+     */
+    DfaScanner(char[] buffer, int start, int end) {
+        this.buffer = buffer;
+        this.position = start;
+        this.end = end;
+    }
+
+    private static int charClass(char c) {
+        return c < 128 ? CHAR_CLASS[c] : WORD;
+    }
+
+    // Whitespace (which always ends a token, and is never part of one)?
+    static boolean isWhitespace(char c) {
+        return charClass(c) == WS;
+    }
+
+    /**
+     * Scan the next token.
+     *
+     * @return false when the end of the buffer was reached without a token.
+     */
+    boolean nextToken() {
+        var state = S_START;
+        var pos = this.position;
+
+        // Skip whitespace (START loops back on itself).
+        while (pos < end && charClass(buffer[pos]) == WS) {
+            pos++;
+        }
+        if (pos == end) {
+            this.position = pos;
+            return false;
+        }
+
+        final var start = pos;
+        while (pos < end) {
+            final var next = TRANSITIONS[state * CLASS_COUNT + charClass(buffer[pos])];
+            if (next == ERROR) {
+                break;
+            }
+            state = next;
+            pos++;
+        }
+
+        this.tokenStart = start;
+        this.tokenLength = pos - start;
+        this.position = pos;
+        return true;
+    }
+
+    int getTokenStart() {
+        return tokenStart;
+    }
+
+    int getTokenLength() {
+        return tokenLength;
     }
 }
 
@@ -208,25 +1075,44 @@ class LexicalAnalyzer {
  * A "3-Tuple" for the node name and id number.
  * 
  * NOTE: In JAVA 14+, "Java Records" will save us from this kind of thing.
+ *
+ * The ids are handed out by the CodeGenerator of each compilation (starting
+ * at 0), so compilations running on different threads never share a counter.
  */
 class ParseNode {
     private final String nodeName;
-    private final Integer nodeId;
-    private static Integer currentNodeID = 0;
+    private final int nodeId;
+    private final int depth;
 
-    ParseNode(String nodeName) {
+    ParseNode(String nodeName, int nodeId) {
+        this(nodeName, nodeId, 0);
+    }
+
+    /**
+     * @param nodeName the name of the node.
+     * @param nodeId the id of the node.
+     * @param depth the number of nonterminals above (and including) the node.
+     */
+    ParseNode(String nodeName, int nodeId, int depth) {
         this.nodeName = nodeName;
-        this.nodeId = currentNodeID++;
+        this.nodeId = nodeId;
+        this.depth = depth;
     }
 
     public String getNodeName() {
         return nodeName;
     }
 
-    public Integer getNodeId() {
+    public int getNodeId() {
         return nodeId;
     }
 
+    // How deep the node is: its nonterminal ancestors, plus one for a
+    // nonterminal. (As deep as the Parser had recursed to add it.)
+    int getDepth() {
+        return depth;
+    }
+
     @Override
     public String toString() {
         return String.format("%s-%s", this.getNodeName(), this.getNodeId());
@@ -251,28 +1137,150 @@ class ParseNode {
  * classes" (classes with no internal state) is generally bad. However, in a
  * more elaborate example, the code generator would most certainly maintain some
  * internal state information. (Memory address offsets, etc.)
+ *
+ * NOTE: A CodeGenerator (like the LexicalAnalyzer and Parser) belongs to a
+ * single compilation: it numbers the nodes of that compilation only. Use one
+ * set of them per thread to compile on several threads at once.
  */
 class CodeGenerator {
 
-    // Buffer for generated code
-    StringBuffer generatedCodeBuffer;
+    // Flush the output buffer to the sink once it holds this many chars.
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    // "%n" in the original format strings.
+    private static final String NEWLINE = System.lineSeparator();
+
+    // Buffer for generated code (only when no sink is supplied, see below)
+    final StringBuilder generatedCodeBuffer;
 
-    // Constructor
+    // Where the generated code goes, and whether to echo it to the screen.
+    private final Appendable sink;
+    private final boolean echoToConsole;
+
+    // The id of the next node of this compilation (see ParseNode).
+    private int nextNodeId = 0;
+
+    // Reused for every edge; handed to the sink (and screen) in chunks.
+    private final StringBuilder outputBuffer = new StringBuilder(FLUSH_THRESHOLD + 256);
+
+    // Where the nodes and writes are counted, or null (see CompilerMetrics).
+    private CompilerMetrics.Compilation metrics;
+
+    // Constructor: write generated code to both the screen AND a buffer.
     CodeGenerator() {
-        this.generatedCodeBuffer = new StringBuffer();
+        this.generatedCodeBuffer = new StringBuilder();
+        this.sink = generatedCodeBuffer;
+        this.echoToConsole = true;
+    }
+
+    /**
+     * Write the generated code to a caller-supplied sink.
+     *
+     * @param sink where the generated code goes (a Writer, StringBuilder...).
+     * @param echoToConsole true to also print the code on the screen; false
+     * for "quiet mode".
+     */
+    CodeGenerator(Appendable sink, boolean echoToConsole) {
+        this.generatedCodeBuffer = null;
+        this.sink = sink;
+        this.echoToConsole = echoToConsole;
+    }
+
+    /**
+     * Write the generated code (UTF-8) to a caller-supplied stream.
+     *
+     * @param out where the generated code goes.
+     * @param echoToConsole true to also print the code on the screen.
+     */
+    CodeGenerator(OutputStream out, boolean echoToConsole) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8), echoToConsole);
+    }
+
+    // Hand the buffered code to the sink (and screen) once there is enough.
+    private void outputGeneratedCode() {
+        if (outputBuffer.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    /**
+     * Write everything generated so far to the sink (and the screen), and flush
+     * the sink if it can be flushed. Done automatically by writeFooter() and
+     * syntaxError().
+     */
+    public void flush() {
+        final var length = outputBuffer.length();
+        if (metrics != null) {
+            metrics.beginWrite();
+        }
+        try {
+            if (echoToConsole) {
+                System.out.append(outputBuffer);
+            }
+            sink.append(outputBuffer);
+            outputBuffer.setLength(0);
+
+            if (sink instanceof Flushable) {
+                ((Flushable) sink).flush();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error writing generated code", ex);
+        }
+        if (metrics != null) {
+            metrics.endWrite(length);
+        }
+    }
+
+    /**
+     * Count the nodes and the output of this compilation (see
+     * CompilerMetrics).
+     *
+     * @param metrics where to count them, or null for nowhere.
+     */
+    void setMetrics(CompilerMetrics.Compilation metrics) {
+        this.metrics = metrics;
+    }
+
+    // Append a node's unique name, eg: "<STMT>-3" (see ParseNode.toString())
+    private StringBuilder appendNode(String name, int id) {
+        return outputBuffer.append('"').append(name).append('-').append(id).append('"');
+    }
+
+    private StringBuilder appendNode(ParseNode node) {
+        return appendNode(node.getNodeName(), node.getNodeId());
+    }
+
+    // Append an edge: "from" -> {"to" [label="...", shape=...]};
+    private void appendEdge(String fromName, int fromId, String toName, int toId, String label, String shape) {
+        outputBuffer.append('\t');
+        appendNode(fromName, fromId).append(" -> {");
+        appendNode(toName, toId)
+                .append(" [label=\"").append(label)
+                .append("\", shape=").append(shape).append("]};")
+                .append(NEWLINE);
+        outputGeneratedCode();
     }
 
-    // Write generated code to both the screen AND the buffer.  
-    private void outputGeneratedCode(String msg) {
-        System.out.print(msg);
-        this.generatedCodeBuffer.append(msg);
+    private void appendEdge(ParseNode fromNode, ParseNode toNode, String label, String shape) {
+        appendEdge(fromNode.getNodeName(), fromNode.getNodeId(), toNode.getNodeName(), toNode.getNodeId(), label, shape);
     }
 
     // Show the terminals as ovals...
     public void addTerminalToTree(ParseNode fromNode, String lexeme) {
-        var node = new ParseNode(lexeme);
-        var msg = String.format("\t\"%s\" -> {\"%s\" [label=\"%s\", shape=oval]};%n", fromNode, node, lexeme);
-        outputGeneratedCode(msg);
+        var node = buildNode(lexeme);
+        appendEdge(fromNode, node, lexeme, "oval");
+    }
+
+    /**
+     * Add the current terminal of the lexer, as addTerminalToTree does. (A
+     * generator that doesn't need the lexeme as a String, eg. the
+     * ParseTreeBuilder, can skip building it.)
+     *
+     * @param fromNode the "<TOKEN>" node above the terminal.
+     * @param lexer the lexer, at the terminal.
+     */
+    public void addCurrentTerminalToTree(ParseNode fromNode, LexicalAnalyzer lexer) {
+        addTerminalToTree(fromNode, lexer.getCurrentLexeme());
     }
 
     /**
@@ -291,27 +1299,32 @@ class CodeGenerator {
     /**
      * Add an "inner node" to the parse tree.
      *
-     * The following code employs a bit of a trick to automatically build the
-     * calling method name. The "getStackTrace()" method returns information
-     * about the entire active stack. Element[0] is the actual "getStackTrace()"
-     * method (it doesn't eliminate itself from the array), element[1] is THIS
-     * method (since we called "getStackTrace()") and element[2] is the method
-     * that called us, etc.
+     * The node is named after the grammar symbol (the "calling method"), e.g.
+     * "<STMT_LIST>"; the labels are precomputed by NONTERMINAL.
      *
+     * @param nonTerminal the grammar symbol of the node being added.
      * @param parentNode the parent of the node being added to the tree
      * @return the newly added node as ParseNode object.
      */
-    public ParseNode addNonTerminalToTree(ParseNode parentNode) {
-        // This uses a Java "Trick" to return the name of the function that
-        // called this method.
-        final String fromMethodName
-                = Thread
-                        .currentThread()
-                        .getStackTrace()[2] // See note in method comments.
-                        .getMethodName()
-                        .toUpperCase();
+    public ParseNode addNonTerminalToTree(NONTERMINAL nonTerminal, ParseNode parentNode) {
+        final var toNode = new ParseNode(nonTerminal.getLabel(), nextNodeId++, parentNode.getDepth() + 1);
+        if (metrics != null) {
+            metrics.countNode(nonTerminal, toNode.getDepth());
+        }
 
-        final var toNode = buildNode("<" + fromMethodName + ">");
+        addNonTerminalToTree(parentNode, toNode);
+        return toNode;
+    }
+
+    /**
+     * Add the "<TOKEN>" node above a terminal to the parse tree.
+     *
+     * @param token the token of the terminal.
+     * @param parentNode the parent of the node being added to the tree
+     * @return the newly added node as ParseNode object.
+     */
+    public ParseNode addNonTerminalToTree(TOKEN token, ParseNode parentNode) {
+        final var toNode = buildNode(token.getLabel());
 
         addNonTerminalToTree(parentNode, toNode);
         return toNode;
@@ -319,9 +1332,7 @@ class CodeGenerator {
 
     // Show the non-terminals as boxes...
     public ParseNode addNonTerminalToTree(ParseNode fromNode, ParseNode toNode) {
-        var msg = String.format("\t\"%s\" -> {\"%s\" [label=\"%s\", shape=rect]};%n", fromNode, toNode, toNode.getNodeName());
-
-        outputGeneratedCode(msg);
+        appendEdge(fromNode, toNode, toNode.getNodeName(), "rect");
         return toNode;
     }
 
@@ -332,29 +1343,41 @@ class CodeGenerator {
 
     // Show the terminals as ovals...
     public void addEmptyToTree(ParseNode fromNode) {
-        var node = new ParseNode("ENPTY");
-        var msg = String.format("\t\"%s\" -> {\"%s\" [label=\"%s\", shape=none]};%n", fromNode, node, "&epsilon;");
-
-        outputGeneratedCode(msg);
+        var node = buildNode("ENPTY");
+        appendEdge(fromNode, node, "&epsilon;", "none");
     }
     public void addNothingToTree(ParseNode fromNode) {
         //var node = new ParseNode("ENPTY");
-        var msg = String.format("\t\"sa\" -> {};");
+        outputBuffer.append("\t\"sa\" -> {};");
+        outputGeneratedCode();
+    }
 
-        outputGeneratedCode(msg);
+    // Call this for every syntax error when the parser recovers from them:
+    // unlike syntaxError(), the output goes on.
+    public void addErrorToTree(String err, ParseNode fromNode) {
+        outputBuffer.append('\t');
+        appendNode(fromNode).append(" -> {\"").append(err).append("\"};").append(NEWLINE);
+        outputGeneratedCode();
     }
 
     // Call this if a syntax error occurs...
     public void syntaxError(String err, ParseNode fromNode) throws Parser.ParseException {
-        var msg = String.format("\t\"%s\" -> {\"%s\"};%n}%n", fromNode, err);
+        outputBuffer.append('\t');
+        appendNode(fromNode).append(" -> {\"").append(err).append("\"};")
+                .append(NEWLINE).append('}').append(NEWLINE);
 
-        outputGeneratedCode(msg);
+        flush();
         throw new Parser.ParseException(err);
     }
 
     // Build a node name so it can be later "deconstructed" for the output.
-    private ParseNode buildNode(String name) {
-        return new ParseNode(name);
+    ParseNode buildNode(String name) {
+        return new ParseNode(name, nextNodeId());
+    }
+
+    // Number a node without building a ParseNode for it.
+    int nextNodeId() {
+        return nextNodeId++;
     }
 
     // "Real" executable code generally has a header.  See:
@@ -362,11 +1385,10 @@ class CodeGenerator {
     // (There are some good diagrams at the link)
     public void writeHeader(ParseNode node) {
         // The header for the "compiled" output
-        var msg = String.format("digraph ParseTree {\n"
-                + "\t\"%s\" [label=\"%s\", shape=diamond];\n",
-                node, node.getNodeName());
+        outputBuffer.append("digraph ParseTree {\n\t");
+        appendNode(node).append(" [label=\"").append(node.getNodeName()).append("\", shape=diamond];\n");
 
-        outputGeneratedCode(msg);
+        outputGeneratedCode();
     }
 
     public ParseNode writeHeader(String nodeString) {
@@ -378,51 +1400,81 @@ class CodeGenerator {
 
     // Our output requires a footer as well.
     public void writeFooter() {
-        var msg = String.format("}\n");
+        outputBuffer.append("}\n");
 
-        outputGeneratedCode(msg);
+        flush();
     }
 
     /**
-     * To open a browser window...
+     * Generate the code for a whole (in-memory) ParseTree: the exact same
+     * output as generating it while parsing. (Just another "visitor" of the
+     * tree; see ParseTree.)
      *
-     * FEEL FREE TO IGNORE THIS!!! It's just for opening the default browser, if
-     * desired.
+     * @param tree the tree to output.
      */
-    static void openWebGraphViz(String graph) throws UnsupportedEncodingException {
-        // final var WEBGRAPHVIZ_HOME = "http://www.webgraphviz.com/";
-        // final var WEBGRAPHVIZ_HOME = http://viz-js.com/
-        final var WEBGRAPHVIZ_HOME = "https://dreampuf.github.io/GraphvizOnline/";
-
-        final var MSG
-                = "To visualize the output you may, Copy/Paste the \n"
-                + "parser output into: http://www.webgraphviz.com\n";
+    public void writeTree(ParseTree tree) {
+        if (tree.size() == 0) {
+            return;
+        }
 
-        String encoded = URLEncoder.encode(graph, "UTF-8").replace("+", "%20");
+        final var root = tree.getRoot();
+        outputBuffer.append("digraph ParseTree {\n\t");
+        appendNode(tree.getName(root), tree.getNodeId(root))
+                .append(" [label=\"").append(tree.getLabel(root)).append("\", shape=diamond];\n");
 
-        // Open the default browser with the url:
-        if (Desktop.isDesktopSupported())
-        try {
-            final URL webGraphvizURI = new URL(WEBGRAPHVIZ_HOME + "#" + encoded);
-            final Desktop desktop = Desktop.getDesktop();
-
-            // Can we launch a browser?
-            if (desktop.isSupported(Desktop.Action.BROWSE)) {
-                System.out.println(MSG);
-                var response = JOptionPane.showConfirmDialog(
-                        null,
-                        MSG + "\nOpen Web Graphviz Page?",
-                        "Open Web Graphviz Page",
-                        JOptionPane.YES_NO_OPTION);
-
-                //
-                if (response == JOptionPane.YES_OPTION) {
-                    desktop.browse(webGraphvizURI.toURI());
-                }
+        tree.walk((t, node) -> {
+            if (node != root) {
+                final var parent = t.getParent(node);
+                appendEdge(t.getName(parent), t.getNodeId(parent),
+                        t.getName(node), t.getNodeId(node), t.getLabel(node), t.getShape(node));
             }
-        } catch (IOException | URISyntaxException ex) {
-            java.util.logging.Logger.getAnonymousLogger().log(java.util.logging.Level.WARNING, "Could not open browser", ex);
+        });
+
+        if (tree.getErrorNode() == ParseTree.NONE) {
+            outputBuffer.append("}\n");
+        } else {
+            final var errorNode = tree.getErrorNode();
+            outputBuffer.append('\t');
+            appendNode(tree.getName(errorNode), tree.getNodeId(errorNode))
+                    .append(" -> {\"").append(tree.getError()).append("\"};")
+                    .append(NEWLINE).append('}').append(NEWLINE);
+        }
+        flush();
+    }
+
+    /**
+     * The same, for a tree read from a tree file: the same DOT as for the
+     * ParseTree it was written from. (The nodes of a TreeFile are in the order
+     * of a walk of the tree, so this is just a pass over them.)
+     *
+     * @param tree the tree.
+     */
+    public void writeTree(TreeFile tree) {
+        if (tree.size() == 0) {
+            return;
+        }
+
+        final var root = tree.getRoot();
+        outputBuffer.append("digraph ParseTree {\n\t");
+        appendNode(tree.getName(root), tree.getNodeId(root))
+                .append(" [label=\"").append(tree.getLabel(root)).append("\", shape=diamond];\n");
+
+        for (var node = root + 1; node < tree.size(); node++) {
+            final var parent = tree.getParent(node);
+            appendEdge(tree.getName(parent), tree.getNodeId(parent),
+                    tree.getName(node), tree.getNodeId(node), tree.getLabel(node), tree.getShape(node));
+        }
+
+        if (tree.getErrorNode() == ParseTree.NONE) {
+            outputBuffer.append("}\n");
+        } else {
+            final var errorNode = tree.getErrorNode();
+            outputBuffer.append('\t');
+            appendNode(tree.getName(errorNode), tree.getNodeId(errorNode))
+                    .append(" -> {\"").append(tree.getError()).append("\"};")
+                    .append(NEWLINE).append('}').append(NEWLINE);
         }
+        flush();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * COSC 455 Programming Languages: Implementation and Design.
+ *
+ * Checks that the TableDrivenParser and the (recursive) Parser agree: for
+ * every program, both must generate exactly the same GraphViz output, and stop
+ * at the same syntax error (if any). So must the ParallelParser, with every
+ * program cut into many small parts (so most of them have to be stitched
+ * together, and the mutated ones often don't line up). And so must the
+ * IncrementalParser, after every one of a series of random edits.
+ *
+ * Usage: java COSC455.ParserExample_Java11.MAIN_CrossCheck [--tables] [FILE | DIRECTORY | GLOB | @LIST]...
+ *
+ * With no inputs, a built-in corpus is checked: the sample program at many
+ * sizes, programs from the ProgramGenerator (deeply nested ones too), plus a
+ * few thousand (seeded) random mutations of them, most of which have syntax
+ * errors; and then a few thousand (seeded) random edits of generated
+ * programs, each checked against parsing the edited program from scratch.
+ * With --tables, the FIRST and FOLLOW sets are printed.
+ *
+ * Exits with 1 if any program is parsed differently.
+ */
+public class MAIN_CrossCheck {
+
+    // The random mutations of the built-in corpus (-Dmutations=...).
+    private static final int MUTATIONS = Integer.getInteger("mutations", 5000);
+
+    // The programs edited with the IncrementalParser (-Dedited=...), and the
+    // edits of each one.
+    private static final int EDITED = Integer.getInteger("edited", 2000);
+    private static final int EDITS = 30;
+
+    // The words mixed into the mutated programs.
+    private static final String[] WORDS = {
+        "(", ")", "+", "-", "*", "/", ":=", "<", ">=", "!=", "if", "then", "fi",
+        "else", "while", "do", "od", "read", "write", "x", "y", "0", "42", "@"
+    };
+
+    // The threads of the ParallelParser, and the (rough) length of its parts.
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+    private static final int PART_LENGTH = 64;
+
+    private static int checked;
+    private static int mismatches;
+
+    public static void main(String[] args) throws InterruptedException {
+        final var patterns = new ArrayList<>(List.of(args));
+        if (patterns.remove("--tables")) {
+            for (var nonTerminal : NONTERMINAL.values()) {
+                System.out.printf("%-12s FIRST %s%n%12s FOLLOW %s%n", nonTerminal,
+                        TableDrivenParser.getFirst(nonTerminal), "", TableDrivenParser.getFollow(nonTerminal));
+            }
+        }
+
+        // (The recursive Parser needs a big stack for the long programs.)
+        final var thread = new Thread(null, () -> {
+            if (patterns.isEmpty()) {
+                checkCorpus();
+            } else {
+                checkFiles(patterns);
+            }
+        }, "cross-check", 1L << 30);
+        thread.start();
+        thread.join();
+        POOL.shutdown();
+
+        System.out.printf("%d programs checked, %d mismatches%n", checked, mismatches);
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+
+    private static void checkCorpus() {
+        for (var size = 0; size <= 60; size++) {
+            check("sample(" + size + ")", ProgramGenerator.sample(size));
+        }
+        check("sample(100000)", ProgramGenerator.sample(100_000));
+
+        for (var seed = 0; seed < 20; seed++) {
+            check("generated(" + seed + ")", new ProgramGenerator(seed).generate(64 * 1024));
+            check("generated(" + seed + ", deep)", new ProgramGenerator(seed)
+                    .setMaxDepth(200).setMaxParens(200).setMaxWidth(20).generate(64 * 1024));
+        }
+
+        final var random = new Random(455);
+        for (var i = 0; i < MUTATIONS; i++) {
+            final var program = i % 2 == 0
+                    ? ProgramGenerator.sample(1 + random.nextInt(12))
+                    : new ProgramGenerator(i).generate(1 + random.nextInt(300));
+            check("mutation " + i, mutate(program, random));
+        }
+
+        for (var seed = 0; seed < EDITED; seed++) {
+            checkEdits(seed);
+        }
+    }
+
+    // Edit a generated program over and over with the IncrementalParser,
+    // checking its tree against a from-scratch parse after every edit.
+    private static void checkEdits(int seed) {
+        final var random = new Random(seed);
+        final var program = new StringBuilder(new ProgramGenerator(seed).setMaxDepth(4).generate(1 + random.nextInt(400)));
+        final var parser = new IncrementalParser(program.toString());
+
+        var offset = 0;
+        for (var i = 0; i < EDITS; i++) {
+            // (Mostly close to the last edit, as in an editor.)
+            offset = random.nextBoolean()
+                    ? random.nextInt(program.length() + 1)
+                    : Math.max(0, Math.min(program.length(), offset + random.nextInt(21) - 10));
+            final int removed;
+            final String inserted;
+            if (random.nextBoolean()) {
+                // Type over the word at the offset.
+                while (offset > 0 && !Character.isWhitespace(program.charAt(offset - 1))) {
+                    offset--;
+                }
+                var end = offset;
+                while (end < program.length() && !Character.isWhitespace(program.charAt(end))) {
+                    end++;
+                }
+                removed = end - offset;
+                inserted = WORDS[random.nextInt(WORDS.length)];
+            } else {
+                removed = random.nextInt(3) == 0 ? Math.min(program.length() - offset, random.nextInt(8)) : 0;
+                inserted = random.nextInt(5) == 0 ? "" : editWord(random);
+            }
+            program.replace(offset, offset + removed, inserted);
+            parser.edit(offset, removed, inserted);
+
+            final var expected = new ParseTree();
+            final var lexer = new LexicalAnalyzer(program.toString());
+            new Parser(lexer, new ParseTreeBuilder(expected, lexer)).analyze();
+            final var incremental = parser.getTree(new ParseTree());
+
+            final var full = new StringBuilder();
+            new CodeGenerator(full, false).writeTree(expected);
+            final var edited = new StringBuilder();
+            new CodeGenerator(edited, false).writeTree(incremental);
+
+            checked++;
+            if (full.compareTo(edited) != 0 || !Objects.equals(expected.getError(), incremental.getError())) {
+                mismatches++;
+                System.out.printf("MISMATCH: edited(%d), edit %d [%d, %d) -> \"%s\"%n  full:        %s%n  incremental: %s%n",
+                        seed, i, offset, offset + removed, inserted, expected.getError(), incremental.getError());
+                return;
+            }
+        }
+    }
+
+    // A word (or a piece of a word) to insert, with or without whitespace.
+    private static String editWord(Random random) {
+        final var word = WORDS[random.nextInt(WORDS.length)];
+        switch (random.nextInt(4)) {
+            case 0:
+                return word;
+            case 1:
+                return " " + word + " ";
+            case 2:
+                return "\n" + word + "\n";
+            default:
+                return word.substring(0, 1 + random.nextInt(word.length()));
+        }
+    }
+
+    // Insert, replace or delete a few words of a program.
+    private static String mutate(String program, Random random) {
+        final var words = new ArrayList<>(List.of(program.trim().split("\\s+")));
+        for (var edits = 1 + random.nextInt(3); edits > 0; edits--) {
+            final var at = random.nextInt(words.size() + 1);
+            final var word = WORDS[random.nextInt(WORDS.length)];
+            switch (random.nextInt(3)) {
+                case 0:
+                    words.add(at, word);
+                    break;
+                case 1:
+                    if (at < words.size()) {
+                        words.set(at, word);
+                    }
+                    break;
+                default:
+                    if (at < words.size()) {
+                        words.remove(at);
+                    }
+            }
+        }
+        return String.join(" ", words);
+    }
+
+    private static void checkFiles(List<String> patterns) {
+        try {
+            for (var input : BatchCompiler.findInputs(patterns)) {
+                check(input.file.toString(), Files.readString(input.file));
+            }
+        } catch (IOException ex) {
+            System.err.println(ex);
+            mismatches++;
+        }
+    }
+
+    // Parse a program with both parsers, and compare what they generate.
+    private static void check(String name, String program) {
+        final var recursive = new StringBuilder();
+        final var recursiveLexer = new LexicalAnalyzer(program);
+        final var parser = new Parser(recursiveLexer, new CodeGenerator(recursive, false));
+        parser.analyze();
+
+        final var tableDriven = new StringBuilder();
+        final var tableLexer = new LexicalAnalyzer(program);
+        final var tableParser = new TableDrivenParser(tableLexer, new CodeGenerator(tableDriven, false));
+        tableParser.analyze();
+
+        final var chars = program.toCharArray();
+        final var tree = new ParallelParser(chars, chars.length, POOL, 1 + chars.length / PART_LENGTH)
+                .parse(new ParseTree());
+        // (The graphs are compared as they are: copying them to Strings
+        // would take more memory than the biggest programs have to spare.)
+        final var parallel = new StringBuilder();
+        new CodeGenerator(parallel, false).writeTree(tree);
+
+        checked++;
+        if (recursive.compareTo(tableDriven) != 0
+                || !Objects.equals(parser.getSyntaxError(), tableParser.getSyntaxError())
+                || recursiveLexer.getCurrentTokenIndex() != tableLexer.getCurrentTokenIndex()) {
+            mismatches++;
+            System.out.printf("MISMATCH: %s%n  recursive:    %s%n  table driven: %s%n",
+                    name, parser.getSyntaxError(), tableParser.getSyntaxError());
+        } else if (recursive.compareTo(parallel) != 0
+                || !Objects.equals(parser.getSyntaxError(), tree.getError())) {
+            mismatches++;
+            System.out.printf("MISMATCH: %s%n  recursive:    %s%n  parallel:     %s%n",
+                    name, parser.getSyntaxError(), tree.getError());
+        }
+    }
+}
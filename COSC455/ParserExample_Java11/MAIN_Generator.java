@@ -0,0 +1,105 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * COSC 455 Programming Languages: Implementation and Design.
+ *
+ * Writes a random (but valid) program of a given size, eg. a 1 GB input to
+ * stress the LexicalAnalyzer and Parser with (see ProgramGenerator).
+ *
+ * Usage: java COSC455.ParserExample_Java11.MAIN_Generator [--seed N] [--size SIZE]
+ *            [--depth N] [--width N] [--parens N] [--identifiers N] [--out FILE]
+ *
+ * SIZE is eg. "10MB" (the default is 1MB). Without --out, the program goes to
+ * the standard output. The same seed and options always give the same program.
+ */
+public class MAIN_Generator {
+
+    private static final String USAGE = "Usage: MAIN_Generator [--seed N] [--size SIZE] [--depth N] [--width N] [--parens N] [--identifiers N] [--out FILE]";
+
+    public static void main(String[] args) throws IOException {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) throws IOException {
+        var seed = 0L;
+        var size = 1L << 20;
+        Path out = null;
+        final ProgramGenerator generator;
+
+        try {
+            var depth = -1;
+            var width = -1;
+            var parens = -1;
+            var identifiers = -1;
+            for (var i = 0; i < args.length; i++) {
+                final var option = args[i];
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                final var value = args[++i];
+                switch (option) {
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--size":
+                        size = ProgramGenerator.parseSize(value);
+                        break;
+                    case "--depth":
+                        depth = Integer.parseInt(value);
+                        break;
+                    case "--width":
+                        width = Integer.parseInt(value);
+                        break;
+                    case "--parens":
+                        parens = Integer.parseInt(value);
+                        break;
+                    case "--identifiers":
+                        identifiers = Integer.parseInt(value);
+                        break;
+                    case "--out":
+                        out = Path.of(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            }
+
+            generator = new ProgramGenerator(seed);
+            if (depth >= 0) {
+                generator.setMaxDepth(depth);
+            }
+            if (width >= 0) {
+                generator.setMaxWidth(width);
+            }
+            if (parens >= 0) {
+                generator.setMaxParens(parens);
+            }
+            if (identifiers >= 0) {
+                generator.setIdentifiers(identifiers);
+            }
+        } catch (IllegalArgumentException ex) {
+            // (NumberFormatException is an IllegalArgumentException too.)
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        final var start = System.nanoTime();
+        final long written;
+        if (out == null) {
+            final Writer writer = new OutputStreamWriter(System.out, StandardCharsets.US_ASCII);
+            written = generator.generate(writer, size);
+            writer.flush();
+        } else {
+            written = generator.generate(out, size);
+            System.err.printf("Wrote %,d bytes to %s in %.1f s%n", written, out, (System.nanoTime() - start) / 1e9);
+        }
+        return 0;
+    }
+}
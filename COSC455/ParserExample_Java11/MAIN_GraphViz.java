@@ -0,0 +1,88 @@
+package COSC455.ParserExample_Java11;
+
+import java.awt.Desktop;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.JOptionPane;
+
+/**
+ * COSC 455 Programming Languages: Implementation and Design.
+ *
+ * Compiles a program (printing the parse tree, as MAIN_Compiler does) and then
+ * offers to open the tree in a web GraphViz viewer, in the default browser.
+ *
+ * This is the only part of the compiler that needs a desktop (AWT and Swing),
+ * so it is a launcher of its own: MAIN_Compiler and MAIN_Headless never load
+ * it.
+ *
+ * Usage: java COSC455.ParserExample_Java11.MAIN_GraphViz [FILE]
+ */
+public class MAIN_GraphViz {
+
+    public static void main(String[] args) throws IOException {
+        final File file = new File(args.length == 0 ? "COSC455/ParserExample_Java11/input.txt" : args[0]);
+        System.out.println(file.getCanonicalPath());
+        if (!file.exists()) {
+            System.err.printf("Input file not found: %s%n", file.toPath());
+            return;
+        }
+
+        final String compiledCode = MAIN_Compiler.compile(file);
+
+        // Display the graphviz test page.
+        try {
+            openWebGraphViz(compiledCode);
+        } catch (UnsupportedEncodingException ex) {
+            final String msg = "Could not create a valid URL String!!!";
+            Logger.getLogger("MAIN_GraphViz").log(Level.SEVERE, msg, ex);
+        }
+    }
+
+    /**
+     * To open a browser window...
+     *
+     * FEEL FREE TO IGNORE THIS!!! It's just for opening the default browser, if
+     * desired.
+     */
+    static void openWebGraphViz(String graph) throws UnsupportedEncodingException {
+        // final var WEBGRAPHVIZ_HOME = "http://www.webgraphviz.com/";
+        // final var WEBGRAPHVIZ_HOME = http://viz-js.com/
+        final var WEBGRAPHVIZ_HOME = "https://dreampuf.github.io/GraphvizOnline/";
+
+        final var MSG
+                = "To visualize the output you may, Copy/Paste the \n"
+                + "parser output into: http://www.webgraphviz.com\n";
+
+        String encoded = URLEncoder.encode(graph, "UTF-8").replace("+", "%20");
+
+        // Open the default browser with the url:
+        if (Desktop.isDesktopSupported())
+        try {
+            final URL webGraphvizURI = new URL(WEBGRAPHVIZ_HOME + "#" + encoded);
+            final Desktop desktop = Desktop.getDesktop();
+
+            // Can we launch a browser?
+            if (desktop.isSupported(Desktop.Action.BROWSE)) {
+                System.out.println(MSG);
+                var response = JOptionPane.showConfirmDialog(
+                        null,
+                        MSG + "\nOpen Web Graphviz Page?",
+                        "Open Web Graphviz Page",
+                        JOptionPane.YES_NO_OPTION);
+
+                //
+                if (response == JOptionPane.YES_OPTION) {
+                    desktop.browse(webGraphvizURI.toURI());
+                }
+            }
+        } catch (IOException | URISyntaxException ex) {
+            Logger.getAnonymousLogger().log(Level.WARNING, "Could not open browser", ex);
+        }
+    }
+}
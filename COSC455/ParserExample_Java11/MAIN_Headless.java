@@ -0,0 +1,124 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * COSC 455 Programming Languages: Implementation and Design.
+ *
+ * Compiles one file, as fast as a JVM can start: for build scripts and build
+ * agents (with no display), which run the compiler once per file.
+ *
+ * Usage: java COSC455.ParserExample_Java11.MAIN_Headless [--format graphviz|ast|bytecode|tree|compressed_tree] [--out FILE] [--threads N] INPUT
+ *
+ * The output goes to FILE ("-" for the standard output), or else next to the
+ * input (eg. "prog.txt.dot"). For the formats that build a parse tree (all
+ * but graphviz), a big input (8MB or more) is lexed and parsed on N threads
+ * at once (by default, one per processor; see ParallelParser), with the same
+ * output. The exit status is 0 if the file compiled, 1 if it did not (the
+ * syntax error goes to the standard error), and 2 for bad arguments.
+ *
+ * To start fast, nothing is loaded that a single compile doesn't need: no AWT
+ * or Swing (it runs with --limit-modules java.base,java.logging, as a syntax
+ * error is logged), no thread pools (unless the input is big enough to parse
+ * in parallel), and no JMX: the CompilerMetrics are off, unless turned on
+ * with -Dcompiler.metrics=on.
+ * Startup can be cut further with an AppCDS archive of the classes a training
+ * run loads; see the "Headless compiler" section of the README (and
+ * grammar-parser-headless.jar, which has this as its Main-Class).
+ */
+public class MAIN_Headless {
+
+    private static final String USAGE = "Usage: MAIN_Headless [--format graphviz|ast|bytecode|tree|compressed_tree] [--out FILE] [--threads N] INPUT";
+
+    // The parser recurses once per nesting level, so it runs on a thread with
+    // a big stack. (The stack is only reserved, not used, up front.)
+    private static final long STACK_SIZE = 512L * 1024 * 1024;
+
+    public static void main(String[] args) throws InterruptedException {
+        // (Before anything loads CompilerMetrics.)
+        if (System.getProperty("compiler.metrics") == null) {
+            System.setProperty("compiler.metrics", "off");
+        }
+
+        // (An anonymous class, not a lambda: bootstrapping the first lambda
+        // costs more than the whole compile of a small file.)
+        final var status = new int[]{1}; // (Unless run() returns.)
+        final var compiler = new Thread(null, new Runnable() {
+            @Override
+            public void run() {
+                status[0] = MAIN_Headless.run(args);
+            }
+        }, "compiler", STACK_SIZE);
+        compiler.start();
+        compiler.join();
+        System.exit(status[0]);
+    }
+
+    static int run(String[] args) {
+        var mode = OUTPUT_MODE.GRAPHVIZ;
+        String out = null;
+        String input = null;
+        var threads = Runtime.getRuntime().availableProcessors();
+
+        try {
+            for (var i = 0; i < args.length; i++) {
+                if (args[i].equals("--format") && i + 1 < args.length) {
+                    mode = OUTPUT_MODE.fromName(args[++i]);
+                } else if (args[i].equals("--out") && i + 1 < args.length) {
+                    out = args[++i];
+                } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                    if (threads < 1) {
+                        throw new IllegalArgumentException("--threads must be at least 1");
+                    }
+                } else if (args[i].startsWith("--") || input != null) {
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                } else {
+                    input = args[i];
+                }
+            }
+            if (input == null) {
+                throw new IllegalArgumentException("Must Provide an input filename!!");
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        final var inputFile = new File(input);
+        if (!inputFile.isFile()) {
+            System.err.println("Input file not found: " + input);
+            return 1;
+        }
+
+        final String error;
+        try {
+            if ("-".equals(out)) {
+                error = MAIN_Compiler.compile(inputFile, System.out, mode, threads);
+                System.out.flush();
+            } else {
+                // (concat, not "+": the first "+" of Strings bootstraps a
+                // method handle, which is slow to start.)
+                final var outputFile = Path.of(out == null ? input.concat(mode.getExtension()) : out);
+                try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(outputFile))) {
+                    error = MAIN_Compiler.compile(inputFile, output, mode, threads);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("FAILED " + input + ": " + ex);
+            return 1;
+        }
+
+        if (error != null) {
+            System.err.println("FAILED " + input + ": " + error);
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,178 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * COSC 455 Programming Languages: Implementation and Design.
+ *
+ * Runs a program instead of drawing its parse tree: the program is parsed
+ * into a ParseTree, "compiled" into a tree of executable nodes by the
+ * Interpreter, and then run, reading the input for "read" from the keyboard
+ * (standard input) and printing everything "write"s, one number per line.
+ *
+ * The compiled program is optimized (see Optimizer) before it is run; with
+ * --report, the number of nodes the Optimizer removed is printed (on the
+ * standard error, so it doesn't mix with the output of the program).
+ *
+ * Usage: java COSC455.ParserExample_Java11.MAIN_Interpreter [--report] [FILE]
+ */
+public class MAIN_Interpreter {
+
+    public static void main(String[] args) throws IOException {
+        final var report = args.length > 0 && args[0].equals("--report");
+        final var files = report ? Arrays.copyOfRange(args, 1, args.length) : args;
+        final var file = new File(files.length == 0 ? "COSC455/ParserExample_Java11/input.txt" : files[0]);
+        if (!file.exists()) {
+            System.err.printf("Input file not found: %s%n", file.toPath());
+            System.exit(2);
+        }
+
+        try (var output = new ProgramOutput(System.out)) {
+            final var optimizer = new Optimizer(Interpreter.compile(MAIN_Compiler.parse(file, new ParseTree())));
+            final var interpreter = optimizer.optimize();
+            if (report) {
+                System.err.println(optimizer.getSummary());
+            }
+            interpreter.run(new ProgramInput(System.in), output);
+        } catch (Parser.ParseException | Interpreter.RuntimeError ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+    }
+}
+
+/**
+ * *****************************************************************************
+ * Buffered input for "read": whitespace separated (optionally signed) whole
+ * numbers, parsed straight from the bytes of a stream.
+ */
+final class ProgramInput implements LongSupplier {
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+
+    ProgramInput(InputStream in) {
+        this.in = in;
+    }
+
+    // The next byte (0 to 255), or -1 at the end of the input.
+    private int next() {
+        if (position == limit) {
+            try {
+                limit = in.read(buffer, 0, buffer.length);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public long getAsLong() {
+        var c = next();
+        while (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') {
+            c = next();
+        }
+        if (c == -1) {
+            throw new Interpreter.RuntimeError("RUNTIME ERROR: 'read' past the end of the input");
+        }
+
+        final var negative = c == '-';
+        if (c == '-' || c == '+') {
+            c = next();
+        }
+        if (c < '0' || c > '9') {
+            throw new Interpreter.RuntimeError("RUNTIME ERROR: 'read' expected a number");
+        }
+
+        var value = 0L;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            c = next();
+        }
+        return negative ? -value : value;
+    }
+}
+
+/**
+ * *****************************************************************************
+ * Buffered output for "write": one number per line. (Nothing reaches the
+ * stream before flush()/close().)
+ */
+final class ProgramOutput implements LongConsumer, Flushable, Closeable {
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int length;
+
+    ProgramOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void accept(long value) {
+        // (The longest long, "-9223372036854775808\n", is 21 bytes.)
+        if (length + 21 > buffer.length) {
+            flushBuffer();
+        }
+        if (value == Long.MIN_VALUE) {
+            for (var c : "-9223372036854775808".toCharArray()) {
+                buffer[length++] = (byte) c;
+            }
+        } else {
+            if (value < 0) {
+                buffer[length++] = '-';
+                value = -value;
+            }
+            final var start = length;
+            do {
+                buffer[length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+
+            // The digits came out backwards.
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                final var digit = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = digit;
+            }
+        }
+        buffer[length++] = '\n';
+    }
+
+    private void flushBuffer() {
+        try {
+            out.write(buffer, 0, length);
+            length = 0;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
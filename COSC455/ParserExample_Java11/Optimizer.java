@@ -0,0 +1,465 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.*;
+
+/**
+ * *****************************************************************************
+ * A (simple) optimizer for the executable nodes of the Interpreter, run between
+ * compiling a program and running it (or handing it to the BytecodeCompiler).
+ *
+ * It makes two passes over the program:
+ *
+ *   1. Folding, from the leaves up:
+ *        - operators on two NUMBERs are replaced by their value ("2 * 3" -> 6),
+ *        - identities are dropped: x + 0, 0 + x, x - 0, x * 1, 1 * x, x / 1,
+ *          and x * 0 / 0 * x become 0,
+ *        - an "if" whose condition is always false is dropped, one whose
+ *          condition is always true is replaced by its body, and so is a
+ *          "while" whose condition is always false.
+ *
+ *   2. Dead assignments, from the end of the program back to the start: an
+ *      assignment to a variable that is never read again (before being
+ *      assigned again) is dropped. ("Live" variables are tracked in a BitSet
+ *      of slots; a while loop is repeated until its live set stops growing.)
+ *
+ * Nothing that can fail at run time is ever removed or folded away: "7 / 0"
+ * is left alone (so it still stops the program), and so is any expression
+ * with a "/" in it that might still divide by zero. "read"s are always kept,
+ * since they consume the input.
+ *
+ * NOTE: Only what the program writes is kept the same. The final values of
+ * the variables (as returned by Interpreter.run) can differ, since dead
+ * assignments are never made.
+ */
+final class Optimizer {
+
+    private static final long[] NO_SLOTS = new long[0];
+
+    private final Interpreter program;
+
+    private int nodesBefore;
+    private int nodesAfter;
+    private int operationsBefore;
+    private int operationsAfter;
+
+    /**
+     * @param program the program to optimize.
+     */
+    Optimizer(Interpreter program) {
+        this.program = program;
+    }
+
+    /**
+     * Optimize the program.
+     *
+     * @return the optimized program (the original is left as it was).
+     */
+    Interpreter optimize() {
+        final var before = program.getProgram();
+        nodesBefore = countNodes(before);
+        operationsBefore = countOperations(before);
+
+        var after = statement(before);
+        after = sweep(after == null ? block(List.of()) : after, new BitSet());
+        after = after == null ? block(List.of()) : after;
+
+        nodesAfter = countNodes(after);
+        operationsAfter = countOperations(after);
+        return new Interpreter(program.getVariables(), after);
+    }
+
+    // The number of nodes (statements, conditions and expressions) removed.
+    int getRemovedNodes() {
+        return nodesBefore - nodesAfter;
+    }
+
+    // The number of operations (arithmetic and comparisons) removed.
+    int getRemovedOperations() {
+        return operationsBefore - operationsAfter;
+    }
+
+    /**
+     * @return eg. "Optimizer: 120 -> 84 nodes (36 removed), 40 -> 25
+     * operations (15 removed)"
+     */
+    String getSummary() {
+        return String.format("Optimizer: %d -> %d nodes (%d removed), %d -> %d operations (%d removed)",
+                nodesBefore, nodesAfter, getRemovedNodes(),
+                operationsBefore, operationsAfter, getRemovedOperations());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Pass 1: folding. (null stands for "no statement at all".)
+    ////////////////////////////////////////////////////////////////////////////
+    private Interpreter.Stmt statement(Interpreter.Stmt statement) {
+        if (statement instanceof Interpreter.Block) {
+            final var statements = new ArrayList<Interpreter.Stmt>();
+            for (var s : ((Interpreter.Block) statement).statements) {
+                addTo(statements, statement(s));
+            }
+            return statements.isEmpty() ? null : block(statements);
+
+        } else if (statement instanceof Interpreter.Assign) {
+            final var assign = (Interpreter.Assign) statement;
+            final var value = expression(assign.value);
+            return value == assign.value ? assign : new Interpreter.Assign(assign.slot, value);
+
+        } else if (statement instanceof Interpreter.Write) {
+            final var write = (Interpreter.Write) statement;
+            final var value = expression(write.value);
+            return value == write.value ? write : new Interpreter.Write(value);
+
+        } else if (statement instanceof Interpreter.If) {
+            final var ifStatement = (Interpreter.If) statement;
+            final var condition = condition(ifStatement.condition);
+            final var value = staticValue(condition);
+            if (value == Boolean.FALSE) {
+                return null;
+            }
+            final var body = statement(ifStatement.body);
+            if (value == Boolean.TRUE) {
+                return body;
+            }
+            if (body == null && canNotFail(condition)) {
+                return null;
+            }
+            return new Interpreter.If(condition, orEmpty(body));
+
+        } else if (statement instanceof Interpreter.While) {
+            final var whileStatement = (Interpreter.While) statement;
+            final var condition = condition(whileStatement.condition);
+            if (staticValue(condition) == Boolean.FALSE) {
+                return null;
+            }
+            // (An empty loop still has to loop: it may never end.)
+            return new Interpreter.While(condition, orEmpty(statement(whileStatement.body)));
+
+        } else {
+            return statement; // read
+        }
+    }
+
+    private Interpreter.Condition condition(Interpreter.Condition condition) {
+        if (condition instanceof Interpreter.LessThan) {
+            final var c = (Interpreter.LessThan) condition;
+            final var left = expression(c.left);
+            final var right = expression(c.right);
+            return left == c.left && right == c.right ? c : new Interpreter.LessThan(left, right);
+        } else if (condition instanceof Interpreter.LessOrEqual) {
+            final var c = (Interpreter.LessOrEqual) condition;
+            final var left = expression(c.left);
+            final var right = expression(c.right);
+            return left == c.left && right == c.right ? c : new Interpreter.LessOrEqual(left, right);
+        } else if (condition instanceof Interpreter.Equal) {
+            final var c = (Interpreter.Equal) condition;
+            final var left = expression(c.left);
+            final var right = expression(c.right);
+            return left == c.left && right == c.right ? c : new Interpreter.Equal(left, right);
+        } else {
+            final var c = (Interpreter.NotEqual) condition;
+            final var left = expression(c.left);
+            final var right = expression(c.right);
+            return left == c.left && right == c.right ? c : new Interpreter.NotEqual(left, right);
+        }
+    }
+
+    private Interpreter.Expr expression(Interpreter.Expr expression) {
+        if (expression instanceof Interpreter.Add) {
+            final var e = (Interpreter.Add) expression;
+            final var left = expression(e.left);
+            final var right = expression(e.right);
+            if (isConstant(left) && isConstant(right)) {
+                return fold(new Interpreter.Add(left, right));
+            } else if (isConstant(right, 0)) {
+                return left;
+            } else if (isConstant(left, 0)) {
+                return right;
+            }
+            return left == e.left && right == e.right ? e : new Interpreter.Add(left, right);
+
+        } else if (expression instanceof Interpreter.Subtract) {
+            final var e = (Interpreter.Subtract) expression;
+            final var left = expression(e.left);
+            final var right = expression(e.right);
+            if (isConstant(left) && isConstant(right)) {
+                return fold(new Interpreter.Subtract(left, right));
+            } else if (isConstant(right, 0)) {
+                return left;
+            }
+            return left == e.left && right == e.right ? e : new Interpreter.Subtract(left, right);
+
+        } else if (expression instanceof Interpreter.Multiply) {
+            final var e = (Interpreter.Multiply) expression;
+            final var left = expression(e.left);
+            final var right = expression(e.right);
+            if (isConstant(left) && isConstant(right)) {
+                return fold(new Interpreter.Multiply(left, right));
+            } else if (isConstant(right, 1)) {
+                return left;
+            } else if (isConstant(left, 1)) {
+                return right;
+            } else if ((isConstant(left, 0) && canNotFail(right)) || (isConstant(right, 0) && canNotFail(left))) {
+                return new Interpreter.Constant(0);
+            }
+            return left == e.left && right == e.right ? e : new Interpreter.Multiply(left, right);
+
+        } else if (expression instanceof Interpreter.Divide) {
+            final var e = (Interpreter.Divide) expression;
+            final var left = expression(e.left);
+            final var right = expression(e.right);
+            if (isConstant(left) && isConstant(right) && !isConstant(right, 0)) {
+                return fold(new Interpreter.Divide(left, right));
+            } else if (isConstant(right, 1)) {
+                return left;
+            }
+            return left == e.left && right == e.right ? e : new Interpreter.Divide(left, right);
+
+        } else {
+            return expression; // a constant or variable
+        }
+    }
+
+    // Evaluate an operator on two constants (exactly as the program would).
+    private static Interpreter.Expr fold(Interpreter.Expr expression) {
+        return new Interpreter.Constant(expression.eval(NO_SLOTS));
+    }
+
+    // The value of a condition on two constants, or null if it isn't known.
+    private static Boolean staticValue(Interpreter.Condition condition) {
+        final var sides = sides(condition);
+        if (isConstant(sides[0]) && isConstant(sides[1])) {
+            return condition.test(NO_SLOTS);
+        }
+        return null;
+    }
+
+    private static boolean isConstant(Interpreter.Expr expression) {
+        return expression instanceof Interpreter.Constant;
+    }
+
+    private static boolean isConstant(Interpreter.Expr expression, long value) {
+        return isConstant(expression) && ((Interpreter.Constant) expression).value == value;
+    }
+
+    private static Interpreter.Expr[] sides(Interpreter.Condition condition) {
+        if (condition instanceof Interpreter.LessThan) {
+            return new Interpreter.Expr[]{((Interpreter.LessThan) condition).left, ((Interpreter.LessThan) condition).right};
+        } else if (condition instanceof Interpreter.LessOrEqual) {
+            return new Interpreter.Expr[]{((Interpreter.LessOrEqual) condition).left, ((Interpreter.LessOrEqual) condition).right};
+        } else if (condition instanceof Interpreter.Equal) {
+            return new Interpreter.Expr[]{((Interpreter.Equal) condition).left, ((Interpreter.Equal) condition).right};
+        } else {
+            return new Interpreter.Expr[]{((Interpreter.NotEqual) condition).left, ((Interpreter.NotEqual) condition).right};
+        }
+    }
+
+    private static Interpreter.Expr[] operands(Interpreter.Expr expression) {
+        if (expression instanceof Interpreter.Add) {
+            return new Interpreter.Expr[]{((Interpreter.Add) expression).left, ((Interpreter.Add) expression).right};
+        } else if (expression instanceof Interpreter.Subtract) {
+            return new Interpreter.Expr[]{((Interpreter.Subtract) expression).left, ((Interpreter.Subtract) expression).right};
+        } else if (expression instanceof Interpreter.Multiply) {
+            return new Interpreter.Expr[]{((Interpreter.Multiply) expression).left, ((Interpreter.Multiply) expression).right};
+        } else if (expression instanceof Interpreter.Divide) {
+            return new Interpreter.Expr[]{((Interpreter.Divide) expression).left, ((Interpreter.Divide) expression).right};
+        } else {
+            return new Interpreter.Expr[0];
+        }
+    }
+
+    // True if evaluating the expression can't stop the program (the only way
+    // it can is dividing by zero).
+    private static boolean canNotFail(Interpreter.Expr expression) {
+        if (expression instanceof Interpreter.Divide) {
+            final var right = ((Interpreter.Divide) expression).right;
+            if (!isConstant(right) || isConstant(right, 0)) {
+                return false;
+            }
+        }
+        for (var operand : operands(expression)) {
+            if (!canNotFail(operand)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean canNotFail(Interpreter.Condition condition) {
+        final var sides = sides(condition);
+        return canNotFail(sides[0]) && canNotFail(sides[1]);
+    }
+
+    // Add a statement to a list, "flattening" blocks (and skipping nothing).
+    private static void addTo(List<Interpreter.Stmt> statements, Interpreter.Stmt statement) {
+        if (statement instanceof Interpreter.Block) {
+            statements.addAll(Arrays.asList(((Interpreter.Block) statement).statements));
+        } else if (statement != null) {
+            statements.add(statement);
+        }
+    }
+
+    private static Interpreter.Stmt block(List<Interpreter.Stmt> statements) {
+        return statements.size() == 1 ? statements.get(0) : new Interpreter.Block(statements.toArray(new Interpreter.Stmt[0]));
+    }
+
+    private static Interpreter.Stmt orEmpty(Interpreter.Stmt statement) {
+        return statement == null ? block(List.of()) : statement;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Pass 2: dead assignments. "live" holds the slots that are read later on
+    // (on the way in) and those read from here on (on the way out).
+    ////////////////////////////////////////////////////////////////////////////
+    private Interpreter.Stmt sweep(Interpreter.Stmt statement, BitSet live) {
+        if (statement instanceof Interpreter.Block) {
+            final var statements = ((Interpreter.Block) statement).statements;
+            final var kept = new ArrayList<Interpreter.Stmt>(statements.length);
+            for (var i = statements.length - 1; i >= 0; i--) {
+                addTo(kept, sweep(statements[i], live));
+            }
+            Collections.reverse(kept);
+            return kept.isEmpty() ? null : block(kept);
+
+        } else if (statement instanceof Interpreter.Assign) {
+            final var assign = (Interpreter.Assign) statement;
+            if (!live.get(assign.slot) && canNotFail(assign.value)) {
+                return null;
+            }
+            live.clear(assign.slot);
+            uses(assign.value, live);
+            return assign;
+
+        } else if (statement instanceof Interpreter.Read) {
+            live.clear(((Interpreter.Read) statement).slot);
+            return statement;
+
+        } else if (statement instanceof Interpreter.Write) {
+            uses(((Interpreter.Write) statement).value, live);
+            return statement;
+
+        } else if (statement instanceof Interpreter.If) {
+            // Live before: the condition, plus whatever is live after either
+            // running the body or skipping it.
+            final var ifStatement = (Interpreter.If) statement;
+            final var bodyLive = (BitSet) live.clone();
+            final var body = sweep(ifStatement.body, bodyLive);
+            live.or(bodyLive);
+            uses(ifStatement.condition, live);
+            if (body == null && canNotFail(ifStatement.condition)) {
+                return null;
+            }
+            return body == ifStatement.body ? ifStatement : new Interpreter.If(ifStatement.condition, orEmpty(body));
+
+        } else {
+            // Live at the test: the condition, whatever is live after the
+            // loop, and whatever the body needs (on the next time around).
+            final var whileStatement = (Interpreter.While) statement;
+            final var atTest = (BitSet) live.clone();
+            uses(whileStatement.condition, atTest);
+
+            while (true) {
+                final var bodyLive = (BitSet) atTest.clone();
+                sweep(whileStatement.body, bodyLive);
+                bodyLive.or(atTest);
+                if (bodyLive.equals(atTest)) {
+                    break;
+                }
+                atTest.or(bodyLive);
+            }
+
+            final var body = sweep(whileStatement.body, (BitSet) atTest.clone());
+            live.or(atTest);
+            return body == whileStatement.body ? whileStatement : new Interpreter.While(whileStatement.condition, orEmpty(body));
+        }
+    }
+
+    // Add the slots read by an expression (or condition) to "live".
+    private static void uses(Interpreter.Expr expression, BitSet live) {
+        if (expression instanceof Interpreter.Variable) {
+            live.set(((Interpreter.Variable) expression).slot);
+        }
+        for (var operand : operands(expression)) {
+            uses(operand, live);
+        }
+    }
+
+    private static void uses(Interpreter.Condition condition, BitSet live) {
+        for (var side : sides(condition)) {
+            uses(side, live);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Counting.
+    ////////////////////////////////////////////////////////////////////////////
+    private static int countNodes(Interpreter.Stmt statement) {
+        if (statement instanceof Interpreter.Block) {
+            var count = 1;
+            for (var s : ((Interpreter.Block) statement).statements) {
+                count += countNodes(s);
+            }
+            return count;
+        } else if (statement instanceof Interpreter.Assign) {
+            return 1 + countNodes(((Interpreter.Assign) statement).value);
+        } else if (statement instanceof Interpreter.Write) {
+            return 1 + countNodes(((Interpreter.Write) statement).value);
+        } else if (statement instanceof Interpreter.If) {
+            final var ifStatement = (Interpreter.If) statement;
+            return 1 + countNodes(ifStatement.condition) + countNodes(ifStatement.body);
+        } else if (statement instanceof Interpreter.While) {
+            final var whileStatement = (Interpreter.While) statement;
+            return 1 + countNodes(whileStatement.condition) + countNodes(whileStatement.body);
+        } else {
+            return 1; // read
+        }
+    }
+
+    private static int countNodes(Interpreter.Condition condition) {
+        final var sides = sides(condition);
+        return 1 + countNodes(sides[0]) + countNodes(sides[1]);
+    }
+
+    private static int countNodes(Interpreter.Expr expression) {
+        var count = 1;
+        for (var operand : operands(expression)) {
+            count += countNodes(operand);
+        }
+        return count;
+    }
+
+    private static int countOperations(Interpreter.Stmt statement) {
+        if (statement instanceof Interpreter.Block) {
+            var count = 0;
+            for (var s : ((Interpreter.Block) statement).statements) {
+                count += countOperations(s);
+            }
+            return count;
+        } else if (statement instanceof Interpreter.Assign) {
+            return countOperations(((Interpreter.Assign) statement).value);
+        } else if (statement instanceof Interpreter.Write) {
+            return countOperations(((Interpreter.Write) statement).value);
+        } else if (statement instanceof Interpreter.If) {
+            final var ifStatement = (Interpreter.If) statement;
+            return countOperations(ifStatement.condition) + countOperations(ifStatement.body);
+        } else if (statement instanceof Interpreter.While) {
+            final var whileStatement = (Interpreter.While) statement;
+            return countOperations(whileStatement.condition) + countOperations(whileStatement.body);
+        } else {
+            return 0; // read
+        }
+    }
+
+    private static int countOperations(Interpreter.Condition condition) {
+        final var sides = sides(condition);
+        return 1 + countOperations(sides[0]) + countOperations(sides[1]);
+    }
+
+    private static int countOperations(Interpreter.Expr expression) {
+        final var operands = operands(expression);
+        var count = operands.length == 0 ? 0 : 1;
+        for (var operand : operands) {
+            count += countOperations(operand);
+        }
+        return count;
+    }
+}
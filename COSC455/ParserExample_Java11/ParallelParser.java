@@ -0,0 +1,452 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
+
+/**
+ * *****************************************************************************
+ * Lexes and parses one (big) program on several threads at once, into the
+ * same ParseTree (with the same node numbers) as the Parser on its own.
+ *
+ *   1. The source is cut into parts, each ending at whitespace (a token never
+ *      has whitespace in it, so no token is cut in two; and the '#' comment
+ *      lines are gone already, see SourceReader). The parts are lexed at once,
+ *      each into a TokenStream of its own, and then copied into one (with
+ *      their SymbolTables merged, so the ids are those of a single lexer).
+ *   2. In every part, the first top level statement is found: the first
+ *      "if", "while", "read", "write" or "x :=" that isn't inside an
+ *      "if ... fi" or a "while ... od". (The nesting is counted while lexing.)
+ *   3. The parts are parsed at once, statement by statement, from there up to
+ *      the statement that runs into the next part.
+ *   4. The trees of the parts are copied into the tree (again at once), as if
+ *      the top level statements had been parsed one after the other.
+ *
+ * Finding the statements (2) only counts keywords, it doesn't parse, so it
+ * can be fooled (eg. by an "if" without its "fi"). That's fine: as in the
+ * IncrementalParser, the parse of a statement only depends on the tokens from
+ * its start on, so the tree of a part is only used if the part before it
+ * ended exactly where it starts. A part that doesn't line up (or whose parse
+ * ran out of stack) is parsed again, on the calling thread. A syntax error,
+ * or a token that can't start a statement, ends the program there, exactly as
+ * it does for the Parser.
+ *
+ * NOTE: Only the top level statements are split up: a program that is one
+ * big "while" is still parsed on one thread. And while the trees of the
+ * parts are copied, both they and the whole tree are in memory.
+ */
+final class ParallelParser {
+
+    // Smaller files aren't worth it (see MAIN_Compiler.parse).
+    static final long MIN_PARALLEL_LENGTH = 8L * 1024 * 1024;
+
+    // A few parts per thread (some parts take longer than others), but none
+    // shorter than this (in chars).
+    private static final int PARTS_PER_THREAD = 4;
+    private static final int MIN_PART_LENGTH = 1024 * 1024;
+
+    // The parse tree has about this many nodes per token.
+    private static final int NODES_PER_TOKEN = 5;
+
+    // The label of the root, as in Parser.analyze().
+    private static final String ROOT_LABEL = "PARSE TREE";
+
+    private final char[] source;
+    private final int length;
+    private final ForkJoinPool pool;
+    private final int parts;
+
+    // The parts of the source: source[partStarts[k], partStarts[k + 1]), its
+    // tokens, and how much deeper the if/while nesting is at its end.
+    private final int[] partStarts;
+    private final TokenStream[] partTokens;
+    private final int[] depthChanges;
+
+    // All of the tokens; the tokens of part k start at firstTokens[k].
+    private TokenStream tokens;
+    private int[] firstTokens;
+
+    // The number of parts that had to be parsed again.
+    private int reparsedParts;
+
+    /**
+     * The top level statements parsed from one token on.
+     */
+    private static final class Part {
+
+        // Its first token, and the token after its last statement.
+        final int start;
+        int end;
+
+        // Its tree: the root stands for the STMT_LIST (or PROGRAM) above the
+        // first statement, and lastList is the STMT_LIST of the last one (or
+        // the root, if there are none).
+        final ParseTree tree;
+        int lastList;
+
+        // Does the program end here (at a syntax error, or at a token that
+        // can't start a statement)?
+        boolean last;
+
+        Part(int start, ParseTree tree) {
+            this.start = start;
+            this.tree = tree;
+        }
+    }
+
+    /**
+     * @param source the characters of the program (which must not change).
+     * @param length the number of characters used in the buffer.
+     * @param pool the threads to lex and parse on.
+     * @param parts the number of parts to cut the program into.
+     */
+    ParallelParser(char[] source, int length, ForkJoinPool pool, int parts) {
+        this.source = source;
+        this.length = length;
+        this.pool = pool;
+        this.parts = Math.max(1, parts);
+        this.partStarts = new int[this.parts + 1];
+        this.partTokens = new TokenStream[this.parts];
+        this.depthChanges = new int[this.parts];
+    }
+
+    /**
+     * The number of parts worth cutting a program into.
+     *
+     * @param length the length of the program (in chars).
+     * @param threads the number of threads.
+     * @return the number of parts.
+     */
+    static int partsFor(long length, int threads) {
+        return (int) Math.max(1, Math.min((long) threads * PARTS_PER_THREAD, length / MIN_PART_LENGTH));
+    }
+
+    /**
+     * Parse a file, with the same result as MAIN_Compiler.parse(File,
+     * ParseTree).
+     *
+     * @param inputFile the File to read for input.
+     * @param tree the tree to fill in (it is reset first).
+     * @param threads the number of threads to lex and parse on.
+     * @param metrics where to count (see CompilerMetrics), or null.
+     * @return the tree.
+     * @throws UncheckedIOException if the file can't be read (as for the
+     * LexicalAnalyzer).
+     */
+    static ParseTree parse(File inputFile, ParseTree tree, int threads, CompilerMetrics.Compilation metrics) {
+        final CharBuffer buffer;
+        try {
+            buffer = SourceReader.read(inputFile.toPath());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error reading " + inputFile, ex);
+        }
+        final var source = buffer.array();
+        final var length = buffer.limit();
+        if (metrics != null) {
+            metrics.addBytesRead(inputFile.length());
+            metrics.lap(CompilerMetrics.PHASE.READ);
+        }
+
+        final var pool = new ForkJoinPool(threads);
+        try {
+            final var parser = new ParallelParser(source, length, pool, partsFor(length, threads));
+            parser.lex();
+            if (metrics != null) {
+                metrics.countTokens(parser.tokens);
+                metrics.lap(CompilerMetrics.PHASE.TOKENIZE);
+            }
+
+            parser.parse(tree);
+            if (tree.getError() != null) {
+                Logger.getAnonymousLogger().severe(String.format("%s\n", tree.getError()));
+            }
+            if (metrics != null) {
+                metrics.countNodes(tree);
+                metrics.lap(CompilerMetrics.PHASE.PARSE);
+            }
+            return tree;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Lex (if that wasn't done yet) and parse the program.
+     *
+     * @param tree the tree to fill in (it is reset first).
+     * @return the tree.
+     */
+    ParseTree parse(ParseTree tree) {
+        if (tokens == null) {
+            lex();
+        }
+
+        // The nesting depth at the start of every part.
+        final var depths = new int[parts];
+        for (var k = 1; k < parts; k++) {
+            depths[k] = depths[k - 1] + depthChanges[k - 1];
+        }
+
+        final var parsed = new Part[parts];
+        forEach(parts, k -> {
+            final var start = k == 0 ? 0 : findStatement(k, depths[k]);
+            if (start != ParseTree.NONE) {
+                try {
+                    parsed[k] = parsePart(start, firstTokens[k + 1]);
+                } catch (StackOverflowError ex) {
+                    // (Deeply nested: left to the calling thread.)
+                }
+            }
+        });
+
+        build(tree, stitch(parsed));
+        return tree;
+    }
+
+    // The number of parts that had to be parsed again (on the calling
+    // thread) by the last parse, as they didn't line up.
+    int getReparsedParts() {
+        return reparsedParts;
+    }
+
+    // The number of parts the program was cut into.
+    int getParts() {
+        return parts;
+    }
+
+    // All of the tokens (once lexed).
+    TokenStream getTokenStream() {
+        return tokens;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Lexing.
+    ////////////////////////////////////////////////////////////////////////////
+    /**
+     * Cut the source into parts at whitespace, lex the parts at once, and put
+     * their tokens together.
+     */
+    void lex() {
+        for (var k = 1; k < parts; k++) {
+            var at = Math.max(partStarts[k - 1], (int) ((long) length * k / parts));
+            while (at < length && !DfaScanner.isWhitespace(source[at])) {
+                at++;
+            }
+            partStarts[k] = at;
+        }
+        partStarts[parts] = length;
+
+        forEach(parts, this::lexPart);
+
+        firstTokens = new int[parts + 1];
+        for (var k = 0; k < parts; k++) {
+            firstTokens[k + 1] = firstTokens[k] + partTokens[k].size();
+        }
+
+        // (The names are interned in the order of the parts, so they get the
+        // same ids as from a single lexer.)
+        tokens = new TokenStream(source, 0);
+        tokens.resize(firstTokens[parts]);
+        final var symbolIds = new int[parts][];
+        for (var k = 0; k < parts; k++) {
+            symbolIds[k] = tokens.getSymbolTable().internAll(partTokens[k].getSymbolTable());
+        }
+
+        forEach(parts, k -> {
+            tokens.copy(partTokens[k], firstTokens[k], symbolIds[k]);
+            partTokens[k] = null;
+        });
+    }
+
+    private void lexPart(int k) {
+        final var start = partStarts[k];
+        final var end = partStarts[k + 1];
+        final var scanner = new DfaScanner(source, start, end);
+        final var part = new TokenStream(source, end - start);
+
+        var depth = 0;
+        while (scanner.nextToken()) {
+            final var tokenStart = scanner.getTokenStart();
+            final var tokenLength = scanner.getTokenLength();
+            final var token = TOKEN.fromLexeme(source, tokenStart, tokenLength);
+            part.add(token, tokenStart, tokenLength);
+            depth += nesting(token);
+        }
+
+        partTokens[k] = part;
+        depthChanges[k] = depth;
+    }
+
+    // +1 for the start of a block, -1 for its end.
+    private static int nesting(TOKEN token) {
+        switch (token) {
+            case IF:
+            case WHILE:
+                return 1;
+            case ENDIF:
+            case DONE:
+                return -1;
+            default:
+                return 0;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Parsing.
+    ////////////////////////////////////////////////////////////////////////////
+    // The first token of part k that looks like the start of a top level
+    // statement, or NONE.
+    private int findStatement(int k, int depth) {
+        for (var i = firstTokens[k]; i < firstTokens[k + 1]; i++) {
+            if (depth <= 0 && startsStatement(i)) {
+                return i;
+            }
+            depth += nesting(tokens.tokenAt(i));
+        }
+        return ParseTree.NONE;
+    }
+
+    // Does a statement start at a token? ("x" in "read x" is not one, nor is
+    // the "b" in "a := b * c".)
+    private boolean startsStatement(int i) {
+        switch (tokens.tokenAt(i)) {
+            case IF:
+            case WHILE:
+            case READ:
+            case WRITE:
+                return true;
+            case OTHER:
+                return tokens.tokenAt(i + 1) == TOKEN.ASGN && (i == 0 || tokens.tokenAt(i - 1) != TOKEN.READ);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parse top level statements from a token on, until one ends at (or
+     * past) another token, as Parser.stmt_list does (but with a loop rather
+     * than recursion, so the stack only has to hold one statement).
+     *
+     * @param start the first token of the first statement.
+     * @param boundary where to stop.
+     * @return the statements.
+     */
+    private Part parsePart(int start, int boundary) {
+        final var lexer = new LexicalAnalyzer(tokens.cursorAt(start));
+        final var part = new Part(start, new ParseTree(Math.max(16, (boundary - start) * NODES_PER_TOKEN)));
+        final var treeBuilder = new ParseTreeBuilder(part.tree, lexer);
+        final var parser = new Parser(lexer, treeBuilder);
+
+        var list = treeBuilder.writeHeader(ROOT_LABEL);
+        try {
+            while (lexer.getCurrentTokenIndex() < boundary) {
+                if (!Parser.isStatementStart(lexer.getCurrentToken())) {
+                    part.last = true;
+                    break;
+                }
+                list = treeBuilder.addNonTerminalToTree(NONTERMINAL.STMT_LIST, list);
+                part.lastList = part.tree.size() - 1;
+                parser.stmt(list);
+            }
+        } catch (Parser.ParseException ex) {
+            // (Recorded in the tree.)
+            part.last = true;
+        }
+
+        part.end = lexer.getCurrentTokenIndex();
+        return part;
+    }
+
+    /**
+     * Chain the parts together, from the first token on: each part must start
+     * where the one before it ended; where one doesn't, the statements are
+     * parsed again from there.
+     *
+     * @return the parts, in order, up to the end of the program.
+     */
+    private List<Part> stitch(Part[] parsed) {
+        final var chain = new ArrayList<Part>();
+        reparsedParts = 0;
+
+        var position = 0;
+        var k = 0;
+        while (true) {
+            // (Skip the parts the last statement ran all the way through.)
+            while (k < parts - 1 && firstTokens[k + 1] <= position) {
+                k++;
+            }
+
+            var part = parsed[k];
+            if (part == null || part.start != position) {
+                // Parse again, up to where the part starts (in case it lines
+                // up from there), or else up to its end.
+                final var boundary = part != null && part.start > position ? part.start : firstTokens[k + 1];
+                part = parsePart(position, boundary);
+                reparsedParts++;
+            }
+
+            chain.add(part);
+            position = part.end;
+            if (part.last || position >= tokens.size()) {
+                return chain;
+            }
+        }
+    }
+
+    /**
+     * Copy the trees of the parts into the tree, which then looks just like
+     * the Parser had parsed them all.
+     */
+    private void build(ParseTree tree, List<Part> chain) {
+        tree.reset(tokens);
+        final var root = tree.addRoot(ROOT_LABEL, 0);
+        var parent = tree.addNode(root, NONTERMINAL.PROGRAM.ordinal(), ParseTree.NONE);
+
+        // Where the nodes of every part go, and what they hang from (the
+        // last STMT_LIST of the part before).
+        final var ats = new int[chain.size()];
+        final var parents = new int[chain.size()];
+        var at = tree.size();
+        for (var i = 0; i < chain.size(); i++) {
+            final var part = chain.get(i);
+            ats[i] = at;
+            parents[i] = parent;
+            if (part.lastList != 0) {
+                parent = at - 1 + part.lastList;
+            }
+            at += part.tree.size() - 1;
+        }
+
+        tree.extend(at);
+        forEach(chain.size(), i -> tree.copy(chain.get(i).tree, ats[i], parents[i]));
+        for (var i = 0; i < chain.size(); i++) {
+            tree.adopt(parents[i], chain.get(i).tree, ats[i]);
+        }
+
+        final var last = chain.get(chain.size() - 1);
+        if (last.tree.getError() != null) {
+            tree.setError(ats[chain.size() - 1] - 1 + last.tree.getErrorNode(), last.tree.getError());
+        } else {
+            // The (empty) STMT_LIST at the end of the program.
+            tree.addNode(parent, NONTERMINAL.STMT_LIST.ordinal(), ParseTree.NONE);
+        }
+    }
+
+    // Run a task for each of 0 to count - 1 on the pool, and wait for all.
+    private void forEach(int count, IntConsumer task) {
+        final var futures = new ArrayList<ForkJoinTask<?>>(count);
+        for (var i = 0; i < count; i++) {
+            final var index = i;
+            futures.add(pool.submit(() -> task.accept(index)));
+        }
+        for (var future : futures) {
+            future.join();
+        }
+    }
+}
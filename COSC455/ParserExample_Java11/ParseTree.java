@@ -0,0 +1,595 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * *****************************************************************************
+ * An in-memory parse tree, stored in a flat "arena".
+ *
+ * Rather than one object per node, every node is an index into a set of
+ * parallel int[] arrays: its symbol, parent, first child, next sibling and
+ * (for leaves) the index of its token in the TokenStream. (A node with a name
+ * of its own rather than a grammar symbol, eg. from
+ * CodeGenerator.addNonTerminalToTree(String, ParseNode), is NAMED: the index
+ * is into a list of the names instead.) Nodes are numbered
+ * in the order the parser creates them, which is also a "pre-order" walk of
+ * the tree.
+ *
+ * The arrays only ever grow; reset() just forgets the nodes, so one tree can
+ * be reused for compilation after compilation without allocating per node.
+ *
+ * The tree doesn't know how to output itself: a "back end" is a Visitor that
+ * is walked over the tree (see CodeGenerator.writeTree for GraphViz, and
+ * writeJson below).
+ */
+final class ParseTree {
+
+    // "No node" (eg. the parent of the root, or the child of a leaf).
+    static final int NONE = -1;
+
+    // Symbols: the NONTERMINAL ordinals first, then the TOKEN ordinals (for
+    // the "<TOKEN>" nodes above the terminals), then the special nodes below.
+    static final int TOKEN_BASE = NONTERMINAL.values().length;
+    static final int LEXEME = TOKEN_BASE + TOKEN.values().length;
+    static final int EPSILON = LEXEME + 1;
+    static final int ROOT = LEXEME + 2;
+    static final int NAMED = LEXEME + 3;
+
+    private static final NONTERMINAL[] NONTERMINALS = NONTERMINAL.values();
+    private static final TOKEN[] TOKENS = TOKEN.values();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] symbols;
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] lastChildren;
+    private int[] nextSiblings;
+    private int[] tokenIndexes;
+    private int size;
+
+    // Where the lexemes of the leaves come from.
+    private TokenStream tokens;
+
+    private String rootLabel;
+
+    // The names of the NAMED nodes.
+    private final List<String> names = new ArrayList<>();
+    private int firstNodeId;
+
+    private int errorNode = NONE;
+    private String error;
+
+    /**
+     * Visits the nodes of a tree, in the order they were parsed.
+     */
+    interface Visitor {
+
+        // Called before the children of the node are visited.
+        void enter(ParseTree tree, int node);
+
+        // Called after the children of the node were visited.
+        default void exit(ParseTree tree, int node) {
+        }
+    }
+
+    ParseTree() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity the number of nodes to make room for (eg. a
+     * small number for a tree of a single statement).
+     */
+    ParseTree(int initialCapacity) {
+        symbols = new int[initialCapacity];
+        parents = new int[initialCapacity];
+        firstChildren = new int[initialCapacity];
+        lastChildren = new int[initialCapacity];
+        nextSiblings = new int[initialCapacity];
+        tokenIndexes = new int[initialCapacity];
+    }
+
+    /**
+     * Forget all nodes, keeping the memory for the next compilation.
+     *
+     * @param tokens the token stream the leaves of the new tree refer to.
+     */
+    void reset(TokenStream tokens) {
+        this.tokens = tokens;
+        this.size = 0;
+        this.rootLabel = null;
+        this.names.clear();
+        this.errorNode = NONE;
+        this.error = null;
+    }
+
+    /**
+     * Add the root of the tree (the first node).
+     *
+     * @param label the label of the root, eg. "PARSE TREE".
+     * @param nodeId the ParseNode id of the root; the other nodes are
+     * numbered consecutively from there.
+     * @return the root node.
+     */
+    int addRoot(String label, int nodeId) {
+        this.rootLabel = label;
+        this.firstNodeId = nodeId;
+        return addNode(NONE, ROOT, NONE);
+    }
+
+    /**
+     * Add a node as the last child of its parent.
+     *
+     * @param parent the parent node (NONE for the root).
+     * @param symbol the symbol of the node (see above).
+     * @param tokenIndex the token of a LEXEME node (the name of a NAMED
+     * one), NONE for all others.
+     * @return the new node.
+     */
+    int addNode(int parent, int symbol, int tokenIndex) {
+        if (size == symbols.length) {
+            grow();
+        }
+
+        final var node = size++;
+        symbols[node] = symbol;
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        lastChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        tokenIndexes[node] = tokenIndex;
+
+        if (parent != NONE) {
+            if (firstChildren[parent] == NONE) {
+                firstChildren[parent] = node;
+            } else {
+                nextSiblings[lastChildren[parent]] = node;
+            }
+            lastChildren[parent] = node;
+        }
+        return node;
+    }
+
+    /**
+     * Add a node with a name rather than a grammar symbol, as the last child of
+     * its parent.
+     *
+     * @param parent the parent node.
+     * @param name the name (and label) of the node.
+     * @return the new node.
+     */
+    int addNamedNode(int parent, String name) {
+        names.add(name);
+        return addNode(parent, NAMED, names.size() - 1);
+    }
+
+    /**
+     * Make room for nodes [size(), newSize), to be filled in with copy(); eg.
+     * from several threads at once, each copying its own part.
+     *
+     * @param newSize the number of nodes.
+     */
+    void extend(int newSize) {
+        if (newSize > symbols.length) {
+            symbols = Arrays.copyOf(symbols, newSize);
+            parents = Arrays.copyOf(parents, newSize);
+            firstChildren = Arrays.copyOf(firstChildren, newSize);
+            lastChildren = Arrays.copyOf(lastChildren, newSize);
+            nextSiblings = Arrays.copyOf(nextSiblings, newSize);
+            tokenIndexes = Arrays.copyOf(tokenIndexes, newSize);
+        }
+        size = newSize;
+    }
+
+    /**
+     * Copy the nodes of another tree (all but its root) to [at, at +
+     * part.size() - 1), in the same order. Both trees must have the same
+     * tokens (the token indexes are copied as they are).
+     *
+     * The children of the part's root get "parent" as their parent, but they
+     * only become its children with adopt(): that changes the parent, which
+     * may be being copied (from another part) at the same time.
+     *
+     * @param part the tree to copy.
+     * @param at where its first node (after the root) goes.
+     * @param parent the parent of the children of its root.
+     * @throws IllegalArgumentException if the part has NAMED nodes (their
+     * names would have to be added here, by every thread at once).
+     */
+    void copy(ParseTree part, int at, int parent) {
+        if (!part.names.isEmpty()) {
+            throw new IllegalArgumentException("Only grammar symbols can be copied: " + part.names.get(0));
+        }
+        final var offset = at - 1;
+        for (var node = 1; node < part.size; node++) {
+            final var target = offset + node;
+            symbols[target] = part.symbols[node];
+            parents[target] = part.parents[node] == 0 ? parent : offset + part.parents[node];
+            firstChildren[target] = move(part.firstChildren[node], offset);
+            lastChildren[target] = move(part.lastChildren[node], offset);
+            nextSiblings[target] = move(part.nextSiblings[node], offset);
+            tokenIndexes[target] = part.tokenIndexes[node];
+        }
+    }
+
+    /**
+     * Make the children of the root of a part, copied to "at", the last
+     * children of their parent (see copy).
+     */
+    void adopt(int parent, ParseTree part, int at) {
+        if (part.firstChildren[0] == NONE) {
+            return;
+        }
+        final var first = at - 1 + part.firstChildren[0];
+        if (firstChildren[parent] == NONE) {
+            firstChildren[parent] = first;
+        } else {
+            nextSiblings[lastChildren[parent]] = first;
+        }
+        lastChildren[parent] = at - 1 + part.lastChildren[0];
+    }
+
+    private static int move(int node, int offset) {
+        return node == NONE ? NONE : node + offset;
+    }
+
+    private void grow() {
+        final var capacity = size + (size >> 1) + 1;
+        symbols = Arrays.copyOf(symbols, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        lastChildren = Arrays.copyOf(lastChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        tokenIndexes = Arrays.copyOf(tokenIndexes, capacity);
+    }
+
+    /**
+     * Record the syntax error that ended the parse.
+     *
+     * @param node the node being parsed when the error occurred.
+     * @param message the error message.
+     */
+    void setError(int node, String message) {
+        this.errorNode = node;
+        this.error = message;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getRoot() {
+        return 0;
+    }
+
+    int getSymbol(int node) {
+        return symbols[node];
+    }
+
+    int getParent(int node) {
+        return parents[node];
+    }
+
+    int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    int getTokenIndex(int node) {
+        return tokenIndexes[node];
+    }
+
+    int getErrorNode() {
+        return errorNode;
+    }
+
+    String getError() {
+        return error;
+    }
+
+    // The id the node had (or would have had) as a ParseNode.
+    int getNodeId(int node) {
+        return firstNodeId + node;
+    }
+
+    boolean isNonTerminal(int node) {
+        return symbols[node] < TOKEN_BASE;
+    }
+
+    NONTERMINAL getNonTerminal(int node) {
+        return NONTERMINALS[symbols[node]];
+    }
+
+    /**
+     * @param node a "<TOKEN>" or LEXEME node.
+     * @return the token of the node.
+     */
+    TOKEN getToken(int node) {
+        final var symbol = symbols[node];
+        return symbol == LEXEME ? tokens.tokenAt(tokenIndexes[node]) : TOKENS[symbol - TOKEN_BASE];
+    }
+
+    /**
+     * @param node a LEXEME node.
+     * @return the SymbolTable id of its identifier, or SymbolTable.NONE if it
+     * isn't one.
+     */
+    int getVariable(int node) {
+        return tokens.symbolAt(tokenIndexes[node]);
+    }
+
+    // The identifiers of the leaves (see getVariable).
+    SymbolTable getSymbolTable() {
+        return tokens.getSymbolTable();
+    }
+
+    // The tokens the leaves refer to (eg. for the line of a leaf).
+    TokenStream getTokens() {
+        return tokens;
+    }
+
+    // The text shown for the node, eg. "<STMT>", "sum" or "&epsilon;"
+    String getLabel(int node) {
+        final var symbol = symbols[node];
+        if (symbol == LEXEME) {
+            return tokens.lexemeAt(tokenIndexes[node]);
+        } else if (symbol == ROOT) {
+            return rootLabel;
+        } else if (symbol == NAMED) {
+            return names.get(tokenIndexes[node]);
+        } else {
+            return labelOf(symbol);
+        }
+    }
+
+    // The label of every node with a symbol (but LEXEME, ROOT and NAMED, whose
+    // labels depend on the node), eg. "<STMT>" or "&epsilon;"
+    static String labelOf(int symbol) {
+        if (symbol < TOKEN_BASE) {
+            return NONTERMINALS[symbol].getLabel();
+        } else if (symbol < LEXEME) {
+            return TOKENS[symbol - TOKEN_BASE].getLabel();
+        } else {
+            return "&epsilon;";
+        }
+    }
+
+    // The name of the node (its ParseNode name), eg. "<STMT>" or "ENPTY"
+    String getName(int node) {
+        return symbols[node] == EPSILON ? "ENPTY" : getLabel(node);
+    }
+
+    // The GraphViz shape of the node.
+    String getShape(int node) {
+        return shapeOf(symbols[node]);
+    }
+
+    // The GraphViz shape of the nodes with a symbol.
+    static String shapeOf(int symbol) {
+        if (symbol == LEXEME) {
+            return "oval";
+        } else if (symbol == EPSILON) {
+            return "none";
+        } else if (symbol == ROOT) {
+            return "diamond";
+        } else {
+            return "rect";
+        }
+    }
+
+    /**
+     * Walk the whole tree, in the order it was parsed. (No recursion: the
+     * parent links lead back up the tree, so any depth is fine.)
+     *
+     * @param visitor the visitor to call for every node.
+     */
+    void walk(Visitor visitor) {
+        var node = size == 0 ? NONE : getRoot();
+
+        while (node != NONE) {
+            visitor.enter(this, node);
+
+            if (firstChildren[node] != NONE) {
+                node = firstChildren[node];
+                continue;
+            }
+
+            // Done with this node: move on to the next sibling, or else
+            // climb back up until an ancestor has one.
+            while (node != NONE) {
+                visitor.exit(this, node);
+                if (nextSiblings[node] != NONE) {
+                    node = nextSiblings[node];
+                    break;
+                }
+                node = parents[node];
+            }
+        }
+    }
+
+    /**
+     * Another "back end": the tree as JSON, eg.
+     * {"label":"<STMT>","children":[{"label":"<WRITE>","children":[...]}]}
+     * (Leaves have no "children".)
+     *
+     * @param out where the JSON goes.
+     */
+    void writeJson(Appendable out) {
+        final var json = new StringBuilder();
+
+        walk(new Visitor() {
+            @Override
+            public void enter(ParseTree tree, int node) {
+                if (node != getRoot() && tree.getFirstChild(tree.getParent(node)) != node) {
+                    json.append(',');
+                }
+                json.append("{\"label\":");
+                appendString(json, tree.getLabel(node));
+                if (tree.getFirstChild(node) != NONE) {
+                    json.append(",\"children\":[");
+                }
+            }
+
+            @Override
+            public void exit(ParseTree tree, int node) {
+                if (tree.getFirstChild(node) != NONE) {
+                    json.append(']');
+                }
+                json.append('}');
+                flushJson(json, out, false);
+            }
+        });
+
+        flushJson(json, out, true);
+    }
+
+    private static void appendString(StringBuilder json, String string) {
+        json.append('"');
+        for (var i = 0; i < string.length(); i++) {
+            final var c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    // Hand the JSON to its sink in chunks, rather than all at once.
+    private static void flushJson(StringBuilder json, Appendable out, boolean force) {
+        if (force || json.length() >= 8192) {
+            try {
+                out.append(json);
+                json.setLength(0);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Error writing JSON", ex);
+            }
+        }
+    }
+}
+
+/**
+ * *****************************************************************************
+ * A "code generator" that generates no code at all: it records the parse into
+ * a ParseTree instead.
+ *
+ * (The ParseNode objects handed back to the parser are only "handles" for the
+ * inner nodes of the tree; they are dropped as soon as the parser is done with
+ * them. Leaves get no handle, and no lexeme String: just their token index.)
+ *
+ * NOTE: So a parse into a reused tree still allocates one handle (24 bytes)
+ * per inner node: the parser (and every CodeGenerator) passes ParseNodes
+ * around, not node ids. That is all it allocates, though: 24 bytes per inner
+ * node interpreted, and about 9 once the JIT's escape analysis has done away
+ * with most of the handles (20000 sample statements, 417K of their 623K
+ * nodes inner).
+ */
+class ParseTreeBuilder extends CodeGenerator {
+
+    private final ParseTree tree;
+    private final LexicalAnalyzer lexer;
+
+    /**
+     * @param tree the tree to build (it is reset first).
+     * @param lexer the lexer the parser is reading from.
+     */
+    ParseTreeBuilder(ParseTree tree, LexicalAnalyzer lexer) {
+        super(new StringBuilder(0), false);
+        this.tree = tree;
+        this.lexer = lexer;
+
+        tree.reset(lexer.getTokenStream());
+    }
+
+    // The tree node of a ParseNode (they are numbered the same way).
+    private int nodeOf(ParseNode node) {
+        return node.getNodeId() - tree.getNodeId(tree.getRoot());
+    }
+
+    // Add a node to the tree, and build its ParseNode "handle".
+    private ParseNode addNode(ParseNode parentNode, int symbol, String name) {
+        tree.addNode(nodeOf(parentNode), symbol, ParseTree.NONE);
+        return buildNode(name);
+    }
+
+    // Add a leaf to the tree (the parser never adds anything below it, so it
+    // needs no handle; it only takes up a node id).
+    private void addLeaf(ParseNode parentNode, int symbol, int tokenIndex) {
+        tree.addNode(nodeOf(parentNode), symbol, tokenIndex);
+        nextNodeId();
+    }
+
+    @Override
+    public void writeHeader(ParseNode node) {
+        tree.addRoot(node.getNodeName(), node.getNodeId());
+    }
+
+    @Override
+    public ParseNode addNonTerminalToTree(NONTERMINAL nonTerminal, ParseNode parentNode) {
+        return addNode(parentNode, nonTerminal.ordinal(), nonTerminal.getLabel());
+    }
+
+    @Override
+    public ParseNode addNonTerminalToTree(TOKEN token, ParseNode parentNode) {
+        return addNode(parentNode, ParseTree.TOKEN_BASE + token.ordinal(), token.getLabel());
+    }
+
+    // (The lexeme is the one of the current token.)
+    @Override
+    public void addTerminalToTree(ParseNode fromNode, String lexeme) {
+        addLeaf(fromNode, ParseTree.LEXEME, lexer.getCurrentTokenIndex());
+    }
+
+    @Override
+    public void addCurrentTerminalToTree(ParseNode fromNode, LexicalAnalyzer lexer) {
+        addLeaf(fromNode, ParseTree.LEXEME, lexer.getCurrentTokenIndex());
+    }
+
+    @Override
+    public void addEmptyToTree(ParseNode fromNode) {
+        addLeaf(fromNode, ParseTree.EPSILON, ParseTree.NONE);
+    }
+
+    // A node with any name (see the String overloads, which build toNode and
+    // then call this): a NAMED node of the tree.
+    @Override
+    public ParseNode addNonTerminalToTree(ParseNode fromNode, ParseNode toNode) {
+        if (nodeOf(toNode) != tree.size()) {
+            throw new IllegalArgumentException("Not the next node of this tree: " + toNode);
+        }
+        tree.addNamedNode(nodeOf(fromNode), toNode.getNodeName());
+        return toNode;
+    }
+
+    @Override
+    public void addNothingToTree(ParseNode fromNode) {
+    }
+
+    @Override
+    public void syntaxError(String err, ParseNode fromNode) throws Parser.ParseException {
+        tree.setError(nodeOf(fromNode), err);
+        throw new Parser.ParseException(err);
+    }
+
+    // (A ParseTree holds the error that ended the parse only; when the parser
+    // recovers, its diagnostics have all of them.)
+    @Override
+    public void addErrorToTree(String err, ParseNode fromNode) {
+    }
+
+    @Override
+    public void writeFooter() {
+    }
+
+    @Override
+    public void flush() {
+    }
+}
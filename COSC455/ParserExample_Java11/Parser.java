@@ -17,18 +17,42 @@ class Parser {
     // the actual "code generator"
     private final CodeGenerator codeGenerator;
 
+    // Keep parsing after a syntax error? (See recover() below.)
+    private final boolean recover;
+
     /**
      * The constructor initializes the terminal literals in their vectors.
      *
      * @param lexer The Lexer Object
      */
     public Parser(LexicalAnalyzer lexer, CodeGenerator codeGenerator) {
+        this(lexer, codeGenerator, false);
+    }
+
+    /**
+     * @param lexer The Lexer Object
+     * @param codeGenerator the code generator.
+     * @param recover true to report every syntax error in one pass ("panic
+     * mode" recovery), rather than stopping at the first one.
+     */
+    public Parser(LexicalAnalyzer lexer, CodeGenerator codeGenerator, boolean recover) {
         this.lexer = lexer;
         this.codeGenerator = codeGenerator;
+        this.recover = recover;
     }
 
-    
-    public void analyze() {
+    // The message of the syntax error that stopped the parse (if any).
+    private String syntaxError;
+
+    // All of the syntax errors found, in order.
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+    /**
+     * Parse the whole input, generating code as we go.
+     *
+     * @return true if the input was parsed without a syntax error.
+     */
+    public boolean analyze() {
         try {
             // Generate header for our output
             var startNode = codeGenerator.writeHeader("PARSE TREE");
@@ -41,38 +65,84 @@ class Parser {
 
             // For graphically displaying the output.
             // CodeGenerator.openWebGraphViz();
+            if (!diagnostics.isEmpty()) {
+                syntaxError = diagnostics.get(0).getMessage();
+                return false;
+            }
+            return true;
         } catch (ParseException ex) {
+            syntaxError = ex.getMessage();
             final String msg = String.format("%s\n", ex.getMessage());
             Logger.getAnonymousLogger().severe(msg);
+            return false;
         }
     }
 
+    // The (first) syntax error found by analyze(), or null.
+    public String getSyntaxError() {
+        return syntaxError;
+    }
+
+    // All of the syntax errors found by analyze() (at most one, unless
+    // recovering).
+    public List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
     void program(ParseNode fromNode) throws ParseException {
-        final var nodeName = codeGenerator.addNonTerminalToTree(fromNode);
+        final var nodeName = codeGenerator.addNonTerminalToTree(NONTERMINAL.PROGRAM, fromNode);
 
         stmt_list(nodeName);
+
+        // When recovering, a token that can't start a statement (eg. a "fi"
+        // without an "if") doesn't end the program: it is reported and
+        // skipped, and the statements after it are parsed as well.
+        while (recover && !lexer.isCurrentToken(TOKEN.EOF)) {
+            try {
+                raiseException("Statement", nodeName);
+            } catch (ParseException ex) {
+                skipToken(ex);
+                recover(ex, null, nodeName);
+            }
+            stmt_list(nodeName);
+        }
     }
 
     void stmt_list(ParseNode fromNode) throws ParseException {
-        final var nodeName = codeGenerator.addNonTerminalToTree(fromNode);
-        // OP("("), CL(")"), ADD_OP("+", "-"), READ("read"), WRITE("write"), MULT_OP("*", "/"), IF("if"), THEN("then"),
-    // ENDIF("fi"), ELSE("else"), WHILE("while"), ENDWHILE("do"), DONE("od"), ASGN(":="),
-    // RELATION("<", ">", "<=", ">=", "=", "!="),
-        if (lexer.isCurrentToken(OTHER) 
-            || lexer.isCurrentToken(READ)
-            || lexer.isCurrentToken(WRITE) 
-            || lexer.isCurrentToken(IF)
-            || lexer.isCurrentToken(THEN)
-            || lexer.isCurrentToken(WHILE)||lexer.isCurrentToken(OP)||lexer.isCurrentToken(OP)){
-
-            stmt(nodeName);
+        final var nodeName = codeGenerator.addNonTerminalToTree(NONTERMINAL.STMT_LIST, fromNode);
+
+        if (isStatementStart(lexer.getCurrentToken())) {
+            final var start = lexer.getCurrentTokenIndex();
+            try {
+                stmt(nodeName);
+            } catch (ParseException ex) {
+                // Skip the rest of the broken statement (at least one token).
+                if (lexer.getCurrentTokenIndex() == start) {
+                    skipToken(ex);
+                }
+                recover(ex, null, nodeName);
+            }
             stmt_list(nodeName);
         }
 
 
     }
+
+    // Does the token start another statement of a STMT_LIST?
+    // OP("("), CL(")"), ADD_OP("+", "-"), READ("read"), WRITE("write"), MULT_OP("*", "/"), IF("if"), THEN("then"),
+    // ENDIF("fi"), ELSE("else"), WHILE("while"), ENDWHILE("do"), DONE("od"), ASGN(":="),
+    // RELATION("<", ">", "<=", ">=", "=", "!="),
+    static boolean isStatementStart(TOKEN token) {
+        return token == OTHER
+                || token == READ
+                || token == WRITE
+                || token == IF
+                || token == THEN
+                || token == WHILE
+                || token == OP;
+    }
     void Condition(ParseNode fromNode){
-        final var treeNode = codeGenerator.addNonTerminalToTree(fromNode);
+        final var treeNode = codeGenerator.addNonTerminalToTree(NONTERMINAL.CONDITION, fromNode);
 
         expr(treeNode);
         RELATION(treeNode);
@@ -81,15 +151,23 @@ class Parser {
 
     }
     void stmt(ParseNode fromNode) throws ParseException {
-        final var treeNode = codeGenerator.addNonTerminalToTree(fromNode);
+        final var treeNode = codeGenerator.addNonTerminalToTree(NONTERMINAL.STMT, fromNode);
         //System.out.print("******" + lexer.getCurrentLexeme());
 
         if (lexer.isCurrentToken(TOKEN.IF)) {
             IF(treeNode);
-            Condition(treeNode);
-            THEN(treeNode);
+            try {
+                Condition(treeNode);
+                THEN(treeNode);
+            } catch (ParseException ex) {
+                recover(ex, TOKEN.THEN, treeNode);
+            }
             stmt_list(treeNode); 
-            ENDIF(treeNode);
+            try {
+                ENDIF(treeNode);
+            } catch (ParseException ex) {
+                recover(ex, TOKEN.ENDIF, treeNode);
+            }
 
         } else if (lexer.isCurrentToken(TOKEN.OTHER)) {
             OTHER(treeNode);
@@ -103,8 +181,12 @@ class Parser {
             expr(treeNode);
         }else if (lexer.isCurrentToken(TOKEN.WHILE)) {
             WHILE(treeNode);
-            Condition(treeNode);
-            DO(treeNode);
+            try {
+                Condition(treeNode);
+                DO(treeNode);
+            } catch (ParseException ex) {
+                recover(ex, TOKEN.ENDWHILE, treeNode);
+            }
             stmt_list(treeNode);
             ENDWHILE(treeNode);
 
@@ -117,14 +199,14 @@ class Parser {
     }
 
     void expr(ParseNode fromNode) throws ParseException {
-        final var nodeName = codeGenerator.addNonTerminalToTree(fromNode);
+        final var nodeName = codeGenerator.addNonTerminalToTree(NONTERMINAL.EXPR, fromNode);
 
         term(nodeName);
         term_tail(nodeName);
     }
 
     void term_tail(ParseNode fromNode) throws ParseException {
-        final var treeNode = codeGenerator.addNonTerminalToTree(fromNode);
+        final var treeNode = codeGenerator.addNonTerminalToTree(NONTERMINAL.TERM_TAIL, fromNode);
         if (lexer.isCurrentToken(TOKEN.ADD_OP)) {
             ADD_OP(treeNode);
             term(treeNode);
@@ -135,14 +217,14 @@ class Parser {
     }
 
     void term(ParseNode fromNode) throws ParseException {
-        final var treeNode = codeGenerator.addNonTerminalToTree(fromNode);
+        final var treeNode = codeGenerator.addNonTerminalToTree(NONTERMINAL.TERM, fromNode);
 
         factor(treeNode);
         factor_tail(treeNode);
     }
 
     void factor_tail(ParseNode fromNode) throws ParseException {
-        final var treeNode = codeGenerator.addNonTerminalToTree(fromNode);
+        final var treeNode = codeGenerator.addNonTerminalToTree(NONTERMINAL.FACTOR_TAIL, fromNode);
         if (lexer.isCurrentToken(TOKEN.MULT_OP)) {
             MULT_OP(treeNode);
             factor(treeNode);
@@ -159,7 +241,7 @@ class Parser {
     }
 
     void factor(ParseNode fromNode) throws ParseException {
-        final var treeNode = codeGenerator.addNonTerminalToTree(fromNode);
+        final var treeNode = codeGenerator.addNonTerminalToTree(NONTERMINAL.FACTOR, fromNode);
 
         if (lexer.isCurrentToken(TOKEN.OP)) {
             OP(treeNode);
@@ -328,9 +410,9 @@ class Parser {
     //////////////////////////////////////////////////////////////////////////// fails.
     void addTerminalAndAdvanceToken(ParseNode fromNode) throws ParseException {
         final var currentTerminal = lexer.getCurrentToken();
-        final var terminalNode = codeGenerator.addNonTerminalToTree(fromNode, String.format("<%s>", currentTerminal));
+        final var terminalNode = codeGenerator.addNonTerminalToTree(currentTerminal, fromNode);
 
-        codeGenerator.addTerminalToTree(terminalNode, lexer.getCurrentLexeme());
+        codeGenerator.addCurrentTerminalToTree(terminalNode, lexer);
         lexer.advanceToken();
     }
 
@@ -348,24 +430,144 @@ class Parser {
     //
     // Handle all of the errors in one place for cleaner parser code.
     private void raiseException(String expected, ParseNode fromNode) throws ParseException {
-        final var template = "SYNTAX ERROR: '%s' was expected but '%s' was found.";
-        final var err = String.format(template, expected, lexer.getCurrentLexeme());
+        final var found = lexer.getCurrentLexeme();
+        final var err = syntaxErrorMessage(expected, found);
+
+        final var tokens = lexer.getTokenStream();
+        final var index = lexer.getCurrentTokenIndex();
+        diagnostics.add(new Diagnostic(err, expected, found, tokens.lineAt(index), tokens.columnAt(index)));
+
+        if (recover) {
+            // (The output goes on; recover() decides where.)
+            codeGenerator.addErrorToTree(err, fromNode);
+            throw new ParseException(err);
+        }
         codeGenerator.syntaxError(err, fromNode);
     }
 
+    // eg. "SYNTAX ERROR: 'THEN expected' was expected but 'write' was found."
+    static String syntaxErrorMessage(String expected, String found) {
+        return String.format("SYNTAX ERROR: '%s' was expected but '%s' was found.", expected, found);
+    }
+
+    /**
+     * "Panic mode" error recovery: skip tokens up to a point where parsing can
+     * sensibly go on, ie. the next token in the FOLLOW set of what was being
+     * parsed: the given token (which is then consumed, eg. the "then" after a
+     * broken condition), the start of a statement, or the end of the
+     * enclosing if/while ("fi" or "od").
+     *
+     * @param ex the syntax error; thrown again when not recovering.
+     * @param closing the token that ends the broken part, or null.
+     * @param fromNode the node of the broken part.
+     */
+    private void recover(ParseException ex, TOKEN closing, ParseNode fromNode) throws ParseException {
+        if (!recover) {
+            throw ex;
+        }
+        while (true) {
+            final var token = lexer.getCurrentToken();
+            if (token == closing) {
+                addTerminalAndAdvanceToken(fromNode);
+                return;
+            }
+            if (token == TOKEN.EOF || token == TOKEN.ENDIF || token == TOKEN.DONE || isStatementStart(token)) {
+                return;
+            }
+            skipToken(ex);
+        }
+    }
+
+    private void skipToken(ParseException ex) throws ParseException {
+        if (!recover) {
+            throw ex;
+        }
+        lexer.advanceToken();
+    }
+
     /**
      * An exception to be raised if parsing fails due to a "syntax error" in the
      * input file.
+     *
+     * NOTE: It has no stack trace (the parser's recursion depth makes one
+     * expensive to fill in, and it would never be looked at), so throwing one
+     * is cheap enough to do for every error of a file.
      */
     static class ParseException extends RuntimeException {
 
         public ParseException(String errMsg) {
-            super(errMsg);
+            super(errMsg, null, false, false);
+        }
+    }
+
+    /**
+     * A syntax error, with where it was found.
+     */
+    static final class Diagnostic {
+
+        private final String message;
+        private final String expected;
+        private final String found;
+        private final int line;
+        private final int column;
+
+        Diagnostic(String message, String expected, String found, int line, int column) {
+            this.message = message;
+            this.expected = expected;
+            this.found = found;
+            this.line = line;
+            this.column = column;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        // What the parser was looking for, eg. "THEN".
+        public String getExpected() {
+            return expected;
+        }
+
+        // The lexeme found instead (or "EOF").
+        public String getFound() {
+            return found;
+        }
+
+        // The line (from 1) of the token the error was found at.
+        public int getLine() {
+            return line;
+        }
+
+        // The column (from 1) of the token the error was found at.
+        public int getColumn() {
+            return column;
+        }
+
+        // eg. "3:7: SYNTAX ERROR: ..."
+        @Override
+        public String toString() {
+            return String.format("%d:%d: %s", line, column, message);
         }
     }
 
 }
 
+/**
+ * All of the Non-Terminals used by the parser (one per parsing method), each
+ * with its label for the parse tree precomputed, e.g. "<STMT_LIST>".
+ */
+enum NONTERMINAL {
+
+    PROGRAM, STMT_LIST, STMT, CONDITION, EXPR, TERM, TERM_TAIL, FACTOR, FACTOR_TAIL;
+
+    // (concat, not "+", which would bootstrap a method handle at startup.)
+    private final String label = "<".concat(name()).concat(">");
+
+    public String getLabel() {
+        return label;
+    }
+}
+
 /**
  * All Of the Tokens/Terminals Used by the parser. The purpose of the enum type
  * here is eliminate the need for direct string comparisons which is generally
@@ -406,6 +608,66 @@ enum TOKEN {
         lexemeList.addAll(Arrays.asList(tokenStrings));
     }
 
+    // The parse tree label of the token, e.g. "<OTHER>".
+    // (concat, not "+"; see NONTERMINAL.)
+    private final String label = "<".concat(name()).concat(">");
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return all of the lexemes of this token (read-only).
+     */
+    List<String> getLexemes() {
+        return Collections.unmodifiableList(lexemeList);
+    }
+
+    // The longest lexeme of any token; anything longer can't be a keyword.
+    private static final int MAX_LEXEME_LENGTH;
+
+    // Lexemes (and their tokens) bucketed by length and first character, see
+    // bucketOf(). Most buckets hold a single lexeme ("write" and "while" share
+    // one), so a lookup is one array index plus at most a couple of compares.
+    private static final String[][] LEXEME_TABLE;
+    private static final TOKEN[][] TOKEN_TABLE;
+
+    // Build the lookup tables once, from the lexemes of the constants above.
+    static {
+        var maxLength = 0;
+        for (var t : values()) {
+            for (var lexeme : t.lexemeList) {
+                maxLength = Math.max(maxLength, lexeme.length());
+            }
+        }
+        MAX_LEXEME_LENGTH = maxLength;
+
+        final var buckets = (maxLength + 1) * 128;
+        LEXEME_TABLE = new String[buckets][0];
+        TOKEN_TABLE = new TOKEN[buckets][0];
+
+        for (var t : values()) {
+            for (var lexeme : t.lexemeList) {
+                final var bucket = bucketOf(lexeme.length(), lexeme.charAt(0));
+                final var size = LEXEME_TABLE[bucket].length;
+
+                LEXEME_TABLE[bucket] = Arrays.copyOf(LEXEME_TABLE[bucket], size + 1);
+                TOKEN_TABLE[bucket] = Arrays.copyOf(TOKEN_TABLE[bucket], size + 1);
+                LEXEME_TABLE[bucket][size] = lexeme;
+                TOKEN_TABLE[bucket][size] = t;
+            }
+        }
+    }
+
+    // Only ASCII lexemes exist, so the first character is masked to 7 bits.
+    private static int bucketOf(int length, char first) {
+        return length * 128 + (first & 0x7F);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
     /**
      * Get a TOKEN object from the Lexeme.
      *
@@ -413,28 +675,88 @@ enum TOKEN {
      * @return
      */
     public static TOKEN fromLexeme(final String string) {
-        // Just to be safe...
-        var lexeme = string.trim();
+        // Just to be safe... (trim without creating a new string)
+        var start = 0;
+        var end = string.length();
+        while (start < end && string.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && string.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        final var length = end - start;
 
         // An empty string should mean no more tokens to process.
-        if (lexeme.isEmpty()) {
+        if (length == 0) {
             return EOF;
         }
 
         // digits only (doesn't handle "-", "+", ".", etc., only digits)
-        if (lexeme.matches("\\d+")) {
+        var digits = true;
+        for (var i = start; i < end && digits; i++) {
+            digits = isDigit(string.charAt(i));
+        }
+        if (digits) {
             return NUMBER;
         }
 
-        // Search through ALL lexemes looking for a match with early bailout.
-        for (var t : TOKEN.values()) {
-            if (t.lexemeList.contains(lexeme)) {
-                // early bailout.
-                return t;
+        if (length <= MAX_LEXEME_LENGTH) {
+            final var bucket = bucketOf(length, string.charAt(start));
+            final var lexemes = LEXEME_TABLE[bucket];
+            for (var i = 0; i < lexemes.length; i++) {
+                if (string.regionMatches(start, lexemes[i], 0, length)) {
+                    return TOKEN_TABLE[bucket][i];
+                }
             }
         }
 
         // NOTE: Other could represent a number, for example.
         return OTHER;
     }
+
+    /**
+     * Get a TOKEN object from a range of characters, without building a String.
+     * Unlike fromLexeme(String), the range is expected to be already trimmed
+     * (as it is when it comes from the DfaScanner).
+     *
+     * @param buffer the characters holding the lexeme.
+     * @param start the index of the first character of the lexeme.
+     * @param length the length of the lexeme.
+     * @return the matching token.
+     */
+    public static TOKEN fromLexeme(final char[] buffer, final int start, final int length) {
+        if (length == 0) {
+            return EOF;
+        }
+
+        final var end = start + length;
+        var digits = true;
+        for (var i = start; i < end && digits; i++) {
+            digits = isDigit(buffer[i]);
+        }
+        if (digits) {
+            return NUMBER;
+        }
+
+        if (length <= MAX_LEXEME_LENGTH) {
+            final var bucket = bucketOf(length, buffer[start]);
+            final var lexemes = LEXEME_TABLE[bucket];
+            for (var i = 0; i < lexemes.length; i++) {
+                if (matches(lexemes[i], buffer, start, length)) {
+                    return TOKEN_TABLE[bucket][i];
+                }
+            }
+        }
+
+        return OTHER;
+    }
+
+    private static boolean matches(String lexeme, char[] buffer, int start, int length) {
+        for (var i = 0; i < length; i++) {
+            if (lexeme.charAt(i) != buffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
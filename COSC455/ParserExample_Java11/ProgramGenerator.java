@@ -0,0 +1,306 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * *****************************************************************************
+ * Generates random (but syntactically valid) programs of any size, eg. as
+ * workloads for benchmarks and stress tests of the LexicalAnalyzer and Parser.
+ *
+ * A program is a series of top level statements: assignments, "read"s,
+ * "write"s, and "if ... fi" and "while ... do ... od" blocks holding more
+ * statements. The shape of the programs is set by:
+ *
+ *   - the maximum nesting depth of the blocks (setMaxDepth),
+ *   - the maximum number of operands of an expression (setMaxWidth),
+ *   - the maximum depth of the parentheses in an expression (setMaxParens),
+ *   - the number of different identifiers used (setIdentifiers).
+ *
+ * The same seed (and settings) always generates the same program. Nothing is
+ * held in memory but the statements being written, so a program of any length
+ * can be streamed straight to a file; and nothing recurses, so the nesting can
+ * be as deep as you like (though Parser itself does recurse).
+ *
+ * NOTE: The programs only have to parse: nobody promises that they don't
+ * divide by zero, or that their loops ever end.
+ */
+final class ProgramGenerator {
+
+    // Identifiers are made from these (and a number, for more of them).
+    private static final String[] NAMES = {
+        "sum", "count", "n", "abs", "total", "x", "y", "i", "j", "k",
+        "max", "min", "avg", "temp", "value", "index", "limit", "step"
+    };
+    private static final String[] ADD_OPS = {"+", "-"};
+    private static final String[] MULT_OPS = {"*", "/"};
+    private static final String[] RELATIONS = {"<", ">", "<=", ">=", "=", "!="};
+
+    // The generated code is handed to the output in chunks of about this size.
+    private static final int CHUNK = 64 * 1024;
+
+    // The indentation stops growing at this depth.
+    private static final int MAX_INDENT = 16;
+
+    private final long seed;
+
+    private int maxDepth = 4;
+    private int maxWidth = 4;
+    private int maxParens = 2;
+    private String[] identifiers = identifiers(32);
+
+    /**
+     * @param seed the seed of the (pseudo) random choices.
+     */
+    ProgramGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    // The maximum nesting depth of the if/while blocks (0 for none).
+    ProgramGenerator setMaxDepth(int maxDepth) {
+        this.maxDepth = atLeast(0, maxDepth, "depth");
+        return this;
+    }
+
+    // The maximum number of operands of an expression.
+    ProgramGenerator setMaxWidth(int maxWidth) {
+        this.maxWidth = atLeast(1, maxWidth, "width");
+        return this;
+    }
+
+    // The maximum depth of the parentheses in an expression (0 for none).
+    ProgramGenerator setMaxParens(int maxParens) {
+        this.maxParens = atLeast(0, maxParens, "parens");
+        return this;
+    }
+
+    // The number of different identifiers.
+    ProgramGenerator setIdentifiers(int count) {
+        this.identifiers = identifiers(atLeast(1, count, "identifiers"));
+        return this;
+    }
+
+    private static int atLeast(int minimum, int value, String name) {
+        if (value < minimum) {
+            throw new IllegalArgumentException(String.format("%s must be at least %d: %d", name, minimum, value));
+        }
+        return value;
+    }
+
+    // eg. "sum", "count", ..., "step", "sum1", "count1", ...
+    private static String[] identifiers(int count) {
+        final var identifiers = new String[count];
+        for (var i = 0; i < count; i++) {
+            final var round = i / NAMES.length;
+            identifiers[i] = round == 0 ? NAMES[i] : NAMES[i % NAMES.length] + round;
+        }
+        return identifiers;
+    }
+
+    /**
+     * Parse a size, eg. "1000", "64KB", "10MB" or "1GB".
+     *
+     * @param size the size.
+     * @return the number of bytes.
+     * @throws NumberFormatException if it is not a size.
+     */
+    static long parseSize(String size) {
+        final var upper = size.trim().toUpperCase(Locale.ROOT);
+        final var units = new String[]{"KB", "MB", "GB"};
+        for (var i = 0; i < units.length; i++) {
+            if (upper.endsWith(units[i])) {
+                return Long.parseLong(upper.substring(0, upper.length() - 2).trim()) << (10 * (i + 1));
+            }
+        }
+        return Long.parseLong(upper);
+    }
+
+    /**
+     * Build a program by repeating the statements of the sample "input.txt"
+     * (no randomness at all).
+     *
+     * @param statements the number of (top level) statements.
+     * @return the program text.
+     */
+    static String sample(int statements) {
+        final var templates = new String[]{
+            "abs := n",
+            "if n < 0 then abs := 0 - abs fi",
+            "sum := 0",
+            "read count",
+            "while count > 0 do read n sum := sum + n count := count - 1 od",
+            "write sum"
+        };
+
+        final var program = new StringBuilder();
+        for (var i = 0; i < statements; i++) {
+            program.append(templates[i % templates.length]).append('\n');
+        }
+        return program.toString();
+    }
+
+    /**
+     * Generate a program into a String.
+     *
+     * @param size the size of the program (it ends with the first top level
+     * statement to reach it).
+     * @return the program.
+     */
+    String generate(int size) {
+        final var program = new StringBuilder(size + 256);
+        try {
+            generate(program, size);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex); // (Not from a StringBuilder.)
+        }
+        return program.toString();
+    }
+
+    /**
+     * Generate a program into a file (replacing it).
+     *
+     * @param file where the program goes.
+     * @param size the size of the program, in bytes.
+     * @return the size of the program written.
+     * @throws IOException if the file can't be written.
+     */
+    long generate(Path file, long size) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            return generate(out, size);
+        }
+    }
+
+    /**
+     * Generate a program, one chunk at a time.
+     *
+     * @param out where the program goes.
+     * @param size the size of the program (it ends with the first top level
+     * statement to reach it).
+     * @return the size of the program written (in chars, which are all ASCII).
+     * @throws IOException if the output fails.
+     */
+    long generate(Appendable out, long size) throws IOException {
+        final var random = new SplittableRandom(seed);
+        final var chunk = new StringBuilder(CHUNK + 1024);
+        var written = 0L;
+
+        // The open blocks: the closing keyword of each ("fi" or "od").
+        var closers = new boolean[16]; // true for "od"
+        var depth = 0;
+
+        // The blocks still to open, one inside the other (see below).
+        var run = 0;
+
+        while (written + chunk.length() < size || depth > 0) {
+            // Close a block at random (or once the program is big enough).
+            // (Every block gets a statement as soon as it is opened.)
+            final var full = written + chunk.length() >= size;
+            if (depth > 0 && (full || run == 0 && random.nextInt(4) == 0)) {
+                depth--;
+                indent(chunk, depth).append(closers[depth] ? "od" : "fi").append('\n');
+            } else if (depth < maxDepth && !full && (run > 0 || random.nextInt(4) == 0)) {
+                // Open a block (and now and then, a whole run of them, right
+                // down to maxDepth).
+                if (run == 0 && random.nextInt(16) == 0) {
+                    run = maxDepth - depth;
+                }
+                if (depth == closers.length) {
+                    closers = Arrays.copyOf(closers, depth * 2);
+                }
+                final var loop = random.nextBoolean();
+                indent(chunk, depth).append(loop ? "while " : "if ");
+                condition(chunk, random);
+                chunk.append(loop ? " do\n" : " then\n");
+                closers[depth++] = loop;
+                statement(indent(chunk, depth), random);
+                run = Math.max(0, run - 1);
+            } else {
+                statement(indent(chunk, depth), random);
+            }
+
+            if (chunk.length() >= CHUNK) {
+                out.append(chunk);
+                written += chunk.length();
+                chunk.setLength(0);
+            }
+        }
+
+        out.append(chunk);
+        return written + chunk.length();
+    }
+
+    private static StringBuilder indent(StringBuilder out, int depth) {
+        for (var i = Math.min(depth, MAX_INDENT); i > 0; i--) {
+            out.append("  ");
+        }
+        return out;
+    }
+
+    // An assignment, a "read" or a "write" (and the end of the line).
+    private void statement(StringBuilder out, SplittableRandom random) {
+        final var kind = random.nextInt(8);
+        if (kind == 0) {
+            out.append("read ").append(identifier(random));
+        } else if (kind == 1) {
+            out.append("write ");
+            expression(out, random);
+        } else {
+            out.append(identifier(random)).append(" := ");
+            expression(out, random);
+        }
+        out.append('\n');
+    }
+
+    private void condition(StringBuilder out, SplittableRandom random) {
+        expression(out, random);
+        out.append(' ').append(RELATIONS[random.nextInt(RELATIONS.length)]).append(' ');
+        expression(out, random);
+    }
+
+    /**
+     * An expression of 1 to maxWidth operands, eg. "( a + 2 ) * ( ( b ) )".
+     * Parentheses are only opened right before an operand, and only closed
+     * right after one, so they never hold an empty expression.
+     */
+    private void expression(StringBuilder out, SplittableRandom random) {
+        final var width = 1 + random.nextInt(maxWidth);
+        var open = 0;
+
+        for (var i = 0; i < width; i++) {
+            if (i > 0) {
+                final var operators = random.nextBoolean() ? ADD_OPS : MULT_OPS;
+                out.append(' ').append(operators[random.nextInt(operators.length)]).append(' ');
+            }
+            if (open < maxParens && random.nextInt(4) == 0) {
+                for (var n = 1 + random.nextInt(maxParens - open); n > 0; n--) {
+                    out.append("( ");
+                    open++;
+                }
+            }
+
+            if (random.nextInt(3) == 0) {
+                out.append(random.nextInt(1000));
+            } else {
+                out.append(identifier(random));
+            }
+
+            if (open > 0 && (i == width - 1 || random.nextInt(3) == 0)) {
+                for (var n = i == width - 1 ? open : 1 + random.nextInt(open); n > 0; n--) {
+                    out.append(" )");
+                    open--;
+                }
+            }
+        }
+    }
+
+    private String identifier(SplittableRandom random) {
+        return identifiers[random.nextInt(identifiers.length)];
+    }
+}
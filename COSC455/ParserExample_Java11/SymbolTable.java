@@ -0,0 +1,158 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.Arrays;
+
+/**
+ * *****************************************************************************
+ * The identifiers of one compilation, "interned" into dense int ids: the
+ * first name seen is 0, the next new one 1, and so on.
+ *
+ * Names are looked up straight from the characters of the source buffer (an
+ * open addressing hash table of ids), so a name only becomes a String once,
+ * the first time it is seen; every later "sum" is just the id of the first.
+ * Anything after the lexer (the interpreter's slots, DefUse) can then work
+ * with ints, rather than hashing Strings.
+ */
+final class SymbolTable {
+
+    // "No symbol" (eg. the symbol of a token that isn't an identifier).
+    static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // The names (and their hashes), by id.
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int count;
+
+    // The hash table: id + 1 of the name hashed there, or 0 for empty. (Kept
+    // at most half full, so probing stays short.)
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Look up (or add) a name.
+     *
+     * @param buffer the characters holding the name.
+     * @param start the index of its first character.
+     * @param length its length.
+     * @return the id of the name.
+     */
+    int intern(char[] buffer, int start, int length) {
+        var hash = 0;
+        for (var i = start; i < start + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+
+        final var mask = table.length - 1;
+        for (var bucket = mix(hash) & mask;; bucket = (bucket + 1) & mask) {
+            final var entry = table[bucket];
+            if (entry == 0) {
+                return add(new String(buffer, start, length), hash, bucket);
+            }
+            final var id = entry - 1;
+            if (hashes[id] == hash && matches(names[id], buffer, start, length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Look up (or add) a name.
+     *
+     * @param name the name.
+     * @return its id.
+     */
+    int intern(String name) {
+        return intern(name.toCharArray(), 0, name.length());
+    }
+
+    /**
+     * @param name a name.
+     * @return its id, or NONE if it was never interned.
+     */
+    int lookup(String name) {
+        // (String.hashCode is the same hash as intern's.)
+        final var hash = name.hashCode();
+        final var mask = table.length - 1;
+        for (var bucket = mix(hash) & mask;; bucket = (bucket + 1) & mask) {
+            final var entry = table[bucket];
+            if (entry == 0) {
+                return NONE;
+            }
+            if (hashes[entry - 1] == hash && names[entry - 1].equals(name)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Intern all of the names of another table (eg. of the tokens of another
+     * part of the same program), in the order of their ids there.
+     *
+     * @param other the other table.
+     * @return the id here of every name, by its id there.
+     */
+    int[] internAll(SymbolTable other) {
+        final var ids = new int[other.count];
+        for (var id = 0; id < other.count; id++) {
+            ids[id] = intern(other.names[id]);
+        }
+        return ids;
+    }
+
+    // The name of an id.
+    String getName(int id) {
+        return names[id];
+    }
+
+    // The number of names (the ids are 0 to size() - 1).
+    int size() {
+        return count;
+    }
+
+    private int add(String name, int hash, int bucket) {
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        final var id = count++;
+        names[id] = name;
+        hashes[id] = hash;
+        table[bucket] = id + 1;
+
+        if (count * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        final var mask = capacity - 1;
+        for (var id = 0; id < count; id++) {
+            var bucket = mix(hashes[id]) & mask;
+            while (table[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            table[bucket] = id + 1;
+        }
+    }
+
+    // Spread the bits of the hash (short names differ in the low bits only).
+    private static int mix(int hash) {
+        final var h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(String name, char[] buffer, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (var i = 0; i < length; i++) {
+            if (name.charAt(i) != buffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
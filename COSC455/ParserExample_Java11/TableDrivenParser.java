@@ -0,0 +1,356 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * *****************************************************************************
+ * A table driven LL(1) parser for the same grammar as Parser: instead of one
+ * (recursive) method per nonterminal, the grammar is a table of productions,
+ * and the parser is a loop over an explicit stack of grammar symbols.
+ *
+ *   - Pop a nonterminal: add its node to the tree, look up the production to
+ *     use in the parse table (by the nonterminal and the current token), and
+ *     push the right hand side of the production (in reverse).
+ *   - Pop a terminal: it must be the current token; add it to the tree.
+ *
+ * The parse table is built (once) from the FIRST sets of the productions. Like
+ * the if/else chains of Parser, the last production of every nonterminal is
+ * its "else": it is used for any token that doesn't start another production.
+ * (So eg. a FACTOR on a "then" matches nothing, and the error only shows up at
+ * the next terminal, exactly where Parser finds it.)
+ *
+ * The parser calls the CodeGenerator exactly as Parser does (the same nodes,
+ * in the same order, and the same syntax errors), so the two are
+ * interchangeable; see MAIN_CrossCheck. But nothing here recurses, so neither
+ * the length of a program nor the depth of its nesting is limited by the size
+ * of the Java stack, only by the heap.
+ *
+ * NOTE: There is no error recovery here; the parse stops at the first error.
+ */
+final class TableDrivenParser {
+
+    private static final NONTERMINAL[] NONTERMINALS = NONTERMINAL.values();
+    private static final TOKEN[] TOKENS = TOKEN.values();
+
+    // Stack symbols: the NONTERMINAL ordinals first, then one "match" per
+    // TOKEN, then the special symbols below.
+    private static final int MATCH = NONTERMINALS.length;
+    // The "do" of a while (an ENDWHILE token), reported as "DO".
+    private static final int MATCH_DO = MATCH + TOKENS.length;
+    // The "od" of a while: Parser takes whatever token is there.
+    private static final int ANY = MATCH_DO + 1;
+    // An &epsilon; leaf.
+    private static final int EPSILON = ANY + 1;
+    // The "'Statement' was expected" error (of the parent of the STMT).
+    private static final int BAD_STATEMENT = EPSILON + 1;
+
+    // Set in a FIRST "set" (a bit mask of TOKEN ordinals) for a nullable
+    // sequence of symbols.
+    private static final long NULLABLE = 1L << 63;
+
+    // The productions: their left hand sides, and their right hand sides.
+    private static final NONTERMINAL[] LEFT = new NONTERMINAL[32];
+    private static final int[][] RIGHT = new int[32][];
+    private static int productions;
+
+    // The parse table: TABLE[nonterminal * TOKENS.length + token] is the
+    // production to use.
+    private static final int[] TABLE = new int[NONTERMINALS.length * TOKENS.length];
+
+    // FIRST and FOLLOW of every nonterminal (bit masks of TOKEN ordinals).
+    private static final long[] FIRST = new long[NONTERMINALS.length];
+    private static final long[] FOLLOW = new long[NONTERMINALS.length];
+
+    static {
+        // The grammar, as Parser implements it (the last production of every
+        // nonterminal is the one used "otherwise").
+        production(NONTERMINAL.PROGRAM, NONTERMINAL.STMT_LIST);
+
+        production(NONTERMINAL.STMT_LIST, NONTERMINAL.STMT, NONTERMINAL.STMT_LIST);
+        production(NONTERMINAL.STMT_LIST);
+
+        production(NONTERMINAL.STMT, TOKEN.IF, NONTERMINAL.CONDITION, TOKEN.THEN, NONTERMINAL.STMT_LIST, TOKEN.ENDIF);
+        production(NONTERMINAL.STMT, TOKEN.OTHER, TOKEN.ASGN, NONTERMINAL.EXPR);
+        production(NONTERMINAL.STMT, TOKEN.READ, TOKEN.OTHER);
+        production(NONTERMINAL.STMT, TOKEN.WRITE, NONTERMINAL.EXPR);
+        production(NONTERMINAL.STMT, TOKEN.WHILE, NONTERMINAL.CONDITION, MATCH_DO, NONTERMINAL.STMT_LIST, ANY);
+        production(NONTERMINAL.STMT, TOKEN.ENDWHILE);
+        production(NONTERMINAL.STMT, BAD_STATEMENT);
+
+        production(NONTERMINAL.CONDITION, NONTERMINAL.EXPR, TOKEN.RELATION, NONTERMINAL.EXPR);
+
+        production(NONTERMINAL.EXPR, NONTERMINAL.TERM, NONTERMINAL.TERM_TAIL);
+
+        production(NONTERMINAL.TERM_TAIL, TOKEN.ADD_OP, NONTERMINAL.TERM, NONTERMINAL.TERM_TAIL);
+        production(NONTERMINAL.TERM_TAIL, EPSILON);
+
+        production(NONTERMINAL.TERM, NONTERMINAL.FACTOR, NONTERMINAL.FACTOR_TAIL);
+
+        production(NONTERMINAL.FACTOR_TAIL, TOKEN.MULT_OP, NONTERMINAL.FACTOR, NONTERMINAL.FACTOR_TAIL);
+        production(NONTERMINAL.FACTOR_TAIL, EPSILON);
+
+        production(NONTERMINAL.FACTOR, TOKEN.OP, NONTERMINAL.EXPR, TOKEN.CL);
+        production(NONTERMINAL.FACTOR, TOKEN.OTHER);
+        production(NONTERMINAL.FACTOR, TOKEN.NUMBER);
+        production(NONTERMINAL.FACTOR);
+
+        computeFirst();
+        computeFollow();
+        buildTable();
+    }
+
+    // Add a production; its right hand side is NONTERMINALs, TOKENs (to
+    // match) and special symbols (Integers).
+    private static void production(NONTERMINAL left, Object... right) {
+        final var symbols = new int[right.length];
+        for (var i = 0; i < right.length; i++) {
+            if (right[i] instanceof NONTERMINAL) {
+                symbols[i] = ((NONTERMINAL) right[i]).ordinal();
+            } else if (right[i] instanceof TOKEN) {
+                symbols[i] = MATCH + ((TOKEN) right[i]).ordinal();
+            } else {
+                symbols[i] = (Integer) right[i];
+            }
+        }
+        LEFT[productions] = left;
+        RIGHT[productions] = symbols;
+        productions++;
+    }
+
+    private static long bit(TOKEN token) {
+        return 1L << token.ordinal();
+    }
+
+    // FIRST of right[from...] (with NULLABLE if it can match nothing at all).
+    private static long firstOf(int[] right, int from) {
+        var first = 0L;
+        for (var i = from; i < right.length; i++) {
+            final var symbol = right[i];
+            if (symbol < MATCH) {
+                first |= FIRST[symbol] & ~NULLABLE;
+                if ((FIRST[symbol] & NULLABLE) == 0) {
+                    return first;
+                }
+            } else if (symbol < MATCH_DO) {
+                return first | 1L << (symbol - MATCH);
+            } else if (symbol == MATCH_DO) {
+                return first | bit(TOKEN.ENDWHILE);
+            } else if (symbol == ANY) {
+                return first | bit(TOKEN.DONE); // (for FOLLOW, "od" is expected)
+            } else if (symbol == BAD_STATEMENT) {
+                return first;
+            }
+            // (EPSILON matches nothing.)
+        }
+        return first | NULLABLE;
+    }
+
+    private static void computeFirst() {
+        for (var changed = true; changed;) {
+            changed = false;
+            for (var p = 0; p < productions; p++) {
+                final var left = LEFT[p].ordinal();
+                final var first = FIRST[left] | firstOf(RIGHT[p], 0);
+                changed |= first != FIRST[left];
+                FIRST[left] = first;
+            }
+        }
+    }
+
+    private static void computeFollow() {
+        FOLLOW[NONTERMINAL.PROGRAM.ordinal()] = bit(TOKEN.EOF);
+        for (var changed = true; changed;) {
+            changed = false;
+            for (var p = 0; p < productions; p++) {
+                final var right = RIGHT[p];
+                for (var i = 0; i < right.length; i++) {
+                    if (right[i] < MATCH) {
+                        final var rest = firstOf(right, i + 1);
+                        var follow = FOLLOW[right[i]] | (rest & ~NULLABLE);
+                        if ((rest & NULLABLE) != 0) {
+                            follow |= FOLLOW[LEFT[p].ordinal()];
+                        }
+                        changed |= follow != FOLLOW[right[i]];
+                        FOLLOW[right[i]] = follow;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void buildTable() {
+        // Every statement start of Parser.stmt_list (which, unlike FIRST(STMT),
+        // includes "then" and "(", and leaves out "do").
+        var statementStarts = 0L;
+        for (var token : TOKENS) {
+            if (Parser.isStatementStart(token)) {
+                statementStarts |= bit(token);
+            }
+        }
+
+        // Backwards, so the "otherwise" production is filled in first and
+        // the earlier productions win (as in Parser's if/else chains).
+        for (var p = productions - 1; p >= 0; p--) {
+            final var row = LEFT[p].ordinal() * TOKENS.length;
+            final var last = p == productions - 1 || LEFT[p + 1] != LEFT[p];
+            final var first = LEFT[p] == NONTERMINAL.STMT_LIST && !last ? statementStarts : firstOf(RIGHT[p], 0);
+
+            for (var token = 0; token < TOKENS.length; token++) {
+                if (last || (first & 1L << token) != 0) {
+                    TABLE[row + token] = p;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return FIRST(nonTerminal), eg. for printing the tables.
+     */
+    static Set<TOKEN> getFirst(NONTERMINAL nonTerminal) {
+        return tokens(FIRST[nonTerminal.ordinal()]);
+    }
+
+    /**
+     * @return FOLLOW(nonTerminal), eg. for printing the tables.
+     */
+    static Set<TOKEN> getFollow(NONTERMINAL nonTerminal) {
+        return tokens(FOLLOW[nonTerminal.ordinal()]);
+    }
+
+    private static Set<TOKEN> tokens(long mask) {
+        final var tokens = EnumSet.noneOf(TOKEN.class);
+        for (var token : TOKENS) {
+            if ((mask & bit(token)) != 0) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // The parser.
+    ////////////////////////////////////////////////////////////////////////////
+    private final LexicalAnalyzer lexer;
+    private final CodeGenerator codeGenerator;
+
+    // The stack: the symbols, and the tree node each one goes under.
+    private int[] symbols = new int[64];
+    private ParseNode[] parents = new ParseNode[64];
+    private int size;
+
+    // The message of the syntax error that stopped the parse (if any).
+    private String syntaxError;
+
+    // The syntax error found (at most one), as for Parser.
+    private final List<Parser.Diagnostic> diagnostics = new ArrayList<>();
+
+    /**
+     * @param lexer The Lexer Object
+     * @param codeGenerator the code generator.
+     */
+    TableDrivenParser(LexicalAnalyzer lexer, CodeGenerator codeGenerator) {
+        this.lexer = lexer;
+        this.codeGenerator = codeGenerator;
+    }
+
+    /**
+     * Parse the whole input, generating code as we go (see Parser.analyze).
+     *
+     * @return true if the input was parsed without a syntax error.
+     */
+    boolean analyze() {
+        try {
+            push(NONTERMINAL.PROGRAM.ordinal(), codeGenerator.writeHeader("PARSE TREE"));
+
+            while (size > 0) {
+                size--;
+                final var symbol = symbols[size];
+                final var parent = parents[size];
+
+                if (symbol < MATCH) {
+                    final var node = codeGenerator.addNonTerminalToTree(NONTERMINALS[symbol], parent);
+                    final var right = RIGHT[TABLE[symbol * TOKENS.length + lexer.getCurrentToken().ordinal()]];
+                    if (size + right.length > symbols.length) {
+                        grow(size + right.length);
+                    }
+                    for (var i = right.length - 1; i >= 0; i--) {
+                        symbols[size] = right[i];
+                        parents[size] = right[i] == BAD_STATEMENT ? parent : node;
+                        size++;
+                    }
+                } else if (symbol < MATCH_DO) {
+                    match(TOKENS[symbol - MATCH], TOKENS[symbol - MATCH].name(), parent);
+                } else if (symbol == MATCH_DO) {
+                    match(TOKEN.ENDWHILE, "DO", parent);
+                } else if (symbol == ANY) {
+                    addTerminalAndAdvanceToken(parent);
+                } else if (symbol == EPSILON) {
+                    codeGenerator.addEmptyToTree(parent);
+                } else {
+                    raiseException("Statement", parent);
+                }
+            }
+
+            codeGenerator.writeFooter();
+            return true;
+        } catch (Parser.ParseException ex) {
+            syntaxError = ex.getMessage();
+            final String msg = String.format("%s\n", ex.getMessage());
+            Logger.getAnonymousLogger().severe(msg);
+            return false;
+        }
+    }
+
+    // The syntax error that stopped analyze(), or null.
+    String getSyntaxError() {
+        return syntaxError;
+    }
+
+    // The syntax error found by analyze() (if any).
+    List<Parser.Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    private void push(int symbol, ParseNode parent) {
+        if (size == symbols.length) {
+            grow(size + 1);
+        }
+        symbols[size] = symbol;
+        parents[size] = parent;
+        size++;
+    }
+
+    // Make room for (at least) "capacity" symbols on the stack.
+    private void grow(int capacity) {
+        final var newCapacity = Math.max(capacity, symbols.length * 2);
+        symbols = Arrays.copyOf(symbols, newCapacity);
+        parents = Arrays.copyOf(parents, newCapacity);
+    }
+
+    private void match(TOKEN token, String name, ParseNode fromNode) throws Parser.ParseException {
+        if (!lexer.isCurrentToken(token)) {
+            raiseException(name + " expected", fromNode);
+        } else {
+            addTerminalAndAdvanceToken(fromNode);
+        }
+    }
+
+    private void addTerminalAndAdvanceToken(ParseNode fromNode) {
+        final var terminalNode = codeGenerator.addNonTerminalToTree(lexer.getCurrentToken(), fromNode);
+
+        codeGenerator.addCurrentTerminalToTree(terminalNode, lexer);
+        lexer.advanceToken();
+    }
+
+    private void raiseException(String expected, ParseNode fromNode) throws Parser.ParseException {
+        final var found = lexer.getCurrentLexeme();
+        final var err = Parser.syntaxErrorMessage(expected, found);
+
+        final var tokens = lexer.getTokenStream();
+        final var index = lexer.getCurrentTokenIndex();
+        diagnostics.add(new Parser.Diagnostic(err, expected, found, tokens.lineAt(index), tokens.columnAt(index)));
+
+        codeGenerator.syntaxError(err, fromNode);
+    }
+}
@@ -0,0 +1,535 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * *****************************************************************************
+ * A parse tree in a compact binary file ("prog.txt.tree"), read in place.
+ *
+ * The nodes are written in the order of the ParseTree (a pre-order walk), one
+ * record each, of "varints" (7 bits per byte, the high bit set on all bytes
+ * but the last, so small numbers take one byte):
+ *
+ *   symbol (see ParseTree), node - parent (0 for the root), and, for a
+ *   LEXEME (or NAMED node), the index of its lexeme (or name) in the string
+ *   table.
+ *
+ * Most nodes take 2 bytes (a lexeme 3): a tree is about a tenth of the size
+ * of the ParseTree in memory, and a thirtieth of the size of its DOT. The
+ * records are cut into blocks of BLOCK_NODES nodes, each optionally deflated.
+ * The file is:
+ *
+ *   header:  int MAGIC, byte VERSION, byte flags (DEFLATED), int node count,
+ *            int id of the first node, int BLOCK_NODES, int error node (or NONE)
+ *   blocks:  the records of every block
+ *   strings: int offset of every string (and of the end), then the strings (UTF-8)
+ *   index:   int offset of every block (and of the end)
+ *   trailer: int string count, int offset of the strings, int offset of the
+ *            index, int string of the root label, int string of the error (or
+ *            NONE), int MAGIC
+ *
+ * so a writer can stream the tree out (the offsets only come at the end). A
+ * TreeFile maps the file and finds any node by decoding just its block (a few
+ * recently used blocks are kept decoded); nothing is read up front but the
+ * trailer. (close() only frees the inflater; the mapping goes with the
+ * garbage collector, as usual for MappedByteBuffers.)
+ *
+ * Usage: MAIN_Compiler --dot FILE.tree...
+ *
+ * converts trees back to DOT: "prog.txt.tree" to "prog.txt.dot", the same
+ * DOT as "--format graphviz" would have generated.
+ */
+final class TreeFile implements Closeable {
+
+    private static final String USAGE = "Usage: MAIN_Compiler --dot FILE.tree...";
+
+    static final int MAGIC = 0x50545245; // "PTRE"
+    static final byte VERSION = 1;
+
+    // The blocks are deflated.
+    static final byte DEFLATED = 1;
+
+    // The number of nodes in a block (the last one may have fewer).
+    static final int BLOCK_NODES = 1024;
+
+    // The longest record: three varints of at most 5 bytes.
+    private static final int MAX_RECORD = 15;
+
+    private static final int HEADER_SIZE = 4 + 1 + 1 + 4 * 4;
+    private static final int TRAILER_SIZE = 6 * 4;
+
+    // The number of decoded blocks kept.
+    private static final int CACHED_BLOCKS = 4;
+
+    private final ByteBuffer map;
+    private final boolean deflated;
+    private final int size;
+    private final int firstNodeId;
+    private final int blockNodes;
+    private final int errorNode;
+    private final int stringCount;
+    private final int stringsOffset;
+    private final int indexOffset;
+    private final int rootLabel;
+    private final int error;
+
+    // The strings decoded so far, by index.
+    private final String[] strings;
+
+    // The decoded blocks (which block, and its records), used round robin.
+    private final int[] cachedBlocks = new int[CACHED_BLOCKS];
+    private final int[][] cachedSymbols = new int[CACHED_BLOCKS][];
+    private final int[][] cachedParents = new int[CACHED_BLOCKS][];
+    private final int[][] cachedStrings = new int[CACHED_BLOCKS][];
+    private int nextCached;
+    private int lastCached;
+
+    // (Only for DEFLATED blocks.)
+    private Inflater inflater;
+    private byte[] inflated;
+
+    private TreeFile(ByteBuffer map) throws IOException {
+        this.map = map;
+        final var length = map.limit();
+        if (length < HEADER_SIZE + TRAILER_SIZE || map.getInt(0) != MAGIC || map.getInt(length - 4) != MAGIC) {
+            throw new IOException("Not a tree file");
+        }
+        if (map.get(4) != VERSION) {
+            throw new IOException("Unknown tree file version: " + map.get(4));
+        }
+
+        this.deflated = (map.get(5) & DEFLATED) != 0;
+        this.size = map.getInt(6);
+        this.firstNodeId = map.getInt(10);
+        this.blockNodes = map.getInt(14);
+        this.errorNode = map.getInt(18);
+
+        final var trailer = length - TRAILER_SIZE;
+        this.stringCount = map.getInt(trailer);
+        this.stringsOffset = map.getInt(trailer + 4);
+        this.indexOffset = map.getInt(trailer + 8);
+        this.rootLabel = map.getInt(trailer + 12);
+        this.error = map.getInt(trailer + 16);
+
+        this.strings = new String[stringCount];
+        Arrays.fill(cachedBlocks, ParseTree.NONE);
+        for (var i = 0; i < CACHED_BLOCKS; i++) {
+            cachedSymbols[i] = new int[blockNodes];
+            cachedParents[i] = new int[blockNodes];
+            cachedStrings[i] = new int[blockNodes];
+        }
+    }
+
+    /**
+     * Map a tree file.
+     *
+     * @param path the file.
+     * @return the tree in it.
+     * @throws IOException if it can't be read, or isn't a tree file.
+     */
+    static TreeFile open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Tree file too large: " + path);
+            }
+            final MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new TreeFile(map);
+        }
+    }
+
+    /**
+     * Read a tree from bytes in memory (eg. sent over a socket).
+     *
+     * @param bytes the contents of a tree file.
+     * @return the tree in it.
+     * @throws IOException if it isn't a tree file.
+     */
+    static TreeFile wrap(byte[] bytes) throws IOException {
+        return new TreeFile(ByteBuffer.wrap(bytes));
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getRoot() {
+        return 0;
+    }
+
+    int getSymbol(int node) {
+        final var slot = decoded(node);
+        return cachedSymbols[slot][node % blockNodes];
+    }
+
+    int getParent(int node) {
+        final var slot = decoded(node);
+        return cachedParents[slot][node % blockNodes];
+    }
+
+    /**
+     * @param node a node.
+     * @return its first child, or NONE. (In a pre-order, the first child of a
+     * node is right after it.)
+     */
+    int getFirstChild(int node) {
+        return node + 1 < size && getParent(node + 1) == node ? node + 1 : ParseTree.NONE;
+    }
+
+    /**
+     * @param node a node.
+     * @return its next sibling, or NONE. (This skips the sub-tree of the
+     * node, so it takes time in proportion to its size.)
+     */
+    int getNextSibling(int node) {
+        if (node == getRoot()) {
+            return ParseTree.NONE;
+        }
+        final var parent = getParent(node);
+        for (var next = node + 1; next < size; next++) {
+            final var nextParent = getParent(next);
+            if (nextParent < node) {
+                // (Past the sub-tree: the next sibling, or a node further up.)
+                return nextParent == parent ? next : ParseTree.NONE;
+            }
+        }
+        return ParseTree.NONE;
+    }
+
+    // The id the node had as a ParseNode.
+    int getNodeId(int node) {
+        return firstNodeId + node;
+    }
+
+    // The text shown for the node, eg. "<STMT>", "sum" or "&epsilon;"
+    String getLabel(int node) {
+        final var slot = decoded(node);
+        final var symbol = cachedSymbols[slot][node % blockNodes];
+        if (symbol == ParseTree.LEXEME || symbol == ParseTree.NAMED) {
+            return getString(cachedStrings[slot][node % blockNodes]);
+        } else if (symbol == ParseTree.ROOT) {
+            return getString(rootLabel);
+        } else {
+            return ParseTree.labelOf(symbol);
+        }
+    }
+
+    // The name of the node (its ParseNode name), eg. "<STMT>" or "ENPTY"
+    String getName(int node) {
+        return getSymbol(node) == ParseTree.EPSILON ? "ENPTY" : getLabel(node);
+    }
+
+    // The GraphViz shape of the node.
+    String getShape(int node) {
+        return ParseTree.shapeOf(getSymbol(node));
+    }
+
+    int getErrorNode() {
+        return errorNode;
+    }
+
+    String getError() {
+        return error == ParseTree.NONE ? null : getString(error);
+    }
+
+    // A string of the string table (decoded the first time it is asked for).
+    private String getString(int index) {
+        var string = strings[index];
+        if (string == null) {
+            final var start = map.getInt(stringsOffset + 4 * index);
+            final var end = map.getInt(stringsOffset + 4 * index + 4);
+            final var bytes = new byte[end - start];
+            map.duplicate().position(stringsOffset + 4 * (stringCount + 1) + start).get(bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = string;
+        }
+        return string;
+    }
+
+    // The cache slot of the (decoded) block of a node.
+    private int decoded(int node) {
+        final var block = node / blockNodes;
+        if (cachedBlocks[lastCached] == block) {
+            return lastCached;
+        }
+        for (var slot = 0; slot < CACHED_BLOCKS; slot++) {
+            if (cachedBlocks[slot] == block) {
+                lastCached = slot;
+                return slot;
+            }
+        }
+
+        final var slot = nextCached;
+        nextCached = (nextCached + 1) % CACHED_BLOCKS;
+        cachedBlocks[slot] = ParseTree.NONE; // (In case decoding fails.)
+        decode(block, slot);
+        cachedBlocks[slot] = block;
+        lastCached = slot;
+        return slot;
+    }
+
+    private void decode(int block, int slot) {
+        final var start = map.getInt(indexOffset + 4 * block);
+        final var end = map.getInt(indexOffset + 4 * block + 4);
+        final var first = block * blockNodes;
+        final var nodes = Math.min(blockNodes, size - first);
+
+        ByteBuffer records = map.duplicate().position(start).limit(end);
+        if (deflated) {
+            if (inflater == null) {
+                inflater = new Inflater();
+                inflated = new byte[blockNodes * MAX_RECORD];
+            }
+            try {
+                inflater.reset();
+                inflater.setInput(records);
+                final var length = inflater.inflate(inflated);
+                records = ByteBuffer.wrap(inflated, 0, length);
+            } catch (DataFormatException ex) {
+                throw new IllegalStateException("Corrupt tree file block " + block, ex);
+            }
+        }
+
+        final var symbols = cachedSymbols[slot];
+        final var parents = cachedParents[slot];
+        final var strings = cachedStrings[slot];
+        for (var i = 0; i < nodes; i++) {
+            final var symbol = readVarint(records);
+            final var delta = readVarint(records);
+            symbols[i] = symbol;
+            parents[i] = delta == 0 ? ParseTree.NONE : first + i - delta;
+            strings[i] = symbol == ParseTree.LEXEME || symbol == ParseTree.NAMED ? readVarint(records) : ParseTree.NONE;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        var value = 0;
+        for (var shift = 0;; shift += 7) {
+            final var b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Writing.
+    ////////////////////////////////////////////////////////////////////////////
+    /**
+     * Write a tree (with its syntax error, if any) as a tree file.
+     *
+     * @param tree the tree.
+     * @param out where the file goes.
+     * @param deflate true to deflate the blocks.
+     * @return the number of bytes written.
+     * @throws IOException if the file can't be written.
+     */
+    static long write(ParseTree tree, OutputStream out, boolean deflate) throws IOException {
+        return new Writer(tree, out, deflate).write();
+    }
+
+    private static final class Writer {
+
+        private final ParseTree tree;
+        private final DataOutputStream out;
+        private final Deflater deflater;
+
+        // The string table: by index, and the index of each string (and of
+        // each identifier, by its SymbolTable id, to skip hashing them).
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> stringIndexes = new HashMap<>();
+        private final int[] variableStrings;
+
+        // The records of the block being written.
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream(BLOCK_NODES * 4);
+        private byte[] compressed = new byte[BLOCK_NODES * MAX_RECORD];
+
+        Writer(ParseTree tree, OutputStream out, boolean deflate) {
+            this.tree = tree;
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.deflater = deflate ? new Deflater(Deflater.BEST_SPEED) : null;
+            this.variableStrings = new int[tree.size() == 0 ? 0 : tree.getSymbolTable().size()];
+            Arrays.fill(variableStrings, ParseTree.NONE);
+        }
+
+        long write() throws IOException {
+            try {
+                final var size = tree.size();
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeByte(deflater == null ? 0 : DEFLATED);
+                out.writeInt(size);
+                out.writeInt(size == 0 ? 0 : tree.getNodeId(tree.getRoot()));
+                out.writeInt(BLOCK_NODES);
+                out.writeInt(tree.getErrorNode());
+
+                final var blockOffsets = new int[(size + BLOCK_NODES - 1) / BLOCK_NODES + 1];
+                var blocks = 0;
+                for (var first = 0; first < size; first += BLOCK_NODES) {
+                    blockOffsets[blocks++] = out.size();
+                    writeBlock(first, Math.min(size, first + BLOCK_NODES));
+                }
+                blockOffsets[blocks] = out.size();
+
+                final var rootLabel = size == 0 ? ParseTree.NONE : stringIndex(tree.getLabel(tree.getRoot()));
+                final var error = tree.getError() == null ? ParseTree.NONE : stringIndex(tree.getError());
+
+                final var stringsOffset = out.size();
+                final var encoded = new byte[strings.size()][];
+                var offset = 0;
+                for (var i = 0; i < encoded.length; i++) {
+                    encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(offset);
+                    offset += encoded[i].length;
+                }
+                out.writeInt(offset);
+                for (var bytes : encoded) {
+                    out.write(bytes);
+                }
+
+                final var indexOffset = out.size();
+                for (var blockOffset : blockOffsets) {
+                    out.writeInt(blockOffset);
+                }
+
+                out.writeInt(strings.size());
+                out.writeInt(stringsOffset);
+                out.writeInt(indexOffset);
+                out.writeInt(rootLabel);
+                out.writeInt(error);
+                out.writeInt(MAGIC);
+                out.flush();
+
+                // (size() stops counting at Integer.MAX_VALUE.)
+                if (out.size() == Integer.MAX_VALUE) {
+                    throw new IOException("Tree too large for a tree file");
+                }
+                return out.size();
+            } finally {
+                if (deflater != null) {
+                    deflater.end();
+                }
+            }
+        }
+
+        private void writeBlock(int first, int end) throws IOException {
+            records.reset();
+            for (var node = first; node < end; node++) {
+                final var symbol = tree.getSymbol(node);
+                final var parent = tree.getParent(node);
+                writeVarint(symbol);
+                writeVarint(parent == ParseTree.NONE ? 0 : node - parent);
+                if (symbol == ParseTree.LEXEME) {
+                    writeVarint(lexemeIndex(node));
+                } else if (symbol == ParseTree.NAMED) {
+                    writeVarint(stringIndex(tree.getLabel(node)));
+                }
+            }
+
+            if (deflater == null) {
+                records.writeTo(out);
+                return;
+            }
+            deflater.reset();
+            deflater.setInput(records.toByteArray());
+            deflater.finish();
+            var length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            out.write(compressed, 0, length);
+        }
+
+        // The string index of the lexeme of a leaf.
+        private int lexemeIndex(int leaf) {
+            final var variable = tree.getVariable(leaf);
+            if (variable == SymbolTable.NONE) {
+                return stringIndex(tree.getLabel(leaf));
+            }
+            if (variableStrings[variable] == ParseTree.NONE) {
+                variableStrings[variable] = stringIndex(tree.getSymbolTable().getName(variable));
+            }
+            return variableStrings[variable];
+        }
+
+        private int stringIndex(String string) {
+            final var index = stringIndexes.get(string);
+            if (index != null) {
+                return index;
+            }
+            strings.add(string);
+            stringIndexes.put(string, strings.size() - 1);
+            return strings.size() - 1;
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                records.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            records.write(value);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // The command line.
+    ////////////////////////////////////////////////////////////////////////////
+    /**
+     * Convert tree files to DOT, from the command line.
+     *
+     * @param args the tree files.
+     * @return the exit status: 0 if every file was converted, 1 if not, 2 for
+     * bad arguments.
+     */
+    static int run(String[] args) {
+        if (args.length == 0) {
+            System.err.println("No input files");
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        var failures = 0;
+        for (var arg : args) {
+            final var input = Path.of(arg);
+            final var name = input.getFileName().toString();
+            final var output = input.resolveSibling(
+                    (name.endsWith(".tree") ? name.substring(0, name.length() - ".tree".length()) : name) + ".dot");
+
+            try (var tree = open(input);
+                    var stream = new BufferedOutputStream(Files.newOutputStream(output))) {
+                final var codeGenerator = new CodeGenerator(stream, false);
+                codeGenerator.writeTree(tree);
+            } catch (IOException | RuntimeException ex) {
+                failures++;
+                System.err.printf("FAILED %s: %s%n", input, ex);
+            }
+        }
+        return failures == 0 ? 0 : 1;
+    }
+}
@@ -0,0 +1,44 @@
+package COSC455.ParserExample_Java11;
+
+/**
+ * *****************************************************************************
+ * The inputs of the JMH benchmarks: programs of (about) a given size, made by
+ * the ProgramGenerator (always with the same seed), and their numbers of
+ * tokens and tree nodes (to turn "bytes allocated per run" into "bytes
+ * allocated per token/node").
+ */
+final class BenchmarkInputs {
+
+    // The sizes of the programs, as in the @Param of the benchmarks.
+    static final String SIZES = "1KB,64KB,1MB,16MB,100MB";
+
+    // The seed of every program.
+    private static final long SEED = 455;
+
+    private BenchmarkInputs() {
+    }
+
+    /**
+     * A program of (just over) the given size.
+     *
+     * @param size eg. "1KB".
+     * @return the text of the program.
+     */
+    static char[] program(String size) {
+        return new ProgramGenerator(SEED).generate(Math.toIntExact(ProgramGenerator.parseSize(size))).toCharArray();
+    }
+
+    // The number of tokens of a program (not counting the EOF).
+    static int tokens(char[] program) {
+        return new LexicalAnalyzer(program, program.length).getTokenStream().size();
+    }
+
+    // The number of nodes of the parse tree of a program (with the
+    // TableDrivenParser: the same tree, but no deep recursion).
+    static int nodes(char[] program) {
+        final var tree = new ParseTree();
+        final var lexer = new LexicalAnalyzer(program, program.length);
+        new TableDrivenParser(lexer, new ParseTreeBuilder(tree, lexer)).analyze();
+        return tree.size();
+    }
+}
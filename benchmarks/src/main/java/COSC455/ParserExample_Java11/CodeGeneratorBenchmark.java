@@ -0,0 +1,40 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * *****************************************************************************
+ * Writing the GraphViz output of an (already parsed) ParseTree with the
+ * CodeGenerator, to nowhere; one operation is one tree.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodeGeneratorBenchmark {
+
+    @Param({"1KB", "64KB", "1MB", "16MB", "100MB"})
+    public String size;
+
+    // Shared (read only) by all of the benchmark threads.
+    private ParseTree tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var program = BenchmarkInputs.program(size);
+        final var lexer = new LexicalAnalyzer(program, program.length);
+        tree = new ParseTree();
+        new TableDrivenParser(lexer, new ParseTreeBuilder(tree, lexer)).analyze();
+    }
+
+    @Benchmark
+    public void writeTree() {
+        final var codeGenerator = new CodeGenerator(Writer.nullWriter(), false);
+        codeGenerator.writeTree(tree);
+        codeGenerator.flush();
+    }
+}
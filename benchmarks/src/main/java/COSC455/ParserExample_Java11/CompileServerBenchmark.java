@@ -0,0 +1,68 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * *****************************************************************************
+ * The round trip of a small program (the size of "input.txt") through a
+ * CompileServer (in the benchmark's JVM): over one connection per benchmark
+ * thread, and over a new connection per program; one operation is one
+ * program.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompileServerBenchmark {
+
+    private final String program = ProgramGenerator.sample(6);
+
+    private CompileServer server;
+
+    /**
+     * The connection of one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Connection {
+
+        CompileClient client;
+
+        @Setup(Level.Trial)
+        public void setUp(CompileServerBenchmark benchmark) throws IOException {
+            client = new CompileClient("localhost", benchmark.server.getPort());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            client.close();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final var processors = Runtime.getRuntime().availableProcessors();
+        server = new CompileServer(InetAddress.getLoopbackAddress(), 0, processors, 64, 1 << 20, 60_000).start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public String oneConnection(Connection connection) throws IOException {
+        return connection.client.compile(program);
+    }
+
+    @Benchmark
+    public String connectionPerProgram() throws IOException {
+        try (var client = new CompileClient("localhost", server.getPort())) {
+            return client.compile(program);
+        }
+    }
+}
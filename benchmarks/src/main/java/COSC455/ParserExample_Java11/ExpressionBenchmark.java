@@ -0,0 +1,52 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * *****************************************************************************
+ * Parsing one long expression ("x := a * a + a * a ...") into a ParseTree,
+ * with the (recursive) Parser and with the TableDrivenParser; one operation
+ * is one term. (ParserBenchmark compares them on whole programs.)
+ *
+ * NOTE: The Parser recurses once per term, so the forks get a 1 GB stack
+ * (-Xss1g).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xss1g")
+@State(Scope.Thread)
+public class ExpressionBenchmark {
+
+    private static final int TERMS = 100_000;
+
+    private String expression;
+
+    // Reused by every operation, so one per thread.
+    private final ParseTree tree = new ParseTree();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var chain = new StringBuilder("x := a");
+        for (var i = 1; i < TERMS; i++) {
+            chain.append(i % 2 == 0 ? " + a" : " * a");
+        }
+        expression = chain.toString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TERMS)
+    public boolean recursive() {
+        final var lexer = new LexicalAnalyzer(expression);
+        return new Parser(lexer, new ParseTreeBuilder(tree, lexer)).analyze();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TERMS)
+    public boolean tableDriven() {
+        final var lexer = new LexicalAnalyzer(expression);
+        return new TableDrivenParser(lexer, new ParseTreeBuilder(tree, lexer)).analyze();
+    }
+}
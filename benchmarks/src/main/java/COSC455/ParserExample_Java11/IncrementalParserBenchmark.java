@@ -0,0 +1,48 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * *****************************************************************************
+ * A one character edit in the middle of a 50k line program with the
+ * IncrementalParser (one operation is the edit, or its undo), against parsing
+ * the whole program again (one operation is the program).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IncrementalParserBenchmark {
+
+    private static final int LINES = 50_000;
+
+    private String program;
+
+    // Edited (and put back) by every operation, so one per thread.
+    private IncrementalParser parser;
+    private int offset;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        program = ProgramGenerator.sample(LINES);
+        parser = new IncrementalParser(program);
+        offset = program.indexOf("sum := 0", program.length() / 2) + "sum := ".length();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public IncrementalParser fullParse() {
+        return new IncrementalParser(program);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public int edit() {
+        parser.edit(offset, 0, "1");
+        parser.edit(offset, 1, "");
+        return parser.getReparsedStatements();
+    }
+}
@@ -0,0 +1,56 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * *****************************************************************************
+ * A million iteration while loop, run on the tree-walking Interpreter and as
+ * a JVM class (BytecodeCompiler); one operation is one iteration of the loop.
+ * (Each iteration executes 18 nodes of the Interpreter: the condition, two
+ * assignments and their operands.)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+
+    // A program with one (long) while loop; "read" gives the loop count.
+    private static final String LOOP_PROGRAM
+            = "read n i := 0 sum := 0 "
+            + "while i < n do sum := sum + i * 2 - ( i / 3 ) i := i + 1 od "
+            + "write sum";
+    private static final int ITERATIONS = 1_000_000;
+
+    // Shared (read only) by all of the benchmark threads.
+    private Interpreter interpreter;
+    private BytecodeCompiler.CompiledProgram compiled;
+
+    @Setup(Level.Trial)
+    public void setUp() throws BytecodeCompiler.ProgramTooLargeException {
+        final var tree = new ParseTree();
+        final var lexer = new LexicalAnalyzer(LOOP_PROGRAM);
+        new Parser(lexer, new ParseTreeBuilder(tree, lexer)).analyze();
+        interpreter = Interpreter.compile(tree);
+        compiled = BytecodeCompiler.load(BytecodeCompiler.compile(interpreter));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITERATIONS)
+    public long interpreter() {
+        final var sum = new long[1];
+        interpreter.run(() -> ITERATIONS, value -> sum[0] = value);
+        return sum[0];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITERATIONS)
+    public long bytecode() {
+        final var sum = new long[1];
+        compiled.run(() -> ITERATIONS, value -> sum[0] = value);
+        return sum[0];
+    }
+}
@@ -0,0 +1,34 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * *****************************************************************************
+ * Tokenizing a whole program with the LexicalAnalyzer (from a buffer, so no
+ * file I/O); one operation is one program.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LexerBenchmark {
+
+    @Param({"1KB", "64KB", "1MB", "16MB", "100MB"})
+    public String size;
+
+    // Shared (read only) by all of the benchmark threads.
+    private char[] program;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        program = BenchmarkInputs.program(size);
+    }
+
+    @Benchmark
+    public TokenStream tokenize() {
+        return new LexicalAnalyzer(program, program.length).getTokenStream();
+    }
+}
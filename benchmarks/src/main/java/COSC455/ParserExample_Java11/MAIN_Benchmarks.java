@@ -0,0 +1,100 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * COSC 455 Programming Languages: Implementation and Design.
+ *
+ * Runs the JMH benchmarks the way they are tracked: with the GC profiler
+ * ("-prof gc"), on one thread and then on all of the processors, and reports
+ * the bytes allocated per token (LexerBenchmark) and per tree node
+ * (ParserBenchmark, CodeGeneratorBenchmark) next to the times. The JMH
+ * results are saved as JSON (jmh-1-thread.json, jmh-N-threads.json) to be
+ * compared from one version to the next.
+ *
+ * Usage: java -cp benchmarks/target/benchmarks.jar COSC455.ParserExample_Java11.MAIN_Benchmarks [--sizes 1KB,1MB] [REGEX...]
+ *
+ * eg. "--sizes 1KB,64KB Lexer" for a quick run. (Single benchmarks can also be
+ * run with plain JMH: java -jar benchmarks/target/benchmarks.jar -prof gc -t 4 Parser)
+ */
+public class MAIN_Benchmarks {
+
+    public static void main(String[] args) throws RunnerException {
+        var sizes = BenchmarkInputs.SIZES;
+        final var includes = new ArrayList<String>();
+        for (var i = 0; i < args.length; i++) {
+            if (args[i].equals("--sizes") && i + 1 < args.length) {
+                sizes = args[++i];
+            } else {
+                includes.add(args[i]);
+            }
+        }
+        if (includes.isEmpty()) {
+            includes.add(MAIN_Benchmarks.class.getPackageName() + ".*Benchmark");
+        }
+
+        final var processors = Runtime.getRuntime().availableProcessors();
+        for (var threads : new TreeSet<>(List.of(1, processors))) {
+            final var options = new OptionsBuilder()
+                    .threads(threads)
+                    .param("size", sizes.split(","))
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(threads == 1 ? "jmh-1-thread.json" : "jmh-" + threads + "-threads.json");
+            includes.forEach(options::include);
+
+            report(threads, new Runner(options.build()).run());
+        }
+    }
+
+    // Print the time and the allocations per token/node of every result.
+    private static void report(int threads, Collection<RunResult> results) {
+        final var tokens = new HashMap<String, Integer>();
+        final var nodes = new HashMap<String, Integer>();
+
+        System.out.printf("%n%d thread(s):%n", threads);
+        System.out.printf("%-45s %8s %14s %16s%n", "Benchmark", "size", "time", "allocated");
+        for (var result : results) {
+            final var params = result.getParams();
+            final var name = params.getBenchmark().substring(MAIN_Benchmarks.class.getPackageName().length() + 1);
+            final var size = params.getParam("size");
+            final var primary = result.getPrimaryResult();
+            final var allocated = allocatedPerOperation(result);
+
+            var perUnit = "";
+            if (size != null && !Double.isNaN(allocated)) {
+                // (Programs are made the same way every time, so they can be
+                // counted here.)
+                if (name.startsWith("LexerBenchmark")) {
+                    final var count = tokens.computeIfAbsent(size, s -> BenchmarkInputs.tokens(BenchmarkInputs.program(s)));
+                    perUnit = String.format("%.1f B/token", allocated / count);
+                } else {
+                    final var count = nodes.computeIfAbsent(size, s -> BenchmarkInputs.nodes(BenchmarkInputs.program(s)));
+                    perUnit = String.format("%.1f B/node", allocated / count);
+                }
+            } else if (!Double.isNaN(allocated)) {
+                perUnit = String.format("%.1f B/op", allocated);
+            }
+
+            System.out.printf("%-45s %8s %8.3f %-5s %16s%n", name, size == null ? "" : size,
+                    primary.getScore(), primary.getScoreUnit(), perUnit);
+        }
+    }
+
+    // gc.alloc.rate.norm: the bytes allocated per operation (NaN if unknown).
+    private static double allocatedPerOperation(RunResult result) {
+        for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+            if (entry.getKey().endsWith("gc.alloc.rate.norm")) {
+                return entry.getValue().getScore();
+            }
+        }
+        return Double.NaN;
+    }
+}
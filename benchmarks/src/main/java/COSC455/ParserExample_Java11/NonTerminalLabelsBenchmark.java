@@ -0,0 +1,68 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * *****************************************************************************
+ * Parsing a program (with the GraphViz output going nowhere), naming the
+ * nonterminals through NONTERMINAL against the original
+ * Thread.getStackTrace() "trick"; one operation is one program.
+ *
+ * NOTE: The cost of a stack trace grows with the depth of the stack (and
+ * stmt_list recurses once per statement), so the baseline takes seconds for
+ * a few thousand statements; the programs are kept small.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NonTerminalLabelsBenchmark {
+
+    @Param({"100", "1000"})
+    public int statements;
+
+    // Shared (read only) by all of the benchmark threads.
+    private String program;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        program = ProgramGenerator.sample(statements);
+    }
+
+    @Benchmark
+    public boolean nonTerminal() {
+        return new Parser(new LexicalAnalyzer(program), new CodeGenerator(Writer.nullWriter(), false)).analyze();
+    }
+
+    @Benchmark
+    public boolean stackTrace() {
+        return new Parser(new LexicalAnalyzer(program), new StackTraceCodeGenerator()).analyze();
+    }
+
+    /**
+     * The original way of naming nonterminals, kept only as the baseline to
+     * measure against: element[2] of the stack trace is the parsing method.
+     */
+    private static final class StackTraceCodeGenerator extends CodeGenerator {
+
+        StackTraceCodeGenerator() {
+            super(Writer.nullWriter(), false);
+        }
+
+        @Override
+        public ParseNode addNonTerminalToTree(NONTERMINAL nonTerminal, ParseNode parentNode) {
+            final String fromMethodName
+                    = Thread
+                            .currentThread()
+                            .getStackTrace()[2]
+                            .getMethodName()
+                            .toUpperCase();
+
+            return addNonTerminalToTree(parentNode, "<" + fromMethodName + ">");
+        }
+    }
+}
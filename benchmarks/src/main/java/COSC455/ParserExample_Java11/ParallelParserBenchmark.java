@@ -0,0 +1,60 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * *****************************************************************************
+ * Lexing and parsing a whole program into a ParseTree: with the Parser on one
+ * thread, and with the ParallelParser on one thread per processor (the tree
+ * is the same); one operation is one program.
+ *
+ * NOTE: The Parser recurses once per statement, so the forks get a 1 GB stack
+ * (-Xss1g). The ParallelParser holds the trees of its parts and the whole
+ * tree at once, so the 100MB programs need a heap of several GB (eg.
+ * "-jvmArgsAppend -Xmx12g").
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xss1g")
+@State(Scope.Benchmark)
+public class ParallelParserBenchmark {
+
+    @Param({"1KB", "64KB", "1MB", "16MB", "100MB"})
+    public String size;
+
+    // Shared (read only) by all of the benchmark threads.
+    private char[] program;
+
+    private int threads;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        program = BenchmarkInputs.program(size);
+        threads = Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public ParseTree parse() {
+        final var tree = new ParseTree();
+        final var lexer = new LexicalAnalyzer(program, program.length);
+        new Parser(lexer, new ParseTreeBuilder(tree, lexer)).analyze();
+        return tree;
+    }
+
+    @Benchmark
+    public ParseTree parseParallel() {
+        final var parts = ParallelParser.partsFor(program.length, threads);
+        return new ParallelParser(program, program.length, pool, parts).parse(new ParseTree());
+    }
+}
@@ -0,0 +1,47 @@
+package COSC455.ParserExample_Java11;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * *****************************************************************************
+ * Compiling a whole program end to end: lexing, Parser.analyze, and writing
+ * the GraphViz output (to nowhere); one operation is one program. The
+ * TableDrivenParser is measured the same way, for comparison.
+ *
+ * NOTE: Parser recurses once per statement, so the forks get a 1 GB stack
+ * (-Xss1g); the 100MB programs also need a heap of a few GB (eg.
+ * "-jvmArgsAppend -Xmx8g").
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xss1g")
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({"1KB", "64KB", "1MB", "16MB", "100MB"})
+    public String size;
+
+    // Shared (read only) by all of the benchmark threads.
+    private char[] program;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        program = BenchmarkInputs.program(size);
+    }
+
+    @Benchmark
+    public boolean analyze() {
+        final var lexer = new LexicalAnalyzer(program, program.length);
+        return new Parser(lexer, new CodeGenerator(Writer.nullWriter(), false)).analyze();
+    }
+
+    @Benchmark
+    public boolean analyzeTableDriven() {
+        final var lexer = new LexicalAnalyzer(program, program.length);
+        return new TableDrivenParser(lexer, new CodeGenerator(Writer.nullWriter(), false)).analyze();
+    }
+}
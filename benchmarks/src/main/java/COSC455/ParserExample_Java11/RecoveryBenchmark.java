@@ -0,0 +1,56 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * *****************************************************************************
+ * Parsing a 100k statement program with 1,000 syntax errors (recovering from
+ * all of them) into a ParseTree, against the same program without the errors;
+ * one operation is one program.
+ *
+ * NOTE: The Parser recurses once per statement, so the forks get a 1 GB stack
+ * (-Xss1g).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xss1g")
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+
+    private static final int STATEMENTS = 100_000;
+    private static final int ERRORS = 1000;
+
+    // Shared (read only) by all of the benchmark threads.
+    private String program;
+    private String broken;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        program = ProgramGenerator.sample(STATEMENTS);
+        final var lines = program.split("\n");
+        for (var i = 0; i < ERRORS; i++) {
+            lines[(int) ((long) i * lines.length / ERRORS)] = "read 5";
+        }
+        broken = String.join("\n", lines);
+    }
+
+    @Benchmark
+    public int parse() {
+        return analyze(program);
+    }
+
+    @Benchmark
+    public int parseRecovering() {
+        return analyze(broken);
+    }
+
+    private static int analyze(String program) {
+        final var lexer = new LexicalAnalyzer(program);
+        final var parser = new Parser(lexer, new ParseTreeBuilder(new ParseTree(), lexer), true);
+        parser.analyze();
+        return parser.getDiagnostics().size();
+    }
+}
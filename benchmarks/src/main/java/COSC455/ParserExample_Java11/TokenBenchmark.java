@@ -0,0 +1,86 @@
+package COSC455.ParserExample_Java11;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * *****************************************************************************
+ * TOKEN.fromLexeme, both overloads, against the original linear search; one
+ * operation is one lexeme.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenBenchmark {
+
+    // The lexemes of the sample program (and a few more).
+    private static final String[] LEXEMES = {
+        "sum", ":=", "sum", "+", "n", "while", "count", ">", "0", "do",
+        "read", "n", "if", "n", "<", "0", "then", "abs", ":=", "0", "-",
+        "abs", "fi", "count", ":=", "count", "-", "1", "od", "write", "sum",
+        "(", "a", "*", "b", ")", "<=", ">=", "!=", "123456"
+    };
+    private static final int LEXEME_COUNT = 40;
+
+    // The same lexemes, one after the other in a buffer.
+    private final char[] chars = String.join("", LEXEMES).toCharArray();
+    private final int[] starts = new int[LEXEMES.length];
+
+    public TokenBenchmark() {
+        for (int i = 0, offset = 0; i < LEXEMES.length; offset += LEXEMES[i].length(), i++) {
+            starts[i] = offset;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEXEME_COUNT)
+    public void fromLexemeOriginal(Blackhole blackhole) {
+        for (var lexeme : LEXEMES) {
+            blackhole.consume(originalFromLexeme(lexeme));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEXEME_COUNT)
+    public void fromLexemeString(Blackhole blackhole) {
+        for (var lexeme : LEXEMES) {
+            blackhole.consume(TOKEN.fromLexeme(lexeme));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEXEME_COUNT)
+    public void fromLexemeChars(Blackhole blackhole) {
+        for (var i = 0; i < LEXEME_COUNT; i++) {
+            blackhole.consume(TOKEN.fromLexeme(chars, starts[i], LEXEMES[i].length()));
+        }
+    }
+
+    /**
+     * The original implementation of TOKEN.fromLexeme, kept only as the
+     * baseline to measure against.
+     */
+    private static TOKEN originalFromLexeme(final String string) {
+        var lexeme = string.trim();
+
+        if (lexeme.isEmpty()) {
+            return TOKEN.EOF;
+        }
+
+        if (lexeme.matches("\\d+")) {
+            return TOKEN.NUMBER;
+        }
+
+        for (var t : TOKEN.values()) {
+            if (t.getLexemes().contains(lexeme)) {
+                return t;
+            }
+        }
+
+        return TOKEN.OTHER;
+    }
+}